@@ -1,31 +1,51 @@
 package com.example.jsondiff;
 
+import com.example.jsondiff.component.DriftHistoryReport;
 import com.example.jsondiff.component.FeatureCompare;
 import com.example.jsondiff.component.RuleDiff;
+import com.example.jsondiff.component.ShardedDiff;
+import com.example.jsondiff.util.DiffOptions;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.ExitCodeGenerator;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 
 @SpringBootApplication
-public class JsonDiffApplication implements CommandLineRunner {
+public class JsonDiffApplication implements CommandLineRunner, ExitCodeGenerator {
 
     // The constant for the feature comparison mode
     private static final String FEATURE_MODE = "FEATURE_MODE";
+    // Queries the drift history recorded by RuleDiff --history
+    private static final String HISTORY_MODE = "HISTORY_MODE";
+    // RuleDiff split across worker processes, reports merged
+    private static final String SHARD_MODE = "SHARD_MODE";
 
     // Injected comparison components
     private final FeatureCompare featureCompare;
     private final RuleDiff ruleDiff;
+    private final DriftHistoryReport driftHistoryReport;
+    private final ShardedDiff shardedDiff;
+    // Process exit status; only RuleDiff --equal sets a non-zero one
+    private int exitCode;
 
     @Autowired
-    public JsonDiffApplication(FeatureCompare featureCompare, RuleDiff ruleDiff) {
+    public JsonDiffApplication(FeatureCompare featureCompare, RuleDiff ruleDiff, DriftHistoryReport driftHistoryReport,
+                               ShardedDiff shardedDiff) {
         this.featureCompare = featureCompare;
         this.ruleDiff = ruleDiff;
+        this.driftHistoryReport = driftHistoryReport;
+        this.shardedDiff = shardedDiff;
     }
 
 
     public static void main(String[] args) {
-        SpringApplication.run(JsonDiffApplication.class, args);
+        System.exit(SpringApplication.exit(SpringApplication.run(JsonDiffApplication.class, args)));
+    }
+
+    @Override
+    public int getExitCode() {
+        return exitCode;
     }
 
 
@@ -37,16 +57,18 @@ public class JsonDiffApplication implements CommandLineRunner {
      * 1. 3+ args (F1, F2, MODE): Mode is determined by args[2].
      * 2. 1 arg (MODE): Mode is determined by args[0].
      * 3. 0 or 2 args (F1, F2): Default to RuleDiff (no explicit mode provided).
+     * Only positional arguments are counted; "--option" arguments are passed through to the component.
      *
      * @param args The command line arguments passed to the JAR.
      * @throws Exception if component execution fails.
      */
     @Override
-    public void run(String... args) throws Exception {
+    public void run(String... rawArgs) throws Exception {
 
         String mode = null;
+        String[] args = DiffOptions.parse(rawArgs).positional().toArray(new String[0]);
 
-        if (args == null || args.length == 0) {
+        if (args.length == 0) {
             // Scenario 2: No parameters provided. Mode is null (default).
             System.out.println("No arguments provided. Falling back to default RuleDiff mode.");
 
@@ -68,11 +90,28 @@ public class JsonDiffApplication implements CommandLineRunner {
         if (FEATURE_MODE.equals(mode)) {
             System.out.println("Starting FeatureCompare component.");
             // Pass all arguments. FeatureCompare will interpret them (or use defaults).
-            featureCompare.execute(args);
+            featureCompare.execute(rawArgs);
+        } else if (HISTORY_MODE.equals(mode)) {
+            System.out.println("Starting DriftHistoryReport component.");
+            driftHistoryReport.execute(rawArgs);
+        } else if (SHARD_MODE.equals(mode)) {
+            System.out.println("Starting ShardedDiff component.");
+            shardedDiff.execute(rawArgs);
         } else {
             System.out.println("Starting RuleDiff component.");
             // Pass all arguments. RuleDiff will interpret them (or use defaults).
-            ruleDiff.execute(args);
+            if (!DiffOptions.parse(rawArgs).has("equal")) {
+                ruleDiff.execute(rawArgs);
+                return;
+            }
+            // --equal: the exit status is the answer, so a failure must not look like "different",
+            // not even a StackOverflowError or OutOfMemoryError
+            try {
+                exitCode = ruleDiff.execute(rawArgs);
+            } catch (Exception | Error e) {
+                System.err.println("Equality check failed: " + e);
+                exitCode = RuleDiff.UNDECIDED;
+            }
         }
     }
 }
\ No newline at end of file
@@ -1,6 +1,14 @@
 
 package com.example.jsondiff;
 
+import com.example.jsondiff.engine.DiffPolicy;
+import com.example.jsondiff.engine.DiffTraversal;
+import com.example.jsondiff.util.CompressedStreams;
+import com.example.jsondiff.util.DiffOptions;
+import com.example.jsondiff.util.DiffSummary;
+import com.example.jsondiff.util.JsonMappers;
+import com.example.jsondiff.util.JsonTrees;
+import com.example.jsondiff.util.ScalarComparator;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
@@ -11,6 +19,7 @@ import org.springframework.core.io.ClassPathResource;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -34,141 +43,119 @@ import java.util.*;
 //@SpringBootApplication
 public class JsonToCsvComparator implements CommandLineRunner {
 
-    private final ObjectMapper mapper = new ObjectMapper();
+    private final ObjectMapper mapper = JsonMappers.newMapper();
+    private final ScalarComparator scalars = new ScalarComparator(ScalarComparator.Mode.STRICT);
 
     // Resource file names (IntelliJ/JAR) - can be parameterized later
     private final String FILE_NAME_1 = "Rule_IPB.json";
     private final String FILE_NAME_2 = "Rule_SG.json";
 
-    // CSV rows: Category, Path, Feature, <file1>, <file2>, Details
-    private final List<String[]> csvData = new ArrayList<>();
-
     public static void main(String[] args) {
         SpringApplication.run(JsonToCsvComparator.class, args);
     }
 
+    /**
+     * Rows and traversal are local to the call, so concurrent runs do not share state.
+     * --summary[=table|json] prints row counts per feature instead of writing the CSV (--summary-depth=&lt;n&gt;
+     * path segments per group; default one feature, i.e. Feature.X or the top-level node).
+     */
     @Override
     public void run(String... args) throws Exception {
+        DiffOptions opts = DiffOptions.parse(args);
         JsonNode left = loadJsonFromResources(FILE_NAME_1);
         JsonNode right = loadJsonFromResources(FILE_NAME_2);
 
-        // CSV Header using actual file names for value columns
-        csvData.add(new String[]{
-                "Category", "Path", "Feature", FILE_NAME_1, FILE_NAME_2, "Details"
-        });
-
         // Boundary: Feature.* else top-level
         boolean useFeatureBoundary =
                 ((left != null && left.has("Feature")) || (right != null && right.has("Feature"))) &&
                         ((left != null && left.get("Feature") != null && left.get("Feature").isObject()) ||
                                 (right != null && right.get("Feature") != null && right.get("Feature").isObject()));
-
-        if (useFeatureBoundary) {
-            compareBoundaryObject(left.get("Feature"), right.get("Feature"), "Feature");
-        } else {
-            compareBoundaryObject(left, right, "$"); // top-level
+        JsonNode leftBoundary = useFeatureBoundary ? left.get("Feature") : left;
+        JsonNode rightBoundary = useFeatureBoundary ? right.get("Feature") : right;
+        String boundaryPath = useFeatureBoundary ? "Feature" : "$"; // else top-level
+
+        if (opts.has("summary")) {
+            DiffSummary summary = DiffSummary.fromOptions(opts, useFeatureBoundary ? 2 : 1);
+            new DiffTraversal().compareBoundary(boundaryPath, leftBoundary, rightBoundary, new SummaryPolicy(summary));
+            if ("json".equals(opts.value("summary"))) {
+                System.out.println(summary.toJson(mapper));
+            } else {
+                summary.printTable(System.out);
+            }
+            return;
         }
 
+        // CSV rows: Category, Path, Feature, <file1>, <file2>, Details
+        List<String[]> csvData = new ArrayList<>();
+        // CSV Header using actual file names for value columns
+        csvData.add(new String[]{
+                "Category", "Path", "Feature", FILE_NAME_1, FILE_NAME_2, "Details"
+        });
+        compareBoundaryObject(leftBoundary, rightBoundary, boundaryPath, csvData);
+
         Path out = Path.of("json_comparison_report.csv");
-        writeCsv(out);
+        writeCsv(out, csvData);
         System.out.println("✅ CSV Report generated: " + out.toAbsolutePath());
     }
 
     // ---- Boundary walker: only objects (Feature.* or top-level) ----
 
-    private void compareBoundaryObject(JsonNode leftObj, JsonNode rightObj, String boundaryPath) {
-        Set<String> names = new TreeSet<>();
-        if (isObject(leftObj)) leftObj.fieldNames().forEachRemaining(names::add);
-        if (isObject(rightObj)) rightObj.fieldNames().forEachRemaining(names::add);
-
-        for (String name : names) {
-            String path = boundaryPath.equals("$") ? name : boundaryPath + "." + name;
-            JsonNode l = isObject(leftObj) ? leftObj.get(name) : null;
-            JsonNode r = isObject(rightObj) ? rightObj.get(name) : null;
-            emitAndDescend(path, l, r);
-        }
+    private void compareBoundaryObject(JsonNode leftObj, JsonNode rightObj, String boundaryPath, List<String[]> csvData) {
+        new DiffTraversal().compareBoundary(boundaryPath, leftObj, rightObj, new CsvRulePolicy(csvData));
     }
 
     // ---- Core emission logic according to your 4 rules ----
 
+    /**
+     * Objects recurse; arrays/scalars stop (Rule 4).
+     * The traversal only descends when onObject returns true, so arrays never push children here.
+     */
+    private class CsvRulePolicy implements DiffPolicy {
+        private final List<String[]> csvData;
 
-    private void emitAndDescend(String path, JsonNode lNode, JsonNode rNode) {
-        // Missing on one side
-        if (lNode == null && rNode != null) {
-            csvData.add(row("Missing", path, featureName(path), "", pretty(rNode), "Present only in " + FILE_NAME_2));
-            return;
+        CsvRulePolicy(List<String[]> csvData) {
+            this.csvData = csvData;
         }
-        if (lNode != null && rNode == null) {
-            csvData.add(row("Missing", path, featureName(path), pretty(lNode), "", "Present only in " + FILE_NAME_1));
-            return;
+
+        @Override
+        public void onMissing(String path, JsonNode lNode, JsonNode rNode) {
+            if (lNode == null) {
+                csvData.add(row("Missing", path, featureName(path), "", pretty(rNode), "Present only in " + FILE_NAME_2));
+            } else {
+                csvData.add(row("Missing", path, featureName(path), pretty(lNode), "", "Present only in " + FILE_NAME_1));
+            }
         }
-        if (lNode == null && rNode == null) return; // nothing to do
 
-        // Both sides present
-        // Types differ -> Modified (show full values)
-        if (lNode.getNodeType() != rNode.getNodeType()) {
+        @Override
+        public void onTypeMismatch(String path, JsonNode lNode, JsonNode rNode) {
+            // Types differ -> Modified (show full values)
             csvData.add(row("Modified", path, featureName(path), pretty(lNode), pretty(rNode), "Type mismatch"));
-            return;
         }
 
-        // Same type: object / array / scalar
-        if (lNode.isObject() && rNode.isObject()) {
-            // Rule 1+2+3: Present for object nodes, then recurse to children
+        @Override
+        public boolean onObject(String path, JsonNode lNode, JsonNode rNode) {
+            // Rule 1+2+3: Present for object nodes (show {}), then recurse to children
             csvData.add(row("Present", path, featureName(path), "{}", "{}", ""));
-            // Recurse into child keys
-            Set<String> keys = new TreeSet<>();
-            lNode.fieldNames().forEachRemaining(keys::add);
-            rNode.fieldNames().forEachRemaining(keys::add);
-            for (String key : keys) {
-                String childPath = path + "." + key;
-                JsonNode lc = lNode.get(key);
-                JsonNode rc = rNode.get(key);
-                // arrays/scalars are leaves; objects recurse again
-                emitAndStopAtLeaves(childPath, lc, rc);
-            }
-            return;
+            return true;
         }
 
-        if (lNode.isArray() && rNode.isArray()) {
+        @Override
+        public void onArray(String path, ArrayNode la, ArrayNode ra, DiffTraversal traversal) {
             // Arrays are leaves (Rule 4); decide Present vs Modified by content
-            ArrayNode la = (ArrayNode) lNode;
-            ArrayNode ra = (ArrayNode) rNode;
-
-            boolean lScalars = allScalars(la);
-            boolean rScalars = allScalars(ra);
-
-            if (lScalars && rScalars) {
-                // Scalar arrays as sets
-                Set<String> ls = scalarSet(la);
-                Set<String> rs = scalarSet(ra);
-                if (ls.equals(rs)) {
-                    // ✅ Show actual array values for Present
-                    csvData.add(row("Present", path, featureName(path), pretty(la), pretty(ra), ""));
-                } else {
-                    // Show full values for Modified
-                    csvData.add(row("Modified", path, featureName(path), pretty(la), pretty(ra),
-                            "Scalar array set differs"));
-                }
+            String difference = arrayDifference(la, ra);
+            if (difference == null) {
+                // ✅ Show actual array values for Present
+                csvData.add(row("Present", path, featureName(path), pretty(la), pretty(ra), ""));
             } else {
-                // Arrays of objects: key-based alignment (id/code/name) else index-wise
-                Alignment align = discoverKey(la, ra);
-                boolean equal = (align.type == AlignmentType.KEY)
-                        ? arraysEqualByKey(la, ra, align.key)
-                        : arraysEqualByIndex(la, ra);
-                if (equal) {
-                    // ✅ Show actual array values for Present
-                    csvData.add(row("Present", path, featureName(path), pretty(la), pretty(ra), ""));
-                } else {
-                    csvData.add(row("Modified", path, featureName(path), pretty(la), pretty(ra),
-                            align.type == AlignmentType.KEY ? ("Array of objects differ by key=" + align.key) : "Array differs by index"));
-                }
+                // Show full values for Modified
+                csvData.add(row("Modified", path, featureName(path), pretty(la), pretty(ra), difference));
             }
-            return;
         }
 
-        if (lNode.isValueNode() && rNode.isValueNode()) {
+        @Override
+        public void onScalar(String path, ValueNode lNode, ValueNode rNode) {
             // Scalars are leaves (Rule 4)
-            if (scalarEquals((ValueNode) lNode, (ValueNode) rNode)) {
+            if (scalarEquals(lNode, rNode)) {
                 // Show actual scalar values for Present
                 csvData.add(row("Present", path, featureName(path), pretty(lNode), pretty(rNode), ""));
             } else {
@@ -177,102 +164,58 @@ public class JsonToCsvComparator implements CommandLineRunner {
         }
     }
 
+    /** Same rules as CsvRulePolicy, counted into a summary: no value is rendered and no row is built. */
+    private class SummaryPolicy implements DiffPolicy {
+        private final DiffSummary summary;
 
-    /**
-     * Objects recurse; arrays/scalars stop (Rule 4).
-     * This helper makes the intent explicit at child paths.
-     */
+        SummaryPolicy(DiffSummary summary) {
+            this.summary = summary;
+        }
 
-    private void emitAndStopAtLeaves(String path, JsonNode lNode, JsonNode rNode) {
-        // Missing
-        if (lNode == null && rNode != null) {
-            csvData.add(row("Missing", path, featureName(path), "", pretty(rNode), "Present only in " + FILE_NAME_2));
-            return;
+        @Override
+        public void onMissing(String path, JsonNode lNode, JsonNode rNode) {
+            summary.add(DiffSummary.MISSING, path);
         }
-        if (lNode != null && rNode == null) {
-            csvData.add(row("Missing", path, featureName(path), pretty(lNode), "", "Present only in " + FILE_NAME_1));
-            return;
+
+        @Override
+        public void onTypeMismatch(String path, JsonNode lNode, JsonNode rNode) {
+            summary.add(DiffSummary.MODIFIED, path);
         }
-        if (lNode == null && rNode == null) return;
 
-        // Type mismatch
-        if (lNode.getNodeType() != rNode.getNodeType()) {
-            csvData.add(row("Modified", path, featureName(path), pretty(lNode), pretty(rNode), "Type mismatch"));
-            return;
+        @Override
+        public boolean onObject(String path, JsonNode lNode, JsonNode rNode) {
+            summary.add(DiffSummary.PRESENT, path);
+            return true;
         }
 
-        // Same type
-        if (lNode.isObject() && rNode.isObject()) {
-            // Present row at the object node (show {}), then recurse further
-            csvData.add(row("Present", path, featureName(path), "{}", "{}", ""));
-            Set<String> keys = new TreeSet<>();
-            lNode.fieldNames().forEachRemaining(keys::add);
-            rNode.fieldNames().forEachRemaining(keys::add);
-            for (String key : keys) {
-                String childPath = path + "." + key;
-                JsonNode lc = lNode.get(key);
-                JsonNode rc = rNode.get(key);
-                emitAndStopAtLeaves(childPath, lc, rc);
-            }
-            return;
+        @Override
+        public void onArray(String path, ArrayNode la, ArrayNode ra, DiffTraversal traversal) {
+            summary.add(arrayDifference(la, ra) == null ? DiffSummary.PRESENT : DiffSummary.MODIFIED, path);
         }
 
-        if (lNode.isArray() && rNode.isArray()) {
-            // Arrays are leaves; Present/Modified by content
-            ArrayNode la = (ArrayNode) lNode;
-            ArrayNode ra = (ArrayNode) rNode;
-            boolean lScalars = allScalars(la);
-            boolean rScalars = allScalars(ra);
-
-            if (lScalars && rScalars) {
-                Set<String> ls = scalarSet(la);
-                Set<String> rs = scalarSet(ra);
-                if (ls.equals(rs)) {
-                    // ✅ Show actual array values for Present
-                    csvData.add(row("Present", path, featureName(path), pretty(la), pretty(ra), ""));
-                } else {
-                    csvData.add(row("Modified", path, featureName(path), pretty(la), pretty(ra),
-                            "Scalar array set differs"));
-                }
-            } else {
-                Alignment align = discoverKey(la, ra);
-                boolean equal = (align.type == AlignmentType.KEY)
-                        ? arraysEqualByKey(la, ra, align.key)
-                        : arraysEqualByIndex(la, ra);
-                if (equal) {
-                    // ✅ Show actual array values for Present
-                    csvData.add(row("Present", path, featureName(path), pretty(la), pretty(ra), ""));
-                } else {
-                    csvData.add(row("Modified", path, featureName(path), pretty(la), pretty(ra),
-                            align.type == AlignmentType.KEY ? ("Array of objects differ by key=" + align.key) : "Array differs by index"));
-                }
-            }
-            return;
+        @Override
+        public void onScalar(String path, ValueNode lNode, ValueNode rNode) {
+            summary.add(scalarEquals(lNode, rNode) ? DiffSummary.PRESENT : DiffSummary.MODIFIED, path);
         }
+    }
 
-        if (lNode.isValueNode() && rNode.isValueNode()) {
-            if (scalarEquals((ValueNode) lNode, (ValueNode) rNode)) {
-                csvData.add(row("Present", path, featureName(path), pretty(lNode), pretty(rNode), ""));
-            } else {
-                csvData.add(row("Modified", path, featureName(path), pretty(lNode), pretty(rNode), ""));
-            }
+    /**
+     * Null when the arrays are equal: scalar arrays as sets, arrays of objects aligned by key (id/code/name)
+     * else index-wise. Otherwise the Details text of the Modified row.
+     */
+    private String arrayDifference(ArrayNode la, ArrayNode ra) {
+        if (allScalars(la) && allScalars(ra)) {
+            return scalarSet(la).equals(scalarSet(ra)) ? null : "Scalar array set differs";
         }
+        Alignment align = discoverKey(la, ra);
+        if (arraysEqual(la, ra, align)) return null;
+        return align.type == AlignmentType.KEY ? ("Array of objects differ by key=" + align.key) : "Array differs by index";
     }
 
     // ---- Equality helpers (strict types, case-sensitive, null≠missing) ----
 
     private boolean scalarEquals(ValueNode a, ValueNode b) {
-        if (a.isTextual() && b.isTextual()) {
-            return a.asText().equals(b.asText()); // case-sensitive
-        }
-        if (a.isNumber() && b.isNumber()) {
-            return a.numberValue().equals(b.numberValue()); // strict
-        }
-        if (a.isBoolean() && b.isBoolean()) {
-            return a.booleanValue() == b.booleanValue();
-        }
-        // null vs null handled by NodeType equality before
-        return a.toString().equals(b.toString());
+        return scalars.equals(a, b);
     }
 
     private boolean allScalars(ArrayNode arr) {
@@ -325,99 +268,85 @@ public class JsonToCsvComparator implements CommandLineRunner {
         return true;
     }
 
-    private boolean arraysEqualByKey(ArrayNode a, ArrayNode b, String key) {
-        Map<String, JsonNode> am = new HashMap<>();
-        Map<String, JsonNode> bm = new HashMap<>();
-        for (JsonNode n : a) am.put(n.get(key).asText(), n);
-        for (JsonNode n : b) bm.put(n.get(key).asText(), n);
-        if (!am.keySet().equals(bm.keySet())) return false;
-        for (String k : am.keySet()) {
-            if (!deepEqualObjects(am.get(k), bm.get(k))) return false;
-        }
-        return true;
-    }
-
-    private boolean deepEqualObjects(JsonNode a, JsonNode b) {
-        // Compare two objects strictly (used for array-of-object items)
-        if (a == null || b == null) return false;
-        if (!a.isObject() || !b.isObject()) return false;
-        Set<String> keys = new HashSet<>();
-        a.fieldNames().forEachRemaining(keys::add);
-        b.fieldNames().forEachRemaining(keys::add);
-        for (String k : keys) {
-            JsonNode av = a.get(k);
-            JsonNode bv = b.get(k);
-            if (av == null || bv == null) return false;
-            // dispatch by type
-            if (av.getNodeType() != bv.getNodeType()) return false;
-            if (av.isValueNode() && bv.isValueNode()) {
-                if (!scalarEquals((ValueNode) av, (ValueNode) bv)) return false;
-            } else if (av.isArray() && bv.isArray()) {
+    /**
+     * Arrays of objects under the given alignment, nested arrays and objects included. Nested pairs wait on an
+     * explicit stack rather than the call stack, so deeply nested items cannot overflow it.
+     */
+    private boolean arraysEqual(ArrayNode a, ArrayNode b, Alignment align) {
+        Deque<JsonNode> pending = new ArrayDeque<>();
+        if (!alignedItems(a, b, align, pending)) return false;
+        while (!pending.isEmpty()) {
+            JsonNode av = pending.pop();
+            JsonNode bv = pending.pop();
+            if (av.isObject()) {
+                if (!objectFields(av, bv, pending)) return false;
+            } else {
                 ArrayNode aa = (ArrayNode) av;
                 ArrayNode bb = (ArrayNode) bv;
-                boolean aSc = allScalars(aa), bSc = allScalars(bb);
-                if (aSc && bSc) {
+                if (allScalars(aa) && allScalars(bb)) {
                     if (!scalarSet(aa).equals(scalarSet(bb))) return false;
-                } else {
-                    Alignment al = discoverKey(aa, bb);
-                    boolean eq = (al.type == AlignmentType.KEY)
-                            ? arraysEqualByKey(aa, bb, al.key)
-                            : arraysEqualByIndex(aa, bb);
-                    if (!eq) return false;
+                } else if (!alignedItems(aa, bb, discoverKey(aa, bb), pending)) {
+                    return false;
                 }
-            } else if (av.isObject() && bv.isObject()) {
-                if (!deepEqualObjects(av, bv)) return false;
-            } else {
-                return false;
             }
         }
         return true;
     }
 
-    private boolean arraysEqualByIndex(ArrayNode a, ArrayNode b) {
+    /** Pairs the items by key (id/code/name) or index; false on a key set or size mismatch. */
+    private boolean alignedItems(ArrayNode a, ArrayNode b, Alignment align, Deque<JsonNode> pending) {
+        if (align.type == AlignmentType.KEY) {
+            Map<String, JsonNode> am = new HashMap<>();
+            Map<String, JsonNode> bm = new HashMap<>();
+            for (JsonNode n : a) am.put(n.get(align.key).asText(), n);
+            for (JsonNode n : b) bm.put(n.get(align.key).asText(), n);
+            if (!am.keySet().equals(bm.keySet())) return false;
+            for (Map.Entry<String, JsonNode> e : am.entrySet()) {
+                // Keyed items are objects (see keyExistsInAll)
+                pending.push(bm.get(e.getKey()));
+                pending.push(e.getValue());
+            }
+            return true;
+        }
         if (a.size() != b.size()) return false;
         for (int i = 0; i < a.size(); i++) {
-            JsonNode av = a.get(i);
-            JsonNode bv = b.get(i);
-            if (av.getNodeType() != bv.getNodeType()) return false;
-            if (av.isValueNode() && bv.isValueNode()) {
-                if (!scalarEquals((ValueNode) av, (ValueNode) bv)) return false;
-            } else if (av.isArray() && bv.isArray()) {
-                ArrayNode aa = (ArrayNode) av;
-                ArrayNode bb = (ArrayNode) bv;
-                boolean aSc = allScalars(aa), bSc = allScalars(bb);
-                if (aSc && bSc) {
-                    if (!scalarSet(aa).equals(scalarSet(bb))) return false;
-                } else {
-                    Alignment al = discoverKey(aa, bb);
-                    boolean eq = (al.type == AlignmentType.KEY)
-                            ? arraysEqualByKey(aa, bb, al.key)
-                            : arraysEqualByIndex(aa, bb);
-                    if (!eq) return false;
-                }
-            } else if (av.isObject() && bv.isObject()) {
-                if (!deepEqualObjects(av, bv)) return false;
-            } else {
-                return false;
-            }
+            if (!children(a.get(i), b.get(i), pending)) return false;
         }
         return true;
     }
 
+    /** Two objects compared strictly: same size and every key of a present in b <=> same key set. */
+    private boolean objectFields(JsonNode a, JsonNode b, Deque<JsonNode> pending) {
+        if (a.size() != b.size()) return false;
+        Iterator<Map.Entry<String, JsonNode>> fields = a.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> f = fields.next();
+            JsonNode bv = b.get(f.getKey());
+            if (bv == null || !children(f.getValue(), bv, pending)) return false;
+        }
+        return true;
+    }
+
+    /** Scalars are compared right away; arrays and objects of the same type are queued. */
+    private boolean children(JsonNode av, JsonNode bv, Deque<JsonNode> pending) {
+        if (av.getNodeType() != bv.getNodeType()) return false;
+        if (av.isValueNode()) return scalarEquals((ValueNode) av, (ValueNode) bv);
+        if (!av.isContainerNode()) return false;
+        pending.push(bv);
+        pending.push(av);
+        return true;
+    }
+
     // ---- Utilities ----
 
     private JsonNode loadJsonFromResources(String filename) throws IOException {
         ClassPathResource res = new ClassPathResource(filename);
         if (!res.exists()) throw new IOException("Resource not found: " + filename);
-        try (InputStream is = res.getInputStream()) {
+        try (InputStream is = CompressedStreams.decode(res.getInputStream())) {
             return mapper.readTree(is);
         }
     }
 
-    private boolean isObject(JsonNode n) {
-        return n != null && n.isObject();
-    }
-
     private String pretty(JsonNode n) {
         if (n == null) return "";
         if (n.isValueNode()) {
@@ -428,7 +357,11 @@ public class JsonToCsvComparator implements CommandLineRunner {
             if (v.isNull()) return "null";
             return v.toString();
         }
-        return n.toPrettyString();
+        try {
+            return JsonTrees.writePretty(mapper, n);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to print " + n.getNodeType(), e);
+        }
     }
 
     private String featureName(String path) {
@@ -447,7 +380,7 @@ public class JsonToCsvComparator implements CommandLineRunner {
         return new String[]{category, path, feature, v1, v2, details == null ? "" : details};
     }
 
-    private void writeCsv(Path out) throws IOException {
+    private void writeCsv(Path out, List<String[]> csvData) throws IOException {
         try (var writer = Files.newBufferedWriter(out, StandardCharsets.UTF_8)) {
             for (String[] row : csvData) {
                 writer.write(joinRow(row));
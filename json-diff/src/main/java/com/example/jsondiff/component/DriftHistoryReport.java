@@ -0,0 +1,51 @@
+package com.example.jsondiff.component;
+
+import com.example.jsondiff.util.DiffOptions;
+import com.example.jsondiff.util.DriftHistory;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Answers questions about runs recorded with RuleDiff --history, without re-reading old reports.
+ * - Always lists the runs (id, time, files, rows, drift rows).
+ * - --first=&lt;path&gt; (repeatable): the run in which each path first diverged.
+ * - --by-feature[=depth]: drift rows per feature and run, a feature being the first depth path segments (default 2).
+ * --history=&lt;dir&gt; picks the store (default json-diff-history).
+ */
+@Component
+public class DriftHistoryReport {
+
+    public void execute(String... args) throws Exception {
+        DiffOptions opts = DiffOptions.parse(args);
+        DriftHistory history = DriftHistory.open(Path.of(opts.value("history", DriftHistory.DEFAULT_DIR)));
+        List<DriftHistory.Run> runs = history.runs();
+        System.out.printf("Drift history %s: %d runs, %d paths%n",
+                history.getDirectory().toAbsolutePath(), runs.size(), history.pathCount());
+        for (DriftHistory.Run run : runs) {
+            System.out.printf("  #%d %s %s vs %s: %d rows, %d drift%n", run.id(),
+                    Instant.ofEpochMilli(run.startedMillis()), run.left(), run.right(), run.rows(), run.driftRows());
+        }
+
+        for (String path : opts.values("first")) {
+            Optional<DriftHistory.Run> first = history.firstDivergence(path);
+            System.out.println(first
+                    .map(r -> String.format("%s first diverged in run #%d (%s)", path, r.id(), Instant.ofEpochMilli(r.startedMillis())))
+                    .orElse(path + " has not diverged in any recorded run"));
+        }
+
+        if (opts.has("by-feature")) {
+            int depth = Integer.parseInt(opts.value("by-feature", "2"));
+            System.out.println("Drift rows per feature (one column per run):");
+            for (Map.Entry<String, int[]> e : history.driftByFeature(depth).entrySet()) {
+                StringBuilder sb = new StringBuilder("  ").append(e.getKey());
+                for (int count : e.getValue()) sb.append(' ').append(count);
+                System.out.println(sb);
+            }
+        }
+    }
+}
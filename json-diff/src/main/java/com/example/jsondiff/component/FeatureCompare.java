@@ -1,5 +1,12 @@
 package com.example.jsondiff.component;
 
+import com.example.jsondiff.model.DiffEntry;
+import com.example.jsondiff.service.JsonDiffService;
+import com.example.jsondiff.util.CompressedStreams;
+import com.example.jsondiff.util.DiffOptions;
+import com.example.jsondiff.util.JsonMappers;
+import com.example.jsondiff.util.ProjectionReader;
+import com.example.jsondiff.util.Reporter;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.core.io.ClassPathResource;
@@ -9,16 +16,32 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 
 @Component
 public class FeatureCompare {
 
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ObjectMapper objectMapper = JsonMappers.newMapper();
+    private final JsonDiffService diffService = new JsonDiffService();
+    private final Reporter reporter = new Reporter();
 
     // Default filenames for resource mode
     private static final String DEFAULT_A_NAME = "Feature_SG.json";
     private static final String DEFAULT_B_NAME = "Feature_IPB.json";
 
+    // Mode token the application dispatches on; not a file name
+    private static final String FEATURE_MODE = "FEATURE_MODE";
+
+    // Only this object is materialized; the rest of each document is skipped while streaming
+    private static final List<String> PROJECTION = List.of("Feature");
+
+    /** Bytes materialized / skipped over both inputs of one run; local to execute, so concurrent runs keep their own. */
+    private static final class ProjectionTally {
+        long materialized;
+        long skipped;
+    }
+
     /**
      * Constructor for Dependency Injection.
      *
@@ -31,38 +54,46 @@ public class FeatureCompare {
     /**
      * Entry point for the FeatureCompare component.
      * This method decides whether to load files from command-line arguments (FILE mode)
-     * or from resource files (RESOURCES mode) if no arguments are provided.
+     * or from resource files (RESOURCES mode) if no file arguments are provided.
+     * Only the "Feature" object of each input is parsed into a tree (gzip/zlib inputs are decompressed);
+     * the report lists feature-level differences as text and CSV, followed by bytes materialized vs. skipped.
      *
-     * @param args The raw command line arguments (expected: <fileA.json> <fileB.json> [output.txt]).
+     * @param args The raw command line arguments (expected: <fileA.json> <fileB.json> [FEATURE_MODE] [output.txt]).
      * @throws Exception if file loading or processing fails.
      */
     public void execute(String... args) throws Exception {
+        ProjectionTally tally = new ProjectionTally();
+        List<String> files = new ArrayList<>(DiffOptions.parse(args).positional());
+        files.remove(FEATURE_MODE);
 
-        if (args == null || args.length == 0) {
+        if (files.isEmpty()) {
             // RESOURCES mode (Fallback to classpath)
             System.out.printf("FeatureCompare running in RESOURCES mode. A=%s, B=%s%n", DEFAULT_A_NAME, DEFAULT_B_NAME);
 
-            JsonNode left = readJsonFromResources(DEFAULT_A_NAME);
-            JsonNode right = readJsonFromResources(DEFAULT_B_NAME);
-
-            // Placeholder for core comparison logic that relied on JsonDiffService/Reporter
-            if (left != null && right != null) {
-                System.out.println("Processing JSON nodes from resources...");
-            } else {
+            JsonNode left = readJsonFromResources(DEFAULT_A_NAME, tally);
+            JsonNode right = readJsonFromResources(DEFAULT_B_NAME, tally);
+            if (left == null || right == null) {
                 System.out.println("Error: One or both resource files failed to load.");
+                return;
             }
-            System.out.println("Comparison complete. (Detailed reporting logic omitted due to missing dependencies.)");
+
+            List<DiffEntry> diffs = diffService.diffFeatures(left, right);
+            System.out.println(reporter.format(diffs, DEFAULT_A_NAME, DEFAULT_B_NAME));
+
+            String csvPath = "feature-compare-report.csv";
+            reporter.writeCsv(reporter.formatCsv(diffs, DEFAULT_A_NAME, DEFAULT_B_NAME), csvPath);
+            System.out.printf("CSV written to %s%n", csvPath);
 
         } else {
             // FILE mode (Using command line arguments)
-            if (args.length < 2 || args.length > 3) {
+            if (files.size() < 2 || files.size() > 3) {
                 printUsage();
                 return;
             }
 
-            String srcA = args[0];
-            String srcB = args[1];
-            String outputPath = (args.length == 3) ? args[2] : null;
+            String srcA = files.get(0);
+            String srcB = files.get(1);
+            String outputPath = (files.size() == 3) ? files.get(2) : null;
 
             String aLabel = Path.of(srcA).getFileName().toString();
             String bLabel = Path.of(srcB).getFileName().toString();
@@ -70,27 +101,29 @@ public class FeatureCompare {
             System.out.printf("FeatureCompare running in FILE mode. A=%s (%s), B=%s (%s)%n", aLabel, srcA, bLabel, srcB);
 
             // Load from file system paths
-            JsonNode left = objectMapper.readTree(Path.of(srcA).toFile());
-            JsonNode right = objectMapper.readTree(Path.of(srcB).toFile());
+            JsonNode left = readFeatures(Files.newInputStream(Path.of(srcA)), tally);
+            JsonNode right = readFeatures(Files.newInputStream(Path.of(srcB)), tally);
 
-            // Placeholder for core comparison logic that relied on JsonDiffService/Reporter
-            if (left != null && right != null) {
-                System.out.println("Processing JSON nodes from file system...");
-            }
+            List<DiffEntry> diffs = diffService.diffFeatures(left, right);
+            String report = reporter.format(diffs, aLabel, bLabel);
+            String csv = reporter.formatCsv(diffs, aLabel, bLabel);
 
             if (outputPath != null) {
-                // Simplified output writing (original used Reporter)
-                String mockReport = "Mock Report Content for " + aLabel + " vs " + bLabel;
-                Files.writeString(Path.of(outputPath), mockReport);
+                reporter.writeToFile(report, outputPath);
                 System.out.printf("Report written to %s%n", outputPath);
 
                 String csvPath = deriveCsvPath(outputPath);
-                // Reporter.writeCsv logic replaced
-                System.out.printf("CSV report would be written to %s%n", csvPath);
+                reporter.writeCsv(csv, csvPath);
+                System.out.printf("CSV written to %s%n", csvPath);
             } else {
-                System.out.println("Comparison complete. (Detailed console output/CSV writing omitted due to missing dependencies.)");
+                System.out.println(report);
+                String csvPath = "feature-compare-report.csv";
+                reporter.writeCsv(csv, csvPath);
+                System.out.printf("CSV written to %s%n", csvPath);
             }
         }
+        System.out.printf("Projection \"Feature\": %,d bytes materialized, %,d bytes skipped%n",
+                tally.materialized, tally.skipped);
     }
 
     private void printUsage() {
@@ -102,20 +135,30 @@ public class FeatureCompare {
         );
     }
 
-    private JsonNode readJsonFromResources(String resourceName) throws Exception {
+    private JsonNode readJsonFromResources(String resourceName, ProjectionTally tally) throws Exception {
         ClassPathResource res = new ClassPathResource(resourceName);
         if (!res.exists()) {
             System.err.println("Resource not found in classpath: " + resourceName);
             return null;
         }
-        try (InputStream is = res.getInputStream()) {
-            return objectMapper.readTree(is);
+        try {
+            return readFeatures(res.getInputStream(), tally);
         } catch (IOException e) {
             System.err.println("Error reading resource '" + resourceName + "': " + e.getMessage());
             throw e;
         }
     }
 
+    /** Streams one document, keeping only its "Feature" object; closes the stream. */
+    private JsonNode readFeatures(InputStream in, ProjectionTally tally) throws IOException {
+        try (InputStream is = CompressedStreams.decode(in)) {
+            ProjectionReader.Projection projection = ProjectionReader.read(objectMapper, is, PROJECTION);
+            tally.materialized += projection.bytesMaterialized();
+            tally.skipped += projection.bytesSkipped();
+            return projection.root();
+        }
+    }
+
     private String deriveCsvPath(String outputPath) {
         int dot = outputPath.lastIndexOf('.');
         if (dot > 0) {
@@ -1,335 +1,729 @@
 package com.example.jsondiff.component;
 
 
+import com.example.jsondiff.engine.CancellationToken;
+import com.example.jsondiff.engine.CsvRowListener;
+import com.example.jsondiff.engine.DiffBudget;
+import com.example.jsondiff.engine.DiffEngine;
+import com.example.jsondiff.engine.DiffListener;
+import com.example.jsondiff.engine.DiffValue;
+import com.example.jsondiff.engine.SummaryListener;
+import com.example.jsondiff.jfr.FileLoadEvent;
+import com.example.jsondiff.jfr.JfrSession;
+import com.example.jsondiff.jfr.ReportFlushEvent;
+import com.example.jsondiff.util.CompressedStreams;
+import com.example.jsondiff.util.DiffMetrics;
+import com.example.jsondiff.util.DiffOptions;
+import com.example.jsondiff.util.DiffSummary;
+import com.example.jsondiff.util.DriftHistory;
+import com.example.jsondiff.util.ExternalRowSorter;
+import com.example.jsondiff.util.ProgressReporter;
+import com.example.jsondiff.util.ProjectionReader;
+import com.example.jsondiff.util.SpscRingBuffer;
+import com.example.jsondiff.util.StructuralHash;
+import com.example.jsondiff.util.SubtreeStreamReader;
+import com.example.jsondiff.util.JsonMappers;
+import com.example.jsondiff.util.JsonTape;
+import com.example.jsondiff.util.PipelinedCsvWriter;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.ValueNode;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.stereotype.Component;
 
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
-
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Compares two rule files and writes the CSV report.
+ * Holds no per-run state: each execute call owns its diff session, rows and output, so concurrent calls
+ * on the singleton are independent (give them different --out files). Metrics accumulate across calls.
+ */
 @Component
 public class RuleDiff {
 
-    private final ObjectMapper mapper = new ObjectMapper();
-    private final List<String[]> csvData = new ArrayList<>();
+    private final ObjectMapper mapper = JsonMappers.newMapper();
+    private final DiffMetrics metrics = new DiffMetrics();
+    private final DiffEngine engine = new DiffEngine(mapper, metrics);
+
+    // Parsed subtrees in flight per side (overlap mode), and --pipeline defaults
+    private static final int PARSE_RING_CAPACITY = 1024;
+    private static final int PIPELINE_BATCH_ROWS = 256;
+    private static final int PIPELINE_RING_BATCHES = 64;
+    // --progress: input bytes per node when estimating a tree's node count (generated inputs run 15 to 65)
+    private static final long BYTES_PER_NODE = 32;
 
     //private final String DEFAULT_FILE_NAME_1 = "Rule_SG.json";
     //private final String DEFAULT_FILE_NAME_2 = "Rule_IPB.json";
 
     private final String DEFAULT_FILE_NAME_1 = "pre_login_SG_rule.json";
     private final String DEFAULT_FILE_NAME_2 = "pre_login_IPB_rule.json";
-
-    // Enum and inner classes for comparison logic
-    enum AlignmentType {KEY, INDEX}
-
-    static class Alignment {
-        AlignmentType type;
-        String key;
-
-        Alignment(AlignmentType t, String k) {
-            type = t;
-            key = k;
-        }
-    }
+    private static final String DEFAULT_REPORT = "json_comparison_report.csv";
 
     /**
-     * Entry point for the RuleDiff component.
+     * --equal exit statuses: equivalent under the RuleDiff rules, different, or no answer (error, or a limit or
+     * cancellation stopped the check before it found a difference).
      */
-    public void execute(String... args) throws Exception {
-        csvData.clear();
-
-        String fileName1;
-        String fileName2;
-
-        if (args != null && args.length >= 2) {
-            fileName1 = args[0];
-            fileName2 = args[1];
-            System.out.println("RuleDiff using arguments: Files=[" + fileName1 + ", " + fileName2 + "]");
-        } else {
-            fileName1 = DEFAULT_FILE_NAME_1;
-            fileName2 = DEFAULT_FILE_NAME_2;
-            System.out.println("RuleDiff using fallback: Resource files=[" + fileName1 + ", " + fileName2 + "]");
-        }
-
-        JsonNode left = loadJson(fileName1);
-        JsonNode right = loadJson(fileName2);
+    public static final int EQUAL = 0;
+    public static final int DIFFERENT = 1;
+    public static final int UNDECIDED = 2;
 
-        // Removed "Feature" column (was index 2)
-        csvData.add(new String[]{
-                "Category", "Path", fileName1, fileName2, "Details"
-        });
+    /**
+     * How the two inputs are loaded.
+     * - SEQUENTIAL: left, then right, then compare.
+     * - CONCURRENT: both parsed at once on their own threads, compare once both are done.
+     * - OVERLAP: as CONCURRENT, and subtrees already parsed on both sides are compared while parsing goes on.
+     */
+    enum ParseMode {SEQUENTIAL, CONCURRENT, OVERLAP}
 
-        boolean useFeatureBoundary =
-                ((left != null && left.has("Feature")) || (right != null && right.has("Feature"))) &&
-                        ((left != null && left.get("Feature") != null && left.get("Feature").isObject()) ||
-                                (right != null && right.get("Feature") != null && right.get("Feature").isObject()));
+    /** Subtree handed out by a parser thread; a null path marks the end of that side. */
+    private record Unit(String path, JsonNode node) {
+    }
 
-        if (useFeatureBoundary) {
-            compareBoundaryObject(left.get("Feature"), right.get("Feature"), "Feature", fileName1, fileName2);
-        } else {
-            compareBoundaryObject(left, right, "$", fileName1, fileName2);
-        }
+    private record Loaded(JsonNode root, long nanos) {
+    }
 
-        Path out = Path.of("json_comparison_report.csv");
-        writeCsv(out);
-        System.out.println("✅ CSV Report generated: " + out.toAbsolutePath());
+    /** Both parsed inputs plus where the parse time went. */
+    private static class Inputs {
+        JsonNode left;
+        JsonNode right;
+        long leftNanos;
+        long rightNanos;
+        long wallNanos;
+        long overlapNanos;
+        int overlapUnits;
+        // Main pass, after parsing
+        long compareNanos;
+        // Overlap mode: parsers blocked on a full ring, compare waiting on empty ones
+        long leftBlockedNanos;
+        long rightBlockedNanos;
+        long starvedNanos;
     }
 
-    private void compareBoundaryObject(JsonNode leftObj, JsonNode rightObj, String boundaryPath, String f1Name, String f2Name) {
-        Set<String> names = new TreeSet<>();
-        if (isObject(leftObj)) leftObj.fieldNames().forEachRemaining(names::add);
-        if (isObject(rightObj)) rightObj.fieldNames().forEachRemaining(names::add);
+    /**
+     * Entry point for the RuleDiff component; the options are listed in README.md.
+     *
+     * @return the exit status: 0, except with --equal
+     */
+    public int execute(String... args) throws Exception {
+        return execute(new CancellationToken(), args);
+    }
 
-        for (String name : names) {
-            String path = boundaryPath.equals("$") ? name : boundaryPath + "." + name;
-            JsonNode l = isObject(leftObj) ? leftObj.get(name) : null;
-            JsonNode r = isObject(rightObj) ? rightObj.get(name) : null;
-            emitAndDescend(path, l, r, f1Name, f2Name);
-        }
+    /**
+     * Same as {@link #execute(String...)}, stopping early once the token is cancelled.
+     * A run that is cancelled or hits a limit still writes its report, ending with a "Truncated" row.
+     */
+    public int execute(CancellationToken token, String... args) throws Exception {
+        DiffOptions opts = DiffOptions.parse(args);
+        if (opts.has("metrics-jmx")) metrics.enableJmx();
+        return new Run(opts, token).execute();
     }
 
-    private void emitAndDescend(String path, JsonNode lNode, JsonNode rNode, String f1Name, String f2Name) {
-        if (lNode == null && rNode != null) {
-            csvData.add(row("Missing", path, "", pretty(rNode), "Present only in " + f2Name));
-            return;
-        }
-        if (lNode != null && rNode == null) {
-            csvData.add(row("Missing", path, pretty(lNode), "", "Present only in " + f1Name));
-            return;
+    /** Everything one execute call owns: its diff session, report rows or writer, progress and history. */
+    private final class Run {
+        private final DiffOptions opts;
+        private final CancellationToken token;
+        private final List<String[]> csvData = new ArrayList<>();
+        private final CompressedStreams.Codec reportCodec;
+        private final boolean compressAsync;
+        // --only paths; when set, everything else is skipped while parsing (bytes tallied across parser threads)
+        private final List<String> projection;
+        private final AtomicLong projectedBytes = new AtomicLong();
+        private final AtomicLong skippedBytes = new AtomicLong();
+        // --tape: inputs are held as tapes; their nodes are views, built as the comparison reads them
+        private final boolean tape;
+        // Node count of the larger tape, for the --progress estimate
+        private final AtomicLong tapeNodes = new AtomicLong();
+        // --history: every report row of the run is also appended to the drift history store
+        private final DriftHistory history;
+        private DriftHistory.RunWriter historyRun;
+        private DiffEngine.Session session;
+        // Non-null only with --progress
+        private ProgressReporter progress;
+        // Non-null during a --pipeline run: rows go to the writer thread instead of csvData
+        private PipelinedCsvWriter reportWriter;
+        // Non-null with --sort: rows go to the external sorter instead of csvData; the header is kept aside
+        private final ExternalRowSorter sorter;
+        private String[] sortedHeader;
+        // Truncation rows stay last whatever the order
+        private final List<String[]> trailingRows = new ArrayList<>();
+        private long reportRows;
+
+        Run(DiffOptions opts, CancellationToken token) throws IOException {
+            this.opts = opts;
+            this.token = token;
+            projection = List.copyOf(opts.values("only"));
+            if (projection.stream().anyMatch(String::isBlank)) throw new IllegalArgumentException("--only needs a path");
+            tape = opts.has("tape");
+            if (tape && !projection.isEmpty()) throw new IllegalArgumentException("--tape cannot be combined with --only");
+            reportCodec = CompressedStreams.codecFromOptions(opts);
+            compressAsync = opts.has("compress-async");
+            history = DriftHistory.fromOptions(opts);
+            Comparator<String[]> order = rowOrder(opts.value("sort"));
+            if (order != null && opts.has("pipeline")) throw new IllegalArgumentException("--sort cannot be combined with --pipeline");
+            sorter = order == null ? null : ExternalRowSorter.fromOptions(opts, order);
         }
-        if (lNode == null && rNode == null) return;
 
-        if (lNode.getNodeType() != rNode.getNodeType()) {
-            csvData.add(row("Modified", path, pretty(lNode), pretty(rNode), "Type mismatch"));
-            return;
+        int execute() throws Exception {
+            if (opts.has("equal")) return checkEqual();
+            if (opts.has("summary")) return summarize();
+            JfrSession jfr = opts.has("jfr")
+                    ? JfrSession.start(Path.of(opts.value("jfr", JfrSession.DEFAULT_FILE)))
+                    : null;
+            progress = ProgressReporter.fromOptions(opts);
+            if (progress != null) progress.start();
+            try {
+                compareFiles(jfr);
+            } finally {
+                if (progress != null) progress.close();
+                if (sorter != null) sorter.close();
+            }
+            return EQUAL;
         }
 
-        if (lNode.isObject() && rNode.isObject()) {
-            csvData.add(row("Present", path, "{}", "{}", ""));
-            Set<String> keys = new TreeSet<>();
-            lNode.fieldNames().forEachRemaining(keys::add);
-            rNode.fieldNames().forEachRemaining(keys::add);
-            for (String key : keys) {
-                emitAndStopAtLeaves(path + "." + key, lNode.get(key), rNode.get(key), f1Name, f2Name);
+        private String[] selectFiles() {
+            if (opts.positional().size() >= 2) {
+                System.out.println("RuleDiff using arguments: Files=[" + opts.positional(0) + ", " + opts.positional(1) + "]");
+                return new String[]{opts.positional(0), opts.positional(1)};
             }
-            return;
+            System.out.println("RuleDiff using fallback: Resource files=[" + DEFAULT_FILE_NAME_1 + ", " + DEFAULT_FILE_NAME_2 + "]");
+            return new String[]{DEFAULT_FILE_NAME_1, DEFAULT_FILE_NAME_2};
         }
 
-        if (lNode.isArray() && rNode.isArray()) {
-            handleArrayComparison(path, (ArrayNode) lNode, (ArrayNode) rNode, f1Name, f2Name);
-            return;
+        /**
+         * --equal: whole-document fingerprints first, so identical inputs cost two hashing passes; otherwise
+         * a rule diff that skips subtrees with equal fingerprints and stops at the first difference.
+         */
+        private int checkEqual() throws Exception {
+            String[] files = selectFiles();
+            ParseMode parseMode = Runtime.getRuntime().availableProcessors() > 1 ? ParseMode.CONCURRENT : ParseMode.SEQUENTIAL;
+            // Fingerprints differ, yet the rules may still consider the files equal (key-aligned arrays, --scalar-mode)
+            CancellationToken stop = new CancellationToken(token);
+            String[] first = new String[2];
+            DiffListener firstDifference = new DiffListener() {
+                @Override
+                public void onMissing(String path, DiffValue left, DiffValue right) {
+                    found("Missing", path);
+                }
+
+                @Override
+                public void onModified(String path, DiffValue left, DiffValue right, String details) {
+                    found("Modified", path);
+                }
+
+                @Override
+                public void onTypeMismatch(String path, DiffValue left, DiffValue right) {
+                    found("Type mismatch", path);
+                }
+
+                @Override
+                public void onMoved(String path, int fromIndex, int toIndex) {
+                    found("Moved", path);
+                }
+
+                private void found(String category, String path) {
+                    if (first[0] == null) {
+                        first[0] = category;
+                        first[1] = path;
+                    }
+                    stop.cancel();
+                }
+            };
+            // Created before parsing, so --max-time counts it
+            session = engine.newSession(opts, stop, firstDifference);
+            Inputs inputs = loadInputs(files[0], files[1], parseMode);
+
+            long t0 = System.nanoTime();
+            Map<JsonNode, Long> leftHashes = new IdentityHashMap<>();
+            Map<JsonNode, Long> rightHashes = new IdentityHashMap<>();
+            boolean sameHash = inputs.left != null && inputs.right != null
+                    && StructuralHash.of(inputs.left, leftHashes) == StructuralHash.of(inputs.right, rightHashes);
+            long hashNanos = System.nanoTime() - t0;
+            if (sameHash) {
+                System.out.printf("Equal: fingerprints match (parse %d ms, hash %d ms)%n",
+                        millis(inputs.wallNanos), millis(hashNanos));
+                return EQUAL;
+            }
+
+            long t1 = System.nanoTime();
+            session.setIdentical((l, r) -> {
+                Long lh = leftHashes.get(l);
+                return lh != null && lh.equals(rightHashes.get(r));
+            });
+            session.compare(inputs.left, inputs.right);
+            long compareNanos = System.nanoTime() - t1;
+
+            if (first[0] != null) {
+                System.out.printf("Different: %s at %s (parse %d ms, hash %d ms, compare %d ms, %d nodes)%n",
+                        first[0], first[1], millis(inputs.wallNanos), millis(hashNanos), millis(compareNanos),
+                        session.getVisited());
+                return DIFFERENT;
+            }
+            if (session.getBudget().isTruncated()) {
+                System.out.println("Undecided: check stopped early: " + session.getBudget().getTruncatedReason());
+                return UNDECIDED;
+            }
+            System.out.printf("Equal under the rules (parse %d ms, hash %d ms, compare %d ms)%n",
+                    millis(inputs.wallNanos), millis(hashNanos), millis(compareNanos));
+            return EQUAL;
         }
 
-        if (lNode.isValueNode() && rNode.isValueNode()) {
-            if (scalarEquals((ValueNode) lNode, (ValueNode) rNode)) {
-                csvData.add(row("Present", path, pretty(lNode), pretty(rNode), ""));
+        /**
+         * --summary: counts rows per path group instead of building them; no value is rendered
+         * and no report file is written.
+         */
+        private int summarize() throws Exception {
+            if (history != null) throw new IllegalArgumentException("--summary keeps no rows to record in --history");
+            String format = opts.value("summary", "table");
+            if (!format.equals("table") && !format.equals("json")) {
+                throw new IllegalArgumentException("--summary must be table or json: " + format);
+            }
+            String[] files = selectFiles();
+            ParseMode parseMode = Runtime.getRuntime().availableProcessors() > 1 ? ParseMode.CONCURRENT : ParseMode.SEQUENTIAL;
+            DiffSummary summary = DiffSummary.fromOptions(opts, 2);
+            // Created before parsing, so --max-time counts it
+            session = engine.newSession(opts, token, new SummaryListener(summary));
+            Inputs inputs = loadInputs(files[0], files[1], parseMode);
+
+            long t0 = System.nanoTime();
+            session.compare(inputs.left, inputs.right);
+            long compareNanos = System.nanoTime() - t0;
+
+            if (format.equals("json")) {
+                System.out.println(summary.toJson(mapper));
             } else {
-                csvData.add(row("Modified", path, pretty(lNode), pretty(rNode), "Value mismatch"));
+                summary.printTable(System.out);
             }
+            System.out.printf("Timing (%s): parse %d ms wall, compare %d ms (%d nodes, %d groups)%n",
+                    parseMode.name().toLowerCase(), millis(inputs.wallNanos), millis(compareNanos),
+                    session.getVisited(), summary.groupCount());
+            return EQUAL;
         }
-    }
 
-    private void emitAndStopAtLeaves(String path, JsonNode lNode, JsonNode rNode, String f1Name, String f2Name) {
-        if (lNode == null && rNode != null) {
-            csvData.add(row("Missing", path, "", pretty(rNode), "Present only in " + f2Name));
-            return;
-        }
-        if (lNode != null && rNode == null) {
-            csvData.add(row("Missing", path, pretty(lNode), "", "Present only in " + f1Name));
-            return;
-        }
-        if (lNode == null && rNode == null) return;
+        private void compareFiles(JfrSession jfr) throws Exception {
+            String[] files = selectFiles();
+            String fileName1 = files[0];
+            String fileName2 = files[1];
+            session = engine.newSession(opts, token, new CsvRowListener(fileName1, fileName2, this::addRow));
+
+            // Parser threads only pay off with a spare core, unless a pipeline was asked for explicitly
+            boolean pipelined = opts.has("pipeline");
+            String defaultMode = pipelined || Runtime.getRuntime().availableProcessors() > 1 ? "overlap" : "sequential";
+            ParseMode parseMode = ParseMode.valueOf(opts.value("parse-mode", defaultMode).toUpperCase());
+            // Overlap hands out subtrees as they are parsed; a projection or a tape builds one whole document instead
+            if (parseMode == ParseMode.OVERLAP && (session.getBudget().isLimited() || !projection.isEmpty() || tape)) {
+                parseMode = ParseMode.CONCURRENT;
+            }
 
-        if (lNode.getNodeType() != rNode.getNodeType()) {
-            csvData.add(row("Modified", path, pretty(lNode), pretty(rNode), "Type mismatch"));
-            return;
-        }
+            long pipelineStart = System.nanoTime();
+            long inputBytes = 0;
+            if (progress != null) {
+                long leftBytes = inputSize(fileName1);
+                long rightBytes = inputSize(fileName2);
+                progress.addInputSize(leftBytes);
+                progress.addInputSize(rightBytes);
+                inputBytes = Math.max(leftBytes, rightBytes);
+                progress.phase("parse");
+            }
+            Inputs inputs = loadInputs(fileName1, fileName2, parseMode);
+            JsonNode left = inputs.left;
+            JsonNode right = inputs.right;
+            if (progress != null) {
+                // Tapes know their node count; walking a tree to count would cost a good part of its parse
+                progress.nodes(session::getPublishedVisited, tape ? tapeNodes.get() : inputBytes / BYTES_PER_NODE);
+                progress.phase("compare");
+            }
 
-        if (lNode.isObject() && rNode.isObject()) {
-            csvData.add(row("Present", path, "{}", "{}", ""));
-            Set<String> keys = new TreeSet<>();
-            lNode.fieldNames().forEachRemaining(keys::add);
-            rNode.fieldNames().forEachRemaining(keys::add);
-            for (String key : keys) {
-                emitAndStopAtLeaves(path + "." + key, lNode.get(key), rNode.get(key), f1Name, f2Name);
+            Path out = Path.of(opts.value("out", DEFAULT_REPORT) + reportCodec.getExtension());
+            if (pipelined) {
+                reportWriter = new PipelinedCsvWriter(CompressedStreams.openWriter(out, reportCodec, compressAsync), RuleDiff::joinRow,
+                        Integer.parseInt(opts.value("pipeline-ring", String.valueOf(PIPELINE_RING_BATCHES))),
+                        Integer.parseInt(opts.value("pipeline-batch", String.valueOf(PIPELINE_BATCH_ROWS))));
             }
-            return;
-        }
+            try {
+                compareInputs(inputs, fileName1, fileName2);
+            } finally {
+                if (reportWriter != null) {
+                    if (progress != null) progress.phase("write");
+                    reportWriter.close();
+                }
+            }
+            long pipelineNanos = System.nanoTime() - pipelineStart;
+
+            ReportFlushEvent flush = new ReportFlushEvent();
+            flush.begin();
+            long writeNanos;
+            if (reportWriter == null) {
+                if (progress != null) progress.phase("write");
+                long w0 = System.nanoTime();
+                metrics.reportWriteTimer().recordCallable(() -> {
+                    writeCsv(out);
+                    return null;
+                });
+                writeNanos = System.nanoTime() - w0;
+            } else {
+                writeNanos = reportWriter.getBusyNanos();
+                metrics.reportWriteTimer().record(writeNanos, TimeUnit.NANOSECONDS);
+            }
+            flush.end();
+            long outBytes = Files.size(out);
+            metrics.outputBytes(outBytes);
+            if (flush.shouldCommit()) {
+                flush.file = out.toString();
+                flush.rows = reportRows;
+                flush.bytes = outBytes;
+                flush.commit();
+            }
+            System.out.printf("Alignment keys: %d array paths resolved, %d cache hits%n",
+                    session.getAlignmentKeys().getCacheMisses(), session.getAlignmentKeys().getCacheHits());
+            System.out.printf("Timing (%s): parse %d ms wall (left %d ms, right %d ms), "
+                            + "compare %d ms + %d ms overlapped with parsing (%d subtrees), write %d ms%n",
+                    parseMode.name().toLowerCase(), millis(inputs.wallNanos), millis(inputs.leftNanos),
+                    millis(inputs.rightNanos), millis(inputs.compareNanos), millis(inputs.overlapNanos),
+                    inputs.overlapUnits, millis(writeNanos));
+            if (!projection.isEmpty()) {
+                System.out.printf("Projection %s: %,d bytes materialized, %,d bytes skipped%n",
+                        projection, projectedBytes.get(), skippedBytes.get());
+            }
+            if (reportWriter != null) {
+                printUtilization(inputs, reportWriter, pipelineNanos);
+            }
+            System.out.println("✅ CSV Report generated: " + out.toAbsolutePath());
+            if (historyRun != null) {
+                DriftHistory.Run run = historyRun.commit();
+                System.out.printf("History: run #%d appended to %s (%d rows, %d drift, %d new paths)%n", run.id(),
+                        history.getDirectory().toAbsolutePath(), run.rows(), run.driftRows(),
+                        historyRun.getNewPaths());
+            }
+
 
-        if (lNode.isArray() && rNode.isArray()) {
-            handleArrayComparison(path, (ArrayNode) lNode, (ArrayNode) rNode, f1Name, f2Name);
-            return;
+            String metricsFile = opts.value("metrics");
+            if (metricsFile != null) {
+                metrics.writePrometheus(Path.of(metricsFile));
+                System.out.println("Metrics written to " + Path.of(metricsFile).toAbsolutePath());
+            }
+            if (jfr != null) jfr.finish(10);
+            if (progress != null) progress.phase("done");
         }
 
-        if (lNode.isValueNode() && rNode.isValueNode()) {
-            if (scalarEquals((ValueNode) lNode, (ValueNode) rNode)) {
-                csvData.add(row("Present", path, pretty(lNode), pretty(rNode), ""));
-            } else {
-                csvData.add(row("Modified", path, pretty(lNode), pretty(rNode), "Value mismatch"));
+        /** Header, the main comparison pass (replaying subtrees compared during parsing) and the truncation row. */
+        private void compareInputs(Inputs inputs, String fileName1, String fileName2) {
+            // Removed "Feature" column (was index 2)
+            String[] header = {
+                    "Category", "Path", fileName1, fileName2, "Details"
+            };
+            if (sorter != null) sortedHeader = header;
+            else addRow(header);
+            if (history != null) historyRun = history.newRun(fileName1, fileName2);
+
+            long t0 = System.nanoTime();
+            session.compare(inputs.left, inputs.right);
+            inputs.compareNanos = System.nanoTime() - t0;
+            long traversalNanos = inputs.compareNanos + inputs.overlapNanos;
+            metrics.traversalTimer().record(traversalNanos, TimeUnit.NANOSECONDS);
+            metrics.traversalDone(session.getVisited(), traversalNanos);
+            metrics.alignmentCache(session.getAlignmentKeys().getCacheHits(), session.getAlignmentKeys().getCacheMisses());
+
+            DiffBudget budget = session.getBudget();
+            if (budget.isTruncated()) {
+                System.out.println("⚠ Report truncated: " + budget.getTruncatedReason());
             }
         }
-    }
 
-    /**
-     * Specialized handler for arrays.
-     */
-    private void handleArrayComparison(String path, ArrayNode la, ArrayNode ra, String f1Name, String f2Name) {
-        boolean lScalars = allScalars(la);
-        boolean rScalars = allScalars(ra);
-
-        if (lScalars && rScalars) {
-            // Leaf logic for scalar arrays
-            List<String> ls = scalarList(la);
-            List<String> rs = scalarList(ra);
-            if (ls.equals(rs)) {
-                csvData.add(row("Present", path, pretty(la), pretty(ra), ""));
+        /** Parses both inputs per the parse mode; in OVERLAP mode, also compares subtrees as both sides produce them. */
+        private Inputs loadInputs(String fileName1, String fileName2, ParseMode mode) throws Exception {
+            Inputs inputs = new Inputs();
+            long t0 = System.nanoTime();
+            if (mode == ParseMode.SEQUENTIAL) {
+                Loaded l = load("left", fileName1, null);
+                Loaded r = load("right", fileName2, null);
+                inputs.left = l.root;
+                inputs.leftNanos = l.nanos;
+                inputs.right = r.root;
+                inputs.rightNanos = r.nanos;
             } else {
-                csvData.add(row("Modified", path, pretty(la), pretty(ra), "Value mismatch (Scalar array content)"));
+                // One ring per parser keeps both hand-offs single-producer/single-consumer
+                SpscRingBuffer<Unit> leftUnits = mode == ParseMode.OVERLAP ? new SpscRingBuffer<>(PARSE_RING_CAPACITY) : null;
+                SpscRingBuffer<Unit> rightUnits = mode == ParseMode.OVERLAP ? new SpscRingBuffer<>(PARSE_RING_CAPACITY) : null;
+                ExecutorService pool = Executors.newFixedThreadPool(2, task -> {
+                    Thread t = new Thread(task, "json-diff-parse");
+                    t.setDaemon(true);
+                    return t;
+                });
+                try {
+                    Future<Loaded> lf = pool.submit(() -> load("left", fileName1, leftUnits));
+                    Future<Loaded> rf = pool.submit(() -> load("right", fileName2, rightUnits));
+                    if (mode == ParseMode.OVERLAP) compareWhileParsing(leftUnits, rightUnits, inputs);
+                    Loaded l = await(lf);
+                    Loaded r = await(rf);
+                    inputs.left = l.root;
+                    inputs.leftNanos = l.nanos;
+                    inputs.right = r.root;
+                    inputs.rightNanos = r.nanos;
+                    if (mode == ParseMode.OVERLAP) {
+                        inputs.leftBlockedNanos = leftUnits.getProducerWaitNanos();
+                        inputs.rightBlockedNanos = rightUnits.getProducerWaitNanos();
+                    }
+                } finally {
+                    pool.shutdownNow();
+                }
             }
-        } else {
-            // Complex logic for arrays of objects
-            csvData.add(row("Present", path, "[]", "[]", ""));
-
-            Alignment align = discoverKey(la, ra);
-            if (align.type == AlignmentType.KEY) {
-                Map<String, JsonNode> am = new LinkedHashMap<>();
-                Map<String, JsonNode> bm = new LinkedHashMap<>();
-                la.forEach(n -> am.put(n.get(align.key).asText(), n));
-                ra.forEach(n -> bm.put(n.get(align.key).asText(), n));
-
-                Set<String> allKeys = new TreeSet<>(am.keySet());
-                allKeys.addAll(bm.keySet());
-
-                for (String k : allKeys) {
-                    String itemPath = path + "[" + align.key + "=" + k + "]";
-                    emitAndStopAtLeaves(itemPath, am.get(k), bm.get(k), f1Name, f2Name);
+            inputs.wallNanos = System.nanoTime() - t0;
+            return inputs;
+        }
+
+        /**
+         * Runs on the calling thread until both parsers are done: each path produced by both sides is compared
+         * right away and its rows are kept for the main pass, which replays them in the usual order.
+         */
+        private void compareWhileParsing(SpscRingBuffer<Unit> leftUnits, SpscRingBuffer<Unit> rightUnits, Inputs inputs) {
+            Map<String, JsonNode> waitingLeft = new HashMap<>();
+            Map<String, JsonNode> waitingRight = new HashMap<>();
+            boolean leftOpen = true;
+            boolean rightOpen = true;
+            boolean preferLeft = true;
+            while (leftOpen || rightOpen) {
+                // Alternate sides so neither parser's ring fills up while the other one is drained
+                Unit u = null;
+                boolean fromLeft = preferLeft;
+                long waitStart = 0;
+                for (int attempt = 0; u == null; attempt++) {
+                    fromLeft = preferLeft;
+                    if (preferLeft ? leftOpen : rightOpen) u = (preferLeft ? leftUnits : rightUnits).poll();
+                    if (u == null && (preferLeft ? rightOpen : leftOpen)) {
+                        u = (preferLeft ? rightUnits : leftUnits).poll();
+                        fromLeft = !preferLeft;
+                    }
+                    if (u == null) {
+                        if (attempt == 0) waitStart = System.nanoTime();
+                        SpscRingBuffer.pause(attempt);
+                    }
                 }
-            } else {
-                int max = Math.max(la.size(), ra.size());
-                for (int i = 0; i < max; i++) {
-                    String itemPath = path + "[" + i + "]";
-                    emitAndStopAtLeaves(itemPath, la.get(i), ra.get(i), f1Name, f2Name);
+                if (waitStart != 0) inputs.starvedNanos += System.nanoTime() - waitStart;
+                preferLeft = !fromLeft;
+                if (u.path == null) {
+                    if (fromLeft) leftOpen = false;
+                    else rightOpen = false;
+                    continue;
+                }
+                JsonNode other = (fromLeft ? waitingRight : waitingLeft).remove(u.path);
+                if (other == null) {
+                    (fromLeft ? waitingLeft : waitingRight).put(u.path, u.node);
+                    continue;
                 }
+                long t0 = System.nanoTime();
+                session.compareAhead(u.path, fromLeft ? u.node : other, fromLeft ? other : u.node);
+                inputs.overlapNanos += System.nanoTime() - t0;
+                inputs.overlapUnits++;
             }
         }
-    }
 
-    /**
-     * Case-sensitive comparison.
-     */
-    private boolean scalarEquals(ValueNode a, ValueNode b) {
-        if (a.isTextual() && b.isTextual()) {
-            return a.asText().equals(b.asText());
+        /** Parses one side (timed); with a ring, hands out subtrees as they complete and then an end marker. */
+        private Loaded load(String side, String filename, SpscRingBuffer<Unit> units) throws IOException {
+            // Parsing stops handing out units once the run is abandoned (pool shut down)
+            BooleanSupplier abandoned = Thread.currentThread()::isInterrupted;
+            long t0 = System.nanoTime();
+            try {
+                JsonNode root = loadJson(filename, units == null ? null : (path, node) -> units.put(new Unit(path, node), abandoned));
+                long nanos = System.nanoTime() - t0;
+                metrics.parseTimer(side).record(nanos, TimeUnit.NANOSECONDS);
+                return new Loaded(root, nanos);
+            } finally {
+                if (units != null) units.put(new Unit(null, null), abandoned);
+            }
         }
-        if (a.isNumber() && b.isNumber()) {
-            return a.numberValue().equals(b.numberValue());
+
+        /**
+         * Reads a file path, else (only when no such file exists) a classpath resource; a non-null onUnit receives
+         * subtrees as they are parsed. Read, decompression and parse errors name the input and keep their cause.
+         * Returns null when the run is cancelled or out of time while reading; the comparison then reports it truncated.
+         */
+        private JsonNode loadJson(String filename, BiConsumer<String, JsonNode> onUnit) throws IOException {
+            FileLoadEvent event = new FileLoadEvent();
+            event.begin();
+            Path filePath = Path.of(filename);
+            long bytes;
+            InputStream source;
+            if (Files.exists(filePath)) {
+                bytes = Files.size(filePath);
+                source = Files.newInputStream(filePath);
+            } else {
+                ClassPathResource res = new ClassPathResource(filename);
+                if (!res.exists()) throw new IOException("Resource not found: " + filename);
+                bytes = res.contentLength();
+                source = res.getInputStream();
+            }
+            metrics.inputBytes(bytes);
+            JsonNode node;
+            try (InputStream raw = source; InputStream is = polled(CompressedStreams.decode(tracked(raw)))) {
+                node = readTree(is, onUnit);
+            } catch (InterruptedIOException e) {
+                if (session.getBudget().isExpired()) return null;
+                throw new IOException("Failed to read " + filename + ": " + e.getMessage(), e);
+            } catch (IOException e) {
+                throw new IOException("Failed to read " + filename + ": " + e.getMessage(), e);
+            }
+            commitLoad(event, filename, bytes);
+            return node;
         }
-        if (a.isBoolean() && b.isBoolean()) {
-            return a.booleanValue() == b.booleanValue();
+
+        private JsonNode readTree(InputStream in, BiConsumer<String, JsonNode> onUnit) throws IOException {
+            if (!projection.isEmpty()) {
+                ProjectionReader.Projection p = ProjectionReader.read(mapper, in, projection);
+                projectedBytes.addAndGet(p.bytesMaterialized());
+                skippedBytes.addAndGet(p.bytesSkipped());
+                return p.root();
+            }
+            if (tape) {
+                JsonTape t = JsonTape.read(in, session.getBudget()::isExpired);
+                tapeNodes.accumulateAndGet(t.nodeCount(), Math::max);
+                return t.root();
+            }
+            return onUnit == null ? mapper.readTree(in) : SubtreeStreamReader.read(mapper, in, onUnit);
         }
-        return a.toString().equals(b.toString());
-    }
 
-    private boolean allScalars(ArrayNode arr) {
-        for (JsonNode n : arr) {
-            if (!n.isValueNode()) return false;
+        private InputStream tracked(InputStream in) {
+            return progress != null ? progress.track(in) : in;
         }
-        return true;
-    }
 
-    /**
-     * Helper to get scalar list for comparison (case-sensitive).
-     */
-    private List<String> scalarList(ArrayNode arr) {
-        List<String> out = new ArrayList<>();
-        for (JsonNode n : arr) {
-            ValueNode v = (ValueNode) n;
-            out.add(v.asText());
+        /** Fails reads with InterruptedIOException once the session's budget has expired (cancelled, out of time). */
+        private InputStream polled(InputStream in) {
+            DiffBudget budget = session.getBudget();
+            return new FilterInputStream(in) {
+                @Override
+                public int read() throws IOException {
+                    poll();
+                    return super.read();
+                }
+
+                @Override
+                public int read(byte[] buf, int off, int len) throws IOException {
+                    poll();
+                    return super.read(buf, off, len);
+                }
+
+                private void poll() throws InterruptedIOException {
+                    if (budget.isExpired()) throw new InterruptedIOException("stopped while parsing");
+                }
+            };
         }
-        return out;
-    }
 
-    private Set<String> scalarSet(ArrayNode arr) {
-        Set<String> out = new HashSet<>();
-        for (JsonNode n : arr) {
-            ValueNode v = (ValueNode) n;
-            out.add(v.asText());
+        private void addRow(String[] row) {
+            if (reportWriter != null) reportWriter.accept(row);
+            else if (sorter == null) csvData.add(row);
+            else if ("Truncated".equals(row[0])) trailingRows.add(row);
+            else addSorted(row);
+            if (historyRun != null) historyRun.add(row);
+            reportRows++;
+            if (progress != null) progress.rows(reportRows);
         }
-        return out;
-    }
 
-    private Alignment discoverKey(ArrayNode a, ArrayNode b) {
-        List<String> candidates = Arrays.asList("id", "code", "name", "demographic_PhoneNumberCountryCode");
-        for (String k : candidates) {
-            if (keyExistsInSome(a, k) || keyExistsInSome(b, k)) {
-                return new Alignment(AlignmentType.KEY, k);
+        private void addSorted(String[] row) {
+            try {
+                sorter.add(row);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Spilling sorted run failed", e);
             }
         }
-        return new Alignment(AlignmentType.INDEX, null);
-    }
 
-    private boolean keyExistsInSome(ArrayNode arr, String key) {
-        for (JsonNode n : arr) {
-            if (n.isObject() && n.has(key)) return true;
+        private void writeCsv(Path out) throws IOException {
+            try (var writer = CompressedStreams.openWriter(out, reportCodec, compressAsync)) {
+                if (sorter != null) {
+                    long t0 = System.nanoTime();
+                    writer.write(joinRow(sortedHeader));
+                    writer.write("\n");
+                    sorter.finish(row -> {
+                        writer.write(joinRow(row));
+                        writer.write("\n");
+                    });
+                    for (String[] row : trailingRows) {
+                        writer.write(joinRow(row));
+                        writer.write("\n");
+                    }
+                    System.out.printf("Sort (%s): %d rows, %d runs spilled (%,d bytes), merged and written in %d ms%n",
+                            opts.value("sort"), sorter.getRows(), sorter.getRuns(), sorter.getSpilledBytes(),
+                            millis(System.nanoTime() - t0));
+                    return;
+                }
+                for (String[] row : csvData) {
+                    writer.write(joinRow(row));
+                    writer.write("\n");
+                }
+            }
         }
-        return false;
     }
 
-    private JsonNode loadJson(String filename) throws IOException {
-        try {
-            Path filePath = Path.of(filename);
-            if (Files.exists(filePath)) {
-                return mapper.readTree(Files.newInputStream(filePath));
-            }
-        } catch (Exception ignored) {}
+    /**
+     * Busy share of the pipeline wall time per stage. Parse and compare lose the time they waited on a ring,
+     * so the stage closest to 100% is the bottleneck.
+     */
+    private static void printUtilization(Inputs inputs, PipelinedCsvWriter writer, long wallNanos) {
+        long compareBusy = inputs.overlapNanos + inputs.compareNanos - writer.getBackpressureNanos();
+        System.out.printf("Pipeline: %d ms wall | parse left %s | parse right %s | compare %s "
+                        + "(waiting on parse %d ms, blocked on writer %d ms) | write %s%n",
+                millis(wallNanos),
+                percent(inputs.leftNanos - inputs.leftBlockedNanos, wallNanos),
+                percent(inputs.rightNanos - inputs.rightBlockedNanos, wallNanos),
+                percent(compareBusy, wallNanos), millis(inputs.starvedNanos),
+                millis(writer.getBackpressureNanos()), percent(writer.getBusyNanos(), wallNanos));
+    }
 
-        ClassPathResource res = new ClassPathResource(filename);
-        if (!res.exists()) throw new IOException("Resource not found: " + filename);
-        try (InputStream is = res.getInputStream()) {
-            return mapper.readTree(is);
-        }
+    /** --sort=path: by path; --sort=category: by category, then path. Ties keep the report order. */
+    private static Comparator<String[]> rowOrder(String sort) {
+        if (sort == null) return null;
+        return switch (sort) {
+            case "path" -> Comparator.comparing((String[] row) -> row[1]);
+            case "category" -> Comparator.comparing((String[] row) -> row[0]).thenComparing(row -> row[1]);
+            default -> throw new IllegalArgumentException("--sort must be path or category: " + sort);
+        };
     }
 
-    private boolean isObject(JsonNode n) {
-        return n != null && n.isObject();
+    private static String percent(long part, long whole) {
+        return whole > 0 ? Math.round(100.0 * Math.max(0, part) / whole) + "%" : "-";
     }
 
-    private String pretty(JsonNode n) {
-        if (n == null) return "";
-        if (n.isValueNode()) {
-            ValueNode v = (ValueNode) n;
-            if (v.isTextual()) return "\"" + v.asText() + "\"";
-            return v.toString();
-        }
+    private static Loaded await(Future<Loaded> future) throws Exception {
         try {
-            return mapper.writeValueAsString(n);
-        } catch (IOException e) {
-            return n.toString();
+            return future.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
         }
     }
 
-    private String[] row(String category, String path, String v1, String v2, String details) {
-        return new String[]{category, path, v1, v2, details == null ? "" : details};
+    private static long millis(long nanos) {
+        return nanos / 1_000_000L;
     }
 
-    private void writeCsv(Path out) throws IOException {
-        try (var writer = Files.newBufferedWriter(out, StandardCharsets.UTF_8)) {
-            for (String[] row : csvData) {
-                writer.write(joinRow(row));
-                writer.write("\n");
-            }
+    private static long inputSize(String filename) throws IOException {
+        Path filePath = Path.of(filename);
+        if (Files.exists(filePath)) return Files.size(filePath);
+        ClassPathResource res = new ClassPathResource(filename);
+        return res.exists() ? res.contentLength() : 0;
+    }
+
+    private static void commitLoad(FileLoadEvent event, String filename, long bytes) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.file = filename;
+            event.bytes = bytes;
+            event.commit();
         }
     }
 
-    private String joinRow(String[] row) {
+    private static String joinRow(String[] row) {
         StringBuilder sb = new StringBuilder();
         for (int i = 0; i < row.length; i++) {
             String cell = row[i] == null ? "" : row[i];
@@ -338,4 +732,4 @@ public class RuleDiff {
         }
         return sb.toString();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,330 @@
+package com.example.jsondiff.component;
+
+import com.example.jsondiff.JsonDiffApplication;
+import com.example.jsondiff.util.CompressedStreams;
+import com.example.jsondiff.util.DiffOptions;
+import com.example.jsondiff.util.ShardReportMerger;
+import com.example.jsondiff.util.StructuralReader;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+/**
+ * RuleDiff for inputs too large for one JVM: the boundary keys are split into shards and each shard is diffed
+ * by its own worker process, then the shard reports are merged into the report a single run would write.
+ * - The coordinator streams each input once to list the boundary keys (children of Feature, of a lone wrapper
+ *   object such as BusinessRules, else of the root) and their sizes; it never builds a tree.
+ * - --shards=&lt;n&gt; (default: available processors) shards get the keys by size, largest first. A shard is a
+ *   RuleDiff run that parses only its keys (--only) into its own CSV, with --shard-heap=&lt;size&gt; as its -Xmx.
+ * - {@link ShardReportMerger} k-way merges the shard CSVs back into global path order.
+ * - Rule options (--align-key, --align-learn, --no-moves, --scalar-mode) are passed on; --out and --compress
+ *   apply to the merged report. --shard-dir=&lt;dir&gt; keeps shard reports and logs there (default: a temp dir,
+ *   removed after a successful merge).
+ * Workers are started by a {@link WorkerLauncher}; the default one runs them on this machine.
+ */
+@Component
+public class ShardedDiff {
+
+    private static final String DEFAULT_REPORT = "json_comparison_report.csv";
+    // Forwarded to every worker as given
+    private static final List<String> RULE_OPTIONS = List.of("align-key", "align-learn", "no-moves", "scalar-mode", "tape");
+    // Meaningless per shard (limits, projection), producing no report to merge, or an order other than the
+    // path order the merge writes
+    private static final List<String> UNSUPPORTED = List.of("max-time", "max-nodes", "max-depth", "max-rows",
+            "only", "history", "equal", "summary", "sort");
+
+    /**
+     * Starts the worker of one shard: a RuleDiff run with the given arguments, output going to the log file.
+     * A launcher for several machines would run the same arguments remotely and make the report readable here.
+     */
+    public interface WorkerLauncher {
+        Process start(int shard, List<String> args, Path log) throws IOException;
+    }
+
+    /** Boundary keys of one input, each with the bytes its value spans. */
+    private static final class KeySpace {
+        final Map<String, Long> root = new LinkedHashMap<>();
+        // Children of an object "Feature", and of the first root key while it is an object
+        Map<String, Long> feature;
+        Map<String, Long> first;
+    }
+
+    /** Keys to shard and the path prefix they appear under; null keys means the inputs cannot be split. */
+    private record Plan(String prefix, Map<String, Long> keys) {
+    }
+
+    // Null: localLauncher, set up per run from --shard-heap
+    private final WorkerLauncher launcher;
+
+    public ShardedDiff() {
+        this(null);
+    }
+
+    ShardedDiff(WorkerLauncher launcher) {
+        this.launcher = launcher;
+    }
+
+    public void execute(String... args) throws Exception {
+        DiffOptions opts = DiffOptions.parse(args);
+        for (String name : UNSUPPORTED) {
+            if (opts.has(name)) throw new IllegalArgumentException("--" + name + " is not supported with sharding");
+        }
+        if (opts.positional().size() < 2) throw new IllegalArgumentException("Sharding needs two input files");
+        String left = opts.positional(0);
+        String right = opts.positional(1);
+        int shardCount = Integer.parseInt(opts.value("shards", String.valueOf(Runtime.getRuntime().availableProcessors())));
+        if (shardCount < 1) throw new IllegalArgumentException("--shards must be at least 1: " + shardCount);
+        CompressedStreams.Codec codec = CompressedStreams.codecFromOptions(opts);
+        Path out = Path.of(opts.value("out", DEFAULT_REPORT) + codec.getExtension());
+        boolean keepDir = opts.has("shard-dir");
+        Path dir = keepDir ? Files.createDirectories(Path.of(opts.value("shard-dir")))
+                : Files.createTempDirectory("json-diff-shards");
+
+        long t0 = System.nanoTime();
+        Plan plan = plan(scan(left), scan(right));
+        List<List<String>> shardKeys = assign(plan, shardCount);
+        long scanNanos = System.nanoTime() - t0;
+        System.out.printf("Shard plan: %d keys under %s in %d shards (scan %d ms)%n",
+                plan.keys() == null ? 0 : plan.keys().size(), plan.prefix().isEmpty() ? "$" : plan.prefix(),
+                shardKeys.size(), millis(scanNanos));
+        if (plan.keys() == null) System.out.println("Keys cannot be projected one by one; running a single unsplit shard");
+
+        WorkerLauncher launcher = this.launcher != null ? this.launcher : localLauncher(opts.value("shard-heap"), dir);
+        List<ShardReportMerger.Shard> shards = new ArrayList<>();
+        List<Process> workers = new ArrayList<>();
+        List<CompletableFuture<Long>> doneNanos = new ArrayList<>();
+        long t1 = System.nanoTime();
+        try {
+            for (int i = 0; i < shardKeys.size(); i++) {
+                Path report = dir.resolve("shard-" + i + ".csv");
+                List<String> workerArgs = new ArrayList<>(List.of(left, right, "--out=" + report));
+                if (plan.keys() != null) {
+                    for (String key : shardKeys.get(i)) workerArgs.add("--only=" + plan.prefix() + key);
+                }
+                for (String name : RULE_OPTIONS) {
+                    List<String> values = opts.values(name);
+                    if (opts.has(name) && values.isEmpty()) workerArgs.add("--" + name);
+                    for (String value : values) workerArgs.add("--" + name + "=" + value);
+                }
+                Process worker = launcher.start(i, workerArgs, dir.resolve("shard-" + i + ".log"));
+                doneNanos.add(worker.onExit().thenApply(p -> System.nanoTime()));
+                workers.add(worker);
+                shards.add(new ShardReportMerger.Shard(report, shardKeys.get(i)));
+            }
+            for (int i = 0; i < workers.size(); i++) {
+                int code = workers.get(i).waitFor();
+                if (code != 0) {
+                    throw new IOException("Shard " + i + " failed with exit code " + code + "; see " + dir.resolve("shard-" + i + ".log"));
+                }
+            }
+        } finally {
+            for (Process worker : workers) {
+                if (worker.isAlive()) worker.destroyForcibly();
+            }
+        }
+        long workNanos = System.nanoTime() - t1;
+        for (int i = 0; i < shards.size(); i++) {
+            long bytes = 0;
+            if (plan.keys() != null) {
+                for (String key : shardKeys.get(i)) bytes += plan.keys().get(key);
+            }
+            System.out.printf("  shard %d: %d keys, %,d input bytes, %d ms%n", i, shardKeys.get(i).size(), bytes,
+                    millis(doneNanos.get(i).join() - t1));
+        }
+
+        long t2 = System.nanoTime();
+        try (Writer writer = CompressedStreams.openWriter(out, codec, opts.has("compress-async"))) {
+            if (plan.keys() == null) {
+                try (var reader = Files.newBufferedReader(shards.get(0).report(), StandardCharsets.UTF_8)) {
+                    reader.transferTo(writer);
+                }
+            } else {
+                long rows = ShardReportMerger.merge(shards, plan.prefix(), writer);
+                System.out.printf("Merged %d rows from %d shard reports%n", rows, shards.size());
+            }
+        }
+        long mergeNanos = System.nanoTime() - t2;
+        System.out.printf("Timing (sharded): scan %d ms, workers %d ms wall, merge %d ms%n",
+                millis(scanNanos), millis(workNanos), millis(mergeNanos));
+        System.out.println("✅ CSV Report generated: " + out.toAbsolutePath());
+
+        if (!keepDir) {
+            try (Stream<Path> files = Files.list(dir)) {
+                for (Path file : (Iterable<Path>) files::iterator) Files.delete(file);
+            }
+            Files.delete(dir);
+        }
+    }
+
+    /**
+     * Same boundary as the diff engine: Feature's children when either side has that object, the children of a
+     * lone wrapper object present on both sides, else the root's children. Keys a projection path cannot name
+     * ('.' or '[' inside, or empty) leave the inputs unsplit.
+     */
+    private static Plan plan(KeySpace l, KeySpace r) {
+        String prefix;
+        String wrapper = null;
+        Map<String, Long> keys = new HashMap<>();
+        if (l.feature != null || r.feature != null) {
+            prefix = "Feature.";
+            addSizes(keys, l.feature);
+            addSizes(keys, r.feature);
+        } else if (l.root.size() == 1 && l.first != null && r.first != null && l.root.keySet().equals(r.root.keySet())) {
+            wrapper = l.root.keySet().iterator().next();
+            prefix = wrapper + ".";
+            addSizes(keys, l.first);
+            addSizes(keys, r.first);
+        } else {
+            prefix = "";
+            addSizes(keys, l.root);
+            addSizes(keys, r.root);
+        }
+        boolean projectable = !keys.isEmpty() && (wrapper == null || isSegment(wrapper));
+        for (String key : keys.keySet()) {
+            if (!isSegment(key)) projectable = false;
+        }
+        return new Plan(prefix, projectable ? keys : null);
+    }
+
+    private static boolean isSegment(String name) {
+        return !name.isEmpty() && name.indexOf('.') < 0 && name.indexOf('[') < 0;
+    }
+
+    private static void addSizes(Map<String, Long> into, Map<String, Long> sizes) {
+        if (sizes != null) sizes.forEach((k, v) -> into.merge(k, v, Long::sum));
+    }
+
+    /** Largest key first onto the least loaded shard; each shard's keys end up in path order. */
+    private static List<List<String>> assign(Plan plan, int shardCount) {
+        if (plan.keys() == null) return List.of(List.of());
+        List<String> bySize = new ArrayList<>(plan.keys().keySet());
+        bySize.sort(Comparator.comparing((String k) -> plan.keys().get(k)).reversed().thenComparing(Comparator.naturalOrder()));
+        int n = Math.min(shardCount, bySize.size());
+        List<List<String>> shards = new ArrayList<>();
+        long[] load = new long[n];
+        for (int i = 0; i < n; i++) shards.add(new ArrayList<>());
+        for (String key : bySize) {
+            int min = 0;
+            for (int i = 1; i < n; i++) {
+                if (load[i] < load[min]) min = i;
+            }
+            shards.get(min).add(key);
+            load[min] += plan.keys().get(key);
+        }
+        for (List<String> keys : shards) keys.sort(null);
+        return shards;
+    }
+
+    /**
+     * Skims one input over its structural index and records the boundary key candidates with their byte spans
+     * (value start to the following ',' or '}'); values are skipped bracket to bracket, never tokenized.
+     */
+    private static KeySpace scan(String filename) throws IOException {
+        KeySpace space = new KeySpace();
+        try (StructuralReader r = new StructuralReader(CompressedStreams.decode(open(filename)))) {
+            if (r.next() != '{') return space;
+            int c = r.next();
+            while (c == '"') {
+                String name = r.string();
+                r.next(); // ':'
+                int value = r.next();
+                long start = r.offset();
+                boolean feature = name.equals("Feature");
+                if (value == '{' && (feature || space.root.isEmpty())) {
+                    Map<String, Long> children = scanChildren(r);
+                    if (feature) space.feature = children;
+                    if (space.root.isEmpty()) space.first = children;
+                } else {
+                    r.skipValue();
+                }
+                c = r.next();
+                space.root.merge(name, r.offset() - start, Long::sum);
+                // The first key's children only matter while it is the sole root key
+                if (space.root.size() > 1) space.first = null;
+                if (c == ',') c = r.next();
+            }
+        }
+        return space;
+    }
+
+    /** Reader on '{'; returns on its '}'. */
+    private static Map<String, Long> scanChildren(StructuralReader r) throws IOException {
+        Map<String, Long> children = new LinkedHashMap<>();
+        int c = r.next();
+        while (c == '"') {
+            String name = r.string();
+            r.next(); // ':'
+            r.next();
+            long start = r.offset();
+            r.skipValue();
+            c = r.next();
+            children.merge(name, r.offset() - start, Long::sum);
+            if (c == ',') c = r.next();
+        }
+        return children;
+    }
+
+    /** A file path, else a classpath resource (as RuleDiff resolves its inputs). */
+    private static InputStream open(String filename) throws IOException {
+        Path path = Path.of(filename);
+        if (Files.exists(path)) return Files.newInputStream(path);
+        ClassPathResource res = new ClassPathResource(filename);
+        if (!res.exists()) throw new IOException("Resource not found: " + filename);
+        return res.getInputStream();
+    }
+
+    /**
+     * Child JVMs on this machine with the coordinator's java and classpath (a Spring Boot jar is started with
+     * -jar). The command line goes through an @argfile, so thousands of --only paths fit.
+     */
+    static WorkerLauncher localLauncher(String heap, Path dir) {
+        return (shard, args, log) -> {
+            List<String> command = new ArrayList<>();
+            if (heap != null) command.add("-Xmx" + heap);
+            // Workers get the vector structural scan too when the coordinator has it
+            if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+                command.add("--add-modules");
+                command.add("jdk.incubator.vector");
+            }
+            String classPath = System.getProperty("java.class.path");
+            if (classPath.endsWith(".jar") && !classPath.contains(File.pathSeparator)) {
+                command.add("-jar");
+                command.add(classPath);
+            } else {
+                command.add("-cp");
+                command.add(classPath);
+                command.add(JsonDiffApplication.class.getName());
+            }
+            command.addAll(args);
+            command.add("--spring.main.banner-mode=off");
+            StringBuilder argFile = new StringBuilder();
+            for (String arg : command) argFile.append(quote(arg)).append('\n');
+            Path argPath = dir.resolve("shard-" + shard + ".args");
+            Files.writeString(argPath, argFile, StandardCharsets.UTF_8);
+            String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+            return new ProcessBuilder(java, "@" + argPath)
+                    .redirectErrorStream(true)
+                    .redirectOutput(log.toFile())
+                    .start();
+        };
+    }
+
+    /** Argfile quoting: double quotes, with backslashes and quotes escaped. */
+    private static String quote(String arg) {
+        return "\"" + arg.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    private static long millis(long nanos) {
+        return nanos / 1_000_000L;
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.jsondiff.engine;
+
+/**
+ * Cooperative cancellation flag checked by {@link DiffTraversal} between nodes.
+ * Safe to cancel from any thread; the running diff stops at the next node and reports a truncated result.
+ * A child token is also cancelled when its parent is; cancelling the child leaves the parent alone.
+ */
+public class CancellationToken {
+
+    private final CancellationToken parent;
+    private volatile boolean cancelled;
+
+    public CancellationToken() {
+        this(null);
+    }
+
+    public CancellationToken(CancellationToken parent) {
+        this.parent = parent;
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled || (parent != null && parent.isCancelled());
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.jsondiff.engine;
+
+import java.util.function.Consumer;
+
+/**
+ * Renders diff events as RuleDiff report rows: Category, Path, left value, right value, Details.
+ * The labels name the two inputs in "Present only in ..." details.
+ */
+public class CsvRowListener implements DiffListener {
+
+    private final String leftLabel;
+    private final String rightLabel;
+    private final Consumer<String[]> rows;
+
+    public CsvRowListener(String leftLabel, String rightLabel, Consumer<String[]> rows) {
+        this.leftLabel = leftLabel;
+        this.rightLabel = rightLabel;
+        this.rows = rows;
+    }
+
+    @Override
+    public void onPresent(String path, DiffValue left, DiffValue right) {
+        rows.accept(row("Present", path, text(left), text(right), ""));
+    }
+
+    @Override
+    public void onMissing(String path, DiffValue left, DiffValue right) {
+        if (left == null) {
+            rows.accept(row("Missing", path, "", text(right), "Present only in " + rightLabel));
+        } else {
+            rows.accept(row("Missing", path, text(left), "", "Present only in " + leftLabel));
+        }
+    }
+
+    @Override
+    public void onModified(String path, DiffValue left, DiffValue right, String details) {
+        rows.accept(row("Modified", path, text(left), text(right), details));
+    }
+
+    @Override
+    public void onTypeMismatch(String path, DiffValue left, DiffValue right) {
+        rows.accept(row("Modified", path, text(left), text(right), "Type mismatch"));
+    }
+
+    @Override
+    public void onMoved(String path, int fromIndex, int toIndex) {
+        rows.accept(row("Moved", path, "[" + fromIndex + "]", "[" + toIndex + "]",
+                "Moved from index " + fromIndex + " to " + toIndex));
+    }
+
+    @Override
+    public void onTruncated(String reason) {
+        rows.accept(row("Truncated", "", "", "", "Report truncated: " + reason));
+    }
+
+    private static String text(DiffValue v) {
+        return v == null ? "" : v.text();
+    }
+
+    private static String[] row(String category, String path, String v1, String v2, String details) {
+        return new String[]{category, path, v1, v2, details == null ? "" : details};
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.jsondiff.engine;
+
+import com.example.jsondiff.util.DiffOptions;
+
+/**
+ * Limits for one diff run: wall time, compared nodes, nesting depth and output rows, plus a cancellation token.
+ * - Time, node and row limits and cancellation stop the run; depth only skips pairs nested too deep.
+ * - The clock starts with the budget, so a run that creates it before parsing has parsing counted too;
+ *   parsers and array matching poll {@link #isExpired()}.
+ * - Whatever was produced before a limit hit is kept; {@link #isTruncated()} tells callers it is partial.
+ * One instance per run (it counts); not thread-safe apart from the token.
+ */
+public class DiffBudget {
+
+    // Clock reads are amortized over this many nodes
+    private static final int TIME_CHECK_INTERVAL = 1024;
+
+    private final long maxNanos;
+    private final long maxNodes;
+    private final int maxDepth;
+    private final long maxRows;
+    private final CancellationToken token;
+
+    private final long startNanos = System.nanoTime();
+    private long nodes;
+    private long rows;
+    private boolean stopped;
+    private String truncatedReason;
+
+    public DiffBudget(long maxMillis, long maxNodes, int maxDepth, long maxRows, CancellationToken token) {
+        this.maxNanos = maxMillis > 0 ? maxMillis * 1_000_000L : Long.MAX_VALUE;
+        this.maxNodes = maxNodes > 0 ? maxNodes : Long.MAX_VALUE;
+        this.maxDepth = maxDepth > 0 ? maxDepth : Integer.MAX_VALUE;
+        this.maxRows = maxRows > 0 ? maxRows : Long.MAX_VALUE;
+        this.token = token != null ? token : new CancellationToken();
+    }
+
+    public static DiffBudget unlimited() {
+        return new DiffBudget(0, 0, 0, 0, null);
+    }
+
+    /**
+     * Reads --max-time=&lt;n&gt;[ms|s|m] (a bare number is milliseconds), --max-nodes=&lt;n&gt;, --max-depth=&lt;n&gt; and --max-rows=&lt;n&gt;;
+     * absent or 0 means unlimited.
+     */
+    public static DiffBudget fromOptions(DiffOptions opts, CancellationToken token) {
+        return new DiffBudget(
+                parseMillis(opts.value("max-time", "0")),
+                Long.parseLong(opts.value("max-nodes", "0")),
+                Integer.parseInt(opts.value("max-depth", "0")),
+                Long.parseLong(opts.value("max-rows", "0")),
+                token);
+    }
+
+    /** True when a time, node, depth or row limit is set; a cancellation token alone does not count. */
+    public boolean isLimited() {
+        return maxNanos != Long.MAX_VALUE || maxNodes != Long.MAX_VALUE
+                || maxDepth != Integer.MAX_VALUE || maxRows != Long.MAX_VALUE;
+    }
+
+    /**
+     * True once the token is cancelled or the wall time is spent. Counts nothing and changes nothing, so any
+     * thread may poll it (parser threads, array matching); the run records the stop at its next {@link #shouldStop()}.
+     */
+    public boolean isExpired() {
+        return token.isCancelled() || System.nanoTime() - startNanos > maxNanos;
+    }
+
+    /**
+     * Stops the run when {@link #isExpired()}, without counting a node; e.g. before comparing inputs whose
+     * parsing was cut short. Owning thread only.
+     */
+    public boolean checkExpired() {
+        if (stopped) return true;
+        if (token.isCancelled()) return stop("cancelled");
+        if (System.nanoTime() - startNanos > maxNanos) return stop(timeExceeded());
+        return false;
+    }
+
+    /** Counts one node; true once the run must stop (cancelled, node or time budget spent, row limit hit). */
+    public boolean shouldStop() {
+        if (stopped) return true;
+        if (token.isCancelled()) return stop("cancelled");
+        if (++nodes > maxNodes) return stop("max nodes " + maxNodes + " reached");
+        if ((nodes & (TIME_CHECK_INTERVAL - 1)) == 0 && System.nanoTime() - startNanos > maxNanos) {
+            return stop(timeExceeded());
+        }
+        return false;
+    }
+
+    /** False (and marks the run truncated) when a pair at this depth must be skipped. */
+    public boolean admitDepth(int depth) {
+        if (depth <= maxDepth) return true;
+        if (truncatedReason == null) truncatedReason = "max depth " + maxDepth + " reached";
+        return false;
+    }
+
+    /** False once the row limit is reached; the row must then be dropped. */
+    public boolean admitRow() {
+        if (rows >= maxRows) {
+            stop("max rows " + maxRows + " reached");
+            return false;
+        }
+        rows++;
+        return true;
+    }
+
+    public boolean isTruncated() {
+        return truncatedReason != null;
+    }
+
+    public String getTruncatedReason() {
+        return truncatedReason;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public CancellationToken getToken() {
+        return token;
+    }
+
+    private boolean stop(String reason) {
+        // A hard stop overrides an earlier depth note
+        if (!stopped) truncatedReason = reason;
+        stopped = true;
+        return true;
+    }
+
+    private String timeExceeded() {
+        return "time budget " + maxNanos / 1_000_000L + "ms exceeded";
+    }
+
+    private static long parseMillis(String s) {
+        s = s.trim().toLowerCase();
+        if (s.endsWith("ms")) return Long.parseLong(s.substring(0, s.length() - 2));
+        if (s.endsWith("s")) return Long.parseLong(s.substring(0, s.length() - 1)) * 1000L;
+        if (s.endsWith("m")) return Long.parseLong(s.substring(0, s.length() - 1)) * 60_000L;
+        return Long.parseLong(s);
+    }
+}
@@ -0,0 +1,388 @@
+package com.example.jsondiff.engine;
+
+import com.example.jsondiff.jfr.ArrayAlignmentEvent;
+import com.example.jsondiff.jfr.SubtreeCompareEvent;
+import com.example.jsondiff.util.AlignmentKeyResolver;
+import com.example.jsondiff.util.ArrayItemMatcher;
+import com.example.jsondiff.util.DiffMetrics;
+import com.example.jsondiff.util.DiffOptions;
+import com.example.jsondiff.util.JsonMappers;
+import com.example.jsondiff.util.ScalarComparator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ValueNode;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiPredicate;
+
+/**
+ * Rule comparison of two JSON documents, reported as {@link DiffListener} events (one per report row).
+ * - Stateless and reentrant: every diff runs in its own {@link Session} (traversal, budget, alignment key
+ *   cache, replay state, listener); the engine only holds thread-safe collaborators, so one instance can
+ *   serve any number of diffs at once.
+ * - Settings come from the RuleDiff options: --align-key, --align-learn, --no-moves, --scalar-mode,
+ *   --max-time/--max-nodes/--max-depth/--max-rows, --jfr-array-threshold.
+ */
+public final class DiffEngine {
+
+    private final ObjectMapper mapper;
+    private final DiffMetrics metrics;
+
+    public DiffEngine() {
+        this(JsonMappers.newMapper(), new DiffMetrics());
+    }
+
+    public DiffEngine(ObjectMapper mapper, DiffMetrics metrics) {
+        this.mapper = mapper;
+        this.metrics = metrics;
+    }
+
+    /** Compares two documents, reporting every admitted event to listener on the calling thread. */
+    public Session diff(JsonNode left, JsonNode right, DiffOptions opts, CancellationToken token, DiffListener listener) {
+        Session session = newSession(opts, token, listener);
+        session.compare(left, right);
+        return session;
+    }
+
+    /** Starts a diff whose comparison may be split: {@link Session#compareAhead} first, then {@link Session#compare}. */
+    public Session newSession(DiffOptions opts, CancellationToken token, DiffListener listener) {
+        return new Session(opts, token, listener);
+    }
+
+    /** Event kinds with the report category each one counts under (budget, metrics). */
+    private enum Kind {
+        PRESENT("Present"), MISSING("Missing"), MODIFIED("Modified"), TYPE_MISMATCH("Modified"), MOVED("Moved");
+
+        final String category;
+
+        Kind(String category) {
+            this.category = category;
+        }
+    }
+
+    /** One listener call, held while a subtree compared ahead waits to be replayed; MOVED keeps its indexes in from/to. */
+    private record Event(Kind kind, String path, DiffValue left, DiffValue right, String details, int from, int to) {
+    }
+
+    /** Events of a pair compared ahead of the main pass. */
+    private record Precomputed(JsonNode left, JsonNode right, List<Event> events) {
+    }
+
+    /** Note attached to a keyless array item paired across different indexes. */
+    private record Move(int from, int to) {
+    }
+
+    /**
+     * State of one diff. Not thread-safe: one thread drives a session (compareAhead and compare may
+     * come from different threads only if handed over safely), except {@link #getPublishedVisited()}.
+     */
+    public final class Session {
+        private final DiffListener listener;
+        private final DiffTraversal traversal = new DiffTraversal();
+        private final AlignmentKeyResolver alignmentKeys;
+        private final boolean detectMoves;
+        private final ScalarComparator scalars;
+        // Arrays with at least this many items on either side emit an ArrayAlignmentEvent
+        private final int jfrArrayThreshold;
+        private final RulePolicy policy = new RulePolicy();
+        // Subtrees compared ahead of the main pass, by path; replayed by it
+        private final Map<String, Precomputed> precomputed = new HashMap<>();
+        // Non-null while such a subtree is being compared; emit() collects its events here
+        private List<Event> replayBuffer;
+        // Pairs it accepts are known to be identical: no events, no descent
+        private BiPredicate<JsonNode, JsonNode> identical;
+        private long events;
+
+        private Session(DiffOptions opts, CancellationToken token, DiffListener listener) {
+            this.listener = listener;
+            traversal.setBudget(DiffBudget.fromOptions(opts, token));
+            alignmentKeys = AlignmentKeyResolver.fromOptions(opts);
+            detectMoves = !opts.has("no-moves");
+            scalars = ScalarComparator.fromOptions(opts);
+            jfrArrayThreshold = Integer.parseInt(opts.value("jfr-array-threshold", "100"));
+        }
+
+        /**
+         * Compares one subtree before the main pass (e.g. while the documents are still being parsed).
+         * Its events are held back; {@link #compare} replays them in place when it reaches the same nodes.
+         */
+        public void compareAhead(String path, JsonNode l, JsonNode r) {
+            traversal.setSubtreeDepth(1);
+            List<Event> buffered = new ArrayList<>();
+            replayBuffer = buffered;
+            try {
+                traversal.compare(path, l, r, policy);
+            } finally {
+                replayBuffer = null;
+            }
+            precomputed.put(path, new Precomputed(l, r, buffered));
+        }
+
+        /**
+         * Main pass: the children of "Feature" when either side has that object, else of the root.
+         * Ends with {@link DiffListener#onTruncated} when a limit or cancellation stopped it; a budget already
+         * spent (e.g. while parsing, which may then have left a side null) compares nothing.
+         */
+        public void compare(JsonNode left, JsonNode right) {
+            boolean useFeatureBoundary =
+                    ((left != null && left.has("Feature")) || (right != null && right.has("Feature"))) &&
+                            ((left != null && left.get("Feature") != null && left.get("Feature").isObject()) ||
+                                    (right != null && right.get("Feature") != null && right.get("Feature").isObject()));
+            DiffBudget budget = traversal.getBudget();
+            try {
+                if (budget.checkExpired()) {
+                    // Spent before the main pass: nothing is compared, only the truncation is reported
+                } else if (useFeatureBoundary) {
+                    compareBoundaryObject(left.get("Feature"), right.get("Feature"), "Feature");
+                } else {
+                    compareBoundaryObject(left, right, "$");
+                }
+            } finally {
+                precomputed.clear();
+            }
+            if (budget.isTruncated()) {
+                listener.onTruncated(budget.getTruncatedReason());
+            }
+        }
+
+        /**
+         * Pairs (present on both sides) the predicate accepts are skipped as identical: no events, not even
+         * Present ones, and nothing below them is visited. Meant for difference-only checks, e.g. fingerprints.
+         */
+        public void setIdentical(BiPredicate<JsonNode, JsonNode> identical) {
+            this.identical = identical;
+        }
+
+        public DiffBudget getBudget() {
+            return traversal.getBudget();
+        }
+
+        /** Node pairs visited so far; owning thread only. */
+        public long getVisited() {
+            return traversal.getVisited();
+        }
+
+        /** Slightly stale node count, safe to read from other threads (progress). */
+        public long getPublishedVisited() {
+            return traversal.getPublishedVisited();
+        }
+
+        public AlignmentKeyResolver getAlignmentKeys() {
+            return alignmentKeys;
+        }
+
+        /** Events delivered to the listener, not counting onTruncated. */
+        public long getEvents() {
+            return events;
+        }
+
+        private void compareBoundaryObject(JsonNode leftObj, JsonNode rightObj, String boundaryPath) {
+            // A lone wrapper object (e.g. BusinessRules) is not an interesting subtree; profile one level below it
+            JsonNode probe = leftObj != null && leftObj.isObject() ? leftObj : rightObj;
+            boolean wrapper = probe != null && probe.size() == 1 && probe.elements().next().isObject();
+            traversal.setSubtreeDepth(wrapper ? 2 : 1);
+            traversal.compareBoundary(boundaryPath, leftObj, rightObj, policy);
+        }
+
+        private void emit(Kind kind, String path, DiffValue left, DiffValue right, String details) {
+            emit(kind, path, left, right, details, -1, -1);
+        }
+
+        private void emit(Event e) {
+            emit(e.kind, e.path, e.left, e.right, e.details, e.from, e.to);
+        }
+
+        /** Delivers an event, or holds it as an {@link Event} while a subtree is compared ahead. */
+        private void emit(Kind kind, String path, DiffValue left, DiffValue right, String details, int from, int to) {
+            if (replayBuffer != null) {
+                replayBuffer.add(new Event(kind, path, left, right, details, from, to));
+                return;
+            }
+            if (!traversal.getBudget().admitRow()) return;
+            events++;
+            metrics.row(kind.category);
+            switch (kind) {
+                case PRESENT -> listener.onPresent(path, left, right);
+                case MISSING -> listener.onMissing(path, left, right);
+                case MODIFIED -> listener.onModified(path, left, right, details);
+                case TYPE_MISMATCH -> listener.onTypeMismatch(path, left, right);
+                case MOVED -> listener.onMoved(path, from, to);
+            }
+        }
+
+        /** Row rules per node pair; arrays of objects hand their aligned items back to the traversal. */
+        private class RulePolicy implements DiffPolicy {
+            private SubtreeCompareEvent subtreeEvent;
+
+            @Override
+            public void onMissing(String path, JsonNode lNode, JsonNode rNode) {
+                emit(Kind.MISSING, path, value(lNode), value(rNode), null);
+            }
+
+            @Override
+            public void onTypeMismatch(String path, JsonNode lNode, JsonNode rNode) {
+                emit(Kind.TYPE_MISMATCH, path, value(lNode), value(rNode), null);
+            }
+
+            @Override
+            public boolean onObject(String path, JsonNode lNode, JsonNode rNode) {
+                emit(Kind.PRESENT, path, DiffValue.shape(lNode), DiffValue.shape(rNode), null);
+                return true;
+            }
+
+            @Override
+            public void onArray(String path, ArrayNode la, ArrayNode ra, DiffTraversal traversal) {
+                handleArrayComparison(path, la, ra, traversal);
+            }
+
+            @Override
+            public void onScalar(String path, ValueNode lNode, ValueNode rNode) {
+                if (scalars.equals(lNode, rNode)) {
+                    emit(Kind.PRESENT, path, value(lNode), value(rNode), null);
+                } else {
+                    emit(Kind.MODIFIED, path, value(lNode), value(rNode), "Value mismatch");
+                }
+            }
+
+            @Override
+            public void onSubtreeStart(String path) {
+                subtreeEvent = new SubtreeCompareEvent();
+                subtreeEvent.begin();
+            }
+
+            @Override
+            public void onSubtreeEnd(String path, long nodes) {
+                subtreeEvent.end();
+                // nodes == 0: replayed, already recorded when it was compared ahead
+                if (nodes > 0 && subtreeEvent.shouldCommit()) {
+                    subtreeEvent.path = path;
+                    subtreeEvent.nodes = nodes;
+                    subtreeEvent.commit();
+                }
+            }
+
+            @Override
+            public boolean onReplay(String path, JsonNode lNode, JsonNode rNode) {
+                if (identical != null && identical.test(lNode, rNode)) return true;
+                if (precomputed.isEmpty()) return false;
+                Precomputed done = precomputed.get(path);
+                // Same path but other nodes (e.g. a duplicate key replaced it): compare normally
+                if (done == null || done.left != lNode || done.right != rNode) return false;
+                precomputed.remove(path);
+                done.events.forEach(Session.this::emit);
+                return true;
+            }
+
+            @Override
+            public void onNote(String path, JsonNode lNode, JsonNode rNode, Object note) {
+                Move move = (Move) note;
+                emit(Kind.MOVED, path, null, null, null, move.from, move.to);
+            }
+        }
+
+        /**
+         * Specialized handler for arrays.
+         */
+        private void handleArrayComparison(String path, ArrayNode la, ArrayNode ra, DiffTraversal traversal) {
+            boolean lScalars = allScalars(la);
+            boolean rScalars = allScalars(ra);
+
+            if (lScalars && rScalars) {
+                // Leaf logic for scalar arrays
+                if (scalarArrayEquals(la, ra)) {
+                    emit(Kind.PRESENT, path, value(la), value(ra), null);
+                } else {
+                    emit(Kind.MODIFIED, path, value(la), value(ra), "Value mismatch (Scalar array content)");
+                }
+                return;
+            }
+            // Complex logic for arrays of objects
+            emit(Kind.PRESENT, path, DiffValue.shape(la), DiffValue.shape(ra), null);
+
+            ArrayAlignmentEvent event = new ArrayAlignmentEvent();
+            event.begin();
+            long t0 = System.nanoTime();
+            String key = alignmentKeys.resolve(path, la, ra);
+            String mode;
+            if (key != null) {
+                mode = "key";
+                // Selector -> item; items lacking the key keep their index as selector
+                Map<String, JsonNode> am = keyedItems(la, key);
+                Map<String, JsonNode> bm = keyedItems(ra, key);
+
+                Set<String> allKeys = new TreeSet<>(am.keySet());
+                allKeys.addAll(bm.keySet());
+
+                for (String k : allKeys) {
+                    traversal.push(path + "[" + k + "]", am.get(k), bm.get(k));
+                }
+            } else if (detectMoves) {
+                mode = "similarity";
+                // Keyless: pair moved/similar items, path shows both indexes when they differ
+                ArrayItemMatcher.Pairing pairing = ArrayItemMatcher.match(la, ra, traversal.getBudget()::isExpired);
+                for (int i = 0; i < la.size(); i++) {
+                    int j = pairing.rightOf[i];
+                    if (pairing.isMoved(i)) {
+                        traversal.push(path + "[" + i + "->" + j + "]", la.get(i), ra.get(j), new Move(i, j));
+                    } else {
+                        traversal.push(path + "[" + i + "]", la.get(i), j >= 0 ? ra.get(j) : null);
+                    }
+                }
+                for (int j = 0; j < ra.size(); j++) {
+                    if (!pairing.rightMatched[j]) {
+                        traversal.push(path + "[" + j + "]", null, ra.get(j));
+                    }
+                }
+            } else {
+                mode = "index";
+                int max = Math.max(la.size(), ra.size());
+                for (int i = 0; i < max; i++) {
+                    traversal.push(path + "[" + i + "]", la.get(i), ra.get(i));
+                }
+            }
+            metrics.arrayTimer(mode).record(System.nanoTime() - t0, TimeUnit.NANOSECONDS);
+            event.end();
+            if (Math.max(la.size(), ra.size()) >= jfrArrayThreshold && event.shouldCommit()) {
+                event.path = path;
+                event.mode = mode;
+                event.leftSize = la.size();
+                event.rightSize = ra.size();
+                event.commit();
+            }
+        }
+    }
+
+    private static boolean allScalars(ArrayNode arr) {
+        for (JsonNode n : arr) {
+            if (!n.isValueNode()) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Element-wise text comparison of scalar arrays (case-sensitive), without building string lists.
+     */
+    private static boolean scalarArrayEquals(ArrayNode la, ArrayNode ra) {
+        if (la.size() != ra.size()) return false;
+        for (int i = 0; i < la.size(); i++) {
+            if (!ScalarComparator.textEquals(la.get(i), ra.get(i))) return false;
+        }
+        return true;
+    }
+
+    private static Map<String, JsonNode> keyedItems(ArrayNode arr, String key) {
+        Map<String, JsonNode> out = new LinkedHashMap<>();
+        for (int i = 0; i < arr.size(); i++) {
+            JsonNode n = arr.get(i);
+            JsonNode k = n.get(key);
+            out.put(k != null ? key + "=" + k.asText() : String.valueOf(i), n);
+        }
+        return out;
+    }
+
+    private DiffValue value(JsonNode n) {
+        return DiffValue.of(n, mapper);
+    }
+}
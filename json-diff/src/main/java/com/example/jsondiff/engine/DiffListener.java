@@ -0,0 +1,35 @@
+package com.example.jsondiff.engine;
+
+/**
+ * Outcome callbacks of a {@link DiffEngine} diff, one per report row, in report order.
+ * - Values are {@link DiffValue}s: the nodes are at hand, text is only rendered when asked for,
+ *   so a listener that counts, filters or forwards events builds no strings.
+ * - Calls come from the thread running the diff; every method defaults to doing nothing.
+ * {@link CsvRowListener} turns events back into report rows.
+ */
+public interface DiffListener {
+
+    /** Present on both sides and equal (objects and arrays of objects: same shape, children follow). */
+    default void onPresent(String path, DiffValue left, DiffValue right) {
+    }
+
+    /** Present on one side only; the other side is null. */
+    default void onMissing(String path, DiffValue left, DiffValue right) {
+    }
+
+    /** Same type on both sides, different value; details says which rule found it. */
+    default void onModified(String path, DiffValue left, DiffValue right, String details) {
+    }
+
+    /** Present on both sides with different node types. */
+    default void onTypeMismatch(String path, DiffValue left, DiffValue right) {
+    }
+
+    /** Keyless array item found at another index on the right; its contents are compared next. */
+    default void onMoved(String path, int fromIndex, int toIndex) {
+    }
+
+    /** The diff stopped early (limit or cancellation); no events follow. */
+    default void onTruncated(String reason) {
+    }
+}
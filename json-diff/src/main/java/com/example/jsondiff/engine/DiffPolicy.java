@@ -0,0 +1,56 @@
+package com.example.jsondiff.engine;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ValueNode;
+
+/**
+ * Rule callbacks plugged into {@link DiffTraversal}.
+ * The traversal decides the node kind; the policy decides what to emit and whether to go deeper.
+ */
+public interface DiffPolicy {
+
+    /** Node present on one side only; exactly one of l/r is non-null. */
+    void onMissing(String path, JsonNode l, JsonNode r);
+
+    /** Both present, node types differ. */
+    void onTypeMismatch(String path, JsonNode l, JsonNode r);
+
+    /**
+     * Both sides are objects.
+     *
+     * @return true to descend into the union of child keys (visited in sorted key order).
+     */
+    boolean onObject(String path, JsonNode l, JsonNode r);
+
+    /**
+     * Both sides are arrays. Item pairs to compare further are handed back with
+     * {@link DiffTraversal#push}; they are visited in push order right after this call.
+     */
+    void onArray(String path, ArrayNode l, ArrayNode r, DiffTraversal traversal);
+
+    /** Both sides are scalars of the same node type. */
+    void onScalar(String path, ValueNode l, ValueNode r);
+
+    /** Called before a pair at the traversal's subtree depth (by default a boundary child) is compared. */
+    default void onSubtreeStart(String path) {
+    }
+
+    /** Called once that subtree is done; {@code nodes} counts the pairs compared inside it. */
+    default void onSubtreeEnd(String path, long nodes) {
+    }
+
+    /**
+     * Called before a pair present on both sides is compared.
+     *
+     * @return true when the policy already has the outcome of this pair (e.g. it was compared ahead of time)
+     * and has emitted it itself; the pair and everything below it are then skipped.
+     */
+    default boolean onReplay(String path, JsonNode l, JsonNode r) {
+        return false;
+    }
+
+    /** Called just before a pair pushed with a note is compared. */
+    default void onNote(String path, JsonNode l, JsonNode r, Object note) {
+    }
+}
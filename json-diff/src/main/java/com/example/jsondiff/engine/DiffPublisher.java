@@ -0,0 +1,227 @@
+package com.example.jsondiff.engine;
+
+import com.example.jsondiff.model.DiffEntry;
+import com.example.jsondiff.model.DiffType;
+import com.example.jsondiff.util.DiffOptions;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Cold {@link Flow.Publisher} of the differences between two documents: each subscription runs its own
+ * {@link DiffEngine} diff on the executor and publishes Missing rows as ADDED/REMOVED and Modified,
+ * type-mismatch and Moved rows as CHANGED (details as in the CSV report). Present rows are not published.
+ * - Backpressure: the diff runs at most window entries ahead of demand, then its thread waits until
+ *   request(n) makes room, so memory stays bounded however slow the subscriber is.
+ * - Signals are serialized and delivered on the diff thread or on the thread calling request(n).
+ * - cancel() stops the diff at the next node. A diff cut short by a --max-* limit ends with
+ *   onError(CancellationException) after its last entry; otherwise onComplete.
+ */
+public class DiffPublisher implements Flow.Publisher<DiffEntry> {
+
+    private final DiffEngine engine;
+    private final JsonNode left;
+    private final JsonNode right;
+    private final DiffOptions opts;
+    private final Executor executor;
+    private final int window;
+
+    /** Runs each subscription's diff on a new daemon thread. */
+    public DiffPublisher(DiffEngine engine, JsonNode left, JsonNode right, DiffOptions opts, int window) {
+        this(engine, left, right, opts, window, task -> {
+            Thread t = new Thread(task, "json-diff-publisher");
+            t.setDaemon(true);
+            t.start();
+        });
+    }
+
+    /** The executor runs one blocking task per subscription; size it for the subscribers expected at once. */
+    public DiffPublisher(DiffEngine engine, JsonNode left, JsonNode right, DiffOptions opts, int window,
+                         Executor executor) {
+        if (window < 1) throw new IllegalArgumentException("window must be at least 1: " + window);
+        this.engine = engine;
+        this.left = left;
+        this.right = right;
+        this.opts = opts;
+        this.window = window;
+        this.executor = executor;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super DiffEntry> subscriber) {
+        DiffSubscription subscription = new DiffSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        executor.execute(subscription::run);
+    }
+
+    /** One subscriber's diff: the listener side fills the window, drain() hands entries out per demand. */
+    private final class DiffSubscription implements Flow.Subscription, DiffListener {
+        private final Flow.Subscriber<? super DiffEntry> subscriber;
+        private final CancellationToken token = new CancellationToken();
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition notFull = lock.newCondition();
+        // Guarded by lock
+        private final ArrayDeque<DiffEntry> pending = new ArrayDeque<>();
+        private long demand;
+        private boolean done;
+        private boolean terminated;
+        private Throwable failure;
+        private volatile boolean cancelled;
+        // Drain loop owner count: only the thread that raised it from 0 calls the subscriber
+        private final AtomicInteger wip = new AtomicInteger();
+
+        DiffSubscription(Flow.Subscriber<? super DiffEntry> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                lock.lock();
+                try {
+                    if (failure == null) failure = new IllegalArgumentException("request must be positive: " + n);
+                    pending.clear();
+                    done = true;
+                    notFull.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+                token.cancel();
+                drain();
+                return;
+            }
+            lock.lock();
+            try {
+                demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+            } finally {
+                lock.unlock();
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            token.cancel();
+            lock.lock();
+            try {
+                pending.clear();
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void run() {
+            Throwable error = null;
+            try {
+                engine.diff(left, right, opts, token, this);
+            } catch (Throwable t) {
+                error = t;
+            }
+            lock.lock();
+            try {
+                if (failure == null) failure = error;
+                done = true;
+            } finally {
+                lock.unlock();
+            }
+            drain();
+        }
+
+        @Override
+        public void onMissing(String path, DiffValue l, DiffValue r) {
+            if (l == null) offer(new DiffEntry(DiffType.ADDED, path, null, r.text(), null));
+            else offer(new DiffEntry(DiffType.REMOVED, path, l.text(), null, null));
+        }
+
+        @Override
+        public void onModified(String path, DiffValue l, DiffValue r, String details) {
+            offer(new DiffEntry(DiffType.CHANGED, path, l.text(), r.text(), details));
+        }
+
+        @Override
+        public void onTypeMismatch(String path, DiffValue l, DiffValue r) {
+            offer(new DiffEntry(DiffType.CHANGED, path, l.text(), r.text(), "Type mismatch"));
+        }
+
+        @Override
+        public void onMoved(String path, int fromIndex, int toIndex) {
+            offer(new DiffEntry(DiffType.CHANGED, path, "[" + fromIndex + "]", "[" + toIndex + "]",
+                    "Moved from index " + fromIndex + " to " + toIndex));
+        }
+
+        @Override
+        public void onTruncated(String reason) {
+            lock.lock();
+            try {
+                if (failure == null) failure = new CancellationException("Report truncated: " + reason);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /** Diff thread: waits while the window is full, then queues the entry and tries to deliver. */
+        private void offer(DiffEntry entry) {
+            lock.lock();
+            try {
+                while (pending.size() >= window && !cancelled && !done) {
+                    notFull.awaitUninterruptibly();
+                }
+                if (cancelled || done) return;
+                pending.add(entry);
+            } finally {
+                lock.unlock();
+            }
+            drain();
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0) return;
+            int missed = 1;
+            do {
+                while (true) {
+                    DiffEntry next = null;
+                    Throwable error = null;
+                    boolean finish = false;
+                    lock.lock();
+                    try {
+                        if (cancelled || terminated) break;
+                        if (demand > 0 && !pending.isEmpty()) {
+                            next = pending.poll();
+                            demand--;
+                            notFull.signal();
+                        } else if (done && pending.isEmpty()) {
+                            terminated = true;
+                            finish = true;
+                            error = failure;
+                        } else {
+                            break;
+                        }
+                    } finally {
+                        lock.unlock();
+                    }
+                    if (finish) {
+                        if (error != null) subscriber.onError(error);
+                        else subscriber.onComplete();
+                        break;
+                    }
+                    try {
+                        subscriber.onNext(next);
+                    } catch (Throwable t) {
+                        // A throwing subscriber breaks the contract; stop producing for it
+                        cancel();
+                        break;
+                    }
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.example.jsondiff.engine;
+
+import com.example.jsondiff.util.KeyUnion;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ValueNode;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Iterative pre-order walk over two JSON trees.
+ * - Pending (path, left, right) pairs live on an explicit frame stack (parallel arrays, grown on demand
+ *   and reused between runs), so nesting depth is bounded by heap, not by the thread stack.
+ * - Rows come out in the same order a recursive walk would produce: children are pushed in reverse.
+ * - Pairs at the subtree depth are bracketed by the policy's subtree hooks (their frames sit above a mark).
+ * - A {@link DiffBudget} is consulted before every pair; when it says stop, pending frames are dropped.
+ * Not thread-safe; use one instance per running diff.
+ */
+public class DiffTraversal {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private String[] paths = new String[INITIAL_CAPACITY];
+    private JsonNode[] lefts = new JsonNode[INITIAL_CAPACITY];
+    private JsonNode[] rights = new JsonNode[INITIAL_CAPACITY];
+    private Object[] notes = new Object[INITIAL_CAPACITY];
+    private int[] depths = new int[INITIAL_CAPACITY];
+    private final KeyUnion keyUnion = new KeyUnion();
+    private int top;
+    // Depth of the pair being visited; pushes land one level below it
+    private int depth;
+
+    private long visited;
+    // Copy of visited for other threads (progress), refreshed every PUBLISH_INTERVAL nodes without a fence
+    private final AtomicLong publishedVisited = new AtomicLong();
+    private static final int PUBLISH_INTERVAL = 1024;
+
+    // Pairs at this depth are reported to the policy's subtree hooks (1 = boundary children)
+    private int subtreeDepth = 1;
+    // Stack height below the open subtree's frames; -1 when none is open
+    private int subtreeMark = -1;
+    private String subtreePath;
+    private long subtreeVisited;
+    private DiffBudget budget = DiffBudget.unlimited();
+
+    /** Limits applied to the following runs; the budget decides when a run ends early. */
+    public void setBudget(DiffBudget budget) {
+        this.budget = budget;
+    }
+
+    public DiffBudget getBudget() {
+        return budget;
+    }
+
+    public void setSubtreeDepth(int subtreeDepth) {
+        this.subtreeDepth = subtreeDepth;
+    }
+
+    /**
+     * Compares the children of two boundary objects (e.g. "Feature" or the document root "$").
+     * The boundary itself emits no row; child paths are "name" under "$", else "boundary.name".
+     */
+    public void compareBoundary(String boundaryPath, JsonNode leftObj, JsonNode rightObj, DiffPolicy policy) {
+        JsonNode l = (leftObj != null && leftObj.isObject()) ? leftObj : null;
+        JsonNode r = (rightObj != null && rightObj.isObject()) ? rightObj : null;
+        reset();
+        depth = 0;
+        pushChildren(boundaryPath.equals("$") ? null : boundaryPath, l, r);
+        run(policy);
+    }
+
+    /** Compares a single pair and everything below it. */
+    public void compare(String path, JsonNode l, JsonNode r, DiffPolicy policy) {
+        reset();
+        depth = 0;
+        push(path, l, r);
+        run(policy);
+    }
+
+    public void push(String path, JsonNode l, JsonNode r) {
+        push(path, l, r, null);
+    }
+
+    /** Queues a pair; a non-null note is handed to {@link DiffPolicy#onNote} before the pair is compared. */
+    public void push(String path, JsonNode l, JsonNode r, Object note) {
+        if (top == paths.length) grow();
+        paths[top] = path;
+        lefts[top] = l;
+        rights[top] = r;
+        notes[top] = note;
+        depths[top] = depth + 1;
+        top++;
+    }
+
+    /** Number of pairs compared since this instance was created. */
+    public long getVisited() {
+        return visited;
+    }
+
+    /** Slightly stale {@link #getVisited()} that is safe to read from another thread. */
+    public long getPublishedVisited() {
+        return publishedVisited.get();
+    }
+
+    private void run(DiffPolicy policy) {
+        while (top > 0) {
+            int i = --top;
+            String path = paths[i];
+            JsonNode l = lefts[i];
+            JsonNode r = rights[i];
+            Object note = notes[i];
+            paths[i] = null;
+            lefts[i] = null;
+            rights[i] = null;
+            notes[i] = null;
+
+            if (budget.shouldStop()) {
+                reset();
+                break;
+            }
+            if (!budget.admitDepth(depths[i])) continue;
+            depth = depths[i];
+            if (depth == subtreeDepth) {
+                subtreeMark = top;
+                subtreePath = path;
+                subtreeVisited = visited;
+                policy.onSubtreeStart(path);
+            }
+            if (note != null) policy.onNote(path, l, r, note);
+            visit(path, l, r, policy);
+            if (top == subtreeMark) endSubtree(policy);
+        }
+        if (subtreeMark >= 0) endSubtree(policy);
+        publishedVisited.lazySet(visited);
+    }
+
+    private void endSubtree(DiffPolicy policy) {
+        subtreeMark = -1;
+        policy.onSubtreeEnd(subtreePath, visited - subtreeVisited);
+        subtreePath = null;
+    }
+
+    private void visit(String path, JsonNode l, JsonNode r, DiffPolicy policy) {
+        if (l == null && r == null) return;
+        if (l != null && r != null && policy.onReplay(path, l, r)) return;
+        if ((++visited & (PUBLISH_INTERVAL - 1)) == 0) publishedVisited.lazySet(visited);
+        if (l == null || r == null) {
+            policy.onMissing(path, l, r);
+            return;
+        }
+        if (l.getNodeType() != r.getNodeType()) {
+            policy.onTypeMismatch(path, l, r);
+            return;
+        }
+        if (l.isObject()) {
+            if (policy.onObject(path, l, r)) pushChildren(path, l, r);
+            return;
+        }
+        if (l.isArray()) {
+            int mark = top;
+            policy.onArray(path, (ArrayNode) l, (ArrayNode) r, this);
+            reverse(mark, top - 1);
+            return;
+        }
+        if (l.isValueNode()) {
+            policy.onScalar(path, (ValueNode) l, (ValueNode) r);
+        }
+    }
+
+    /**
+     * Pushes the sorted union of child keys in reverse, so the smallest key is visited first.
+     * Child paths are "parent.key" (one concatenation each), or just "key" when parent is null.
+     */
+    private void pushChildren(String parent, JsonNode l, JsonNode r) {
+        String[] keys = keyUnion.sorted(l, r);
+        for (int k = keyUnion.size() - 1; k >= 0; k--) {
+            String key = keys[k];
+            push(parent == null ? key : parent + "." + key, l != null ? l.get(key) : null, r != null ? r.get(key) : null);
+        }
+    }
+
+    /** Drops frames left behind by a run that ended with an exception. */
+    private void reset() {
+        Arrays.fill(paths, 0, top, null);
+        Arrays.fill(lefts, 0, top, null);
+        Arrays.fill(rights, 0, top, null);
+        Arrays.fill(notes, 0, top, null);
+        top = 0;
+    }
+
+    private void reverse(int from, int to) {
+        for (; from < to; from++, to--) {
+            swap(paths, from, to);
+            swap(lefts, from, to);
+            swap(rights, from, to);
+            swap(notes, from, to);
+            int d = depths[from];
+            depths[from] = depths[to];
+            depths[to] = d;
+        }
+    }
+
+    private static <T> void swap(T[] a, int i, int j) {
+        T t = a[i];
+        a[i] = a[j];
+        a[j] = t;
+    }
+
+    private void grow() {
+        int cap = paths.length * 2;
+        paths = Arrays.copyOf(paths, cap);
+        lefts = Arrays.copyOf(lefts, cap);
+        rights = Arrays.copyOf(rights, cap);
+        notes = Arrays.copyOf(notes, cap);
+        depths = Arrays.copyOf(depths, cap);
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.jsondiff.engine;
+
+import com.example.jsondiff.util.JsonTrees;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ValueNode;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * One side of a diff event: the node plus its report text, rendered on first {@link #text()} call.
+ * - Scalars render as JSON literals with strings quoted ("abc", 1, true); containers as compact JSON.
+ * - Objects and arrays of objects whose children are reported separately render as "{}" / "[]".
+ * - Containers are written without recursion, so a deep missing subtree renders instead of overflowing the stack.
+ * Rendering is idempotent, so a value may be read from another thread once handed over.
+ */
+public final class DiffValue {
+
+    private final JsonNode node;
+    private final ObjectMapper mapper;
+    private String text;
+
+    private DiffValue(JsonNode node, ObjectMapper mapper, String text) {
+        this.node = node;
+        this.mapper = mapper;
+        this.text = text;
+    }
+
+    /** Value rendered in full when asked. */
+    static DiffValue of(JsonNode node, ObjectMapper mapper) {
+        return node == null ? null : new DiffValue(node, mapper, null);
+    }
+
+    /** Container reported by shape only ("{}" or "[]"). */
+    static DiffValue shape(JsonNode node) {
+        return new DiffValue(node, null, node.isArray() ? "[]" : "{}");
+    }
+
+    public JsonNode node() {
+        return node;
+    }
+
+    public String text() {
+        String t = text;
+        if (t == null) {
+            t = render();
+            text = t;
+        }
+        return t;
+    }
+
+    private String render() {
+        if (node.isValueNode()) {
+            ValueNode v = (ValueNode) node;
+            if (v.isTextual()) return "\"" + v.asText() + "\"";
+            return v.toString();
+        }
+        try {
+            return JsonTrees.write(mapper, node);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to render value", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return text();
+    }
+}
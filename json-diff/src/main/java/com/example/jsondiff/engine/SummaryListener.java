@@ -0,0 +1,46 @@
+package com.example.jsondiff.engine;
+
+import com.example.jsondiff.util.DiffSummary;
+
+/**
+ * Counts diff events into a {@link DiffSummary} under their report categories (type mismatches count as
+ * Modified). Never reads {@link DiffValue#text()}, so no value is rendered.
+ */
+public class SummaryListener implements DiffListener {
+
+    private final DiffSummary summary;
+
+    public SummaryListener(DiffSummary summary) {
+        this.summary = summary;
+    }
+
+    @Override
+    public void onPresent(String path, DiffValue left, DiffValue right) {
+        summary.add(DiffSummary.PRESENT, path);
+    }
+
+    @Override
+    public void onMissing(String path, DiffValue left, DiffValue right) {
+        summary.add(DiffSummary.MISSING, path);
+    }
+
+    @Override
+    public void onModified(String path, DiffValue left, DiffValue right, String details) {
+        summary.add(DiffSummary.MODIFIED, path);
+    }
+
+    @Override
+    public void onTypeMismatch(String path, DiffValue left, DiffValue right) {
+        summary.add(DiffSummary.MODIFIED, path);
+    }
+
+    @Override
+    public void onMoved(String path, int fromIndex, int toIndex) {
+        summary.add(DiffSummary.MOVED, path);
+    }
+
+    @Override
+    public void onTruncated(String reason) {
+        summary.truncated(reason);
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.jsondiff.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("jsondiff.ArrayAlignment")
+@Label("Array Alignment")
+@Category({"JSON Diff"})
+@Description("Alignment of a large array of objects (key, similarity or index)")
+public class ArrayAlignmentEvent extends Event {
+
+    @Label("Path")
+    public String path;
+
+    @Label("Mode")
+    public String mode;
+
+    @Label("Left Size")
+    public int leftSize;
+
+    @Label("Right Size")
+    public int rightSize;
+}
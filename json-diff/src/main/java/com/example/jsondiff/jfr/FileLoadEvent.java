@@ -0,0 +1,22 @@
+package com.example.jsondiff.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("jsondiff.FileLoad")
+@Label("JSON File Load")
+@Category({"JSON Diff"})
+@Description("Reading and parsing one diff input")
+public class FileLoadEvent extends Event {
+
+    @Label("File")
+    public String file;
+
+    @Label("Size")
+    @DataAmount
+    public long bytes;
+}
@@ -0,0 +1,69 @@
+package com.example.jsondiff.jfr;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Flight recording for one diff run (--jfr[=file]).
+ * Uses the JDK "default" settings plus the json-diff events, dumps to a .jfr file on {@link #finish},
+ * then reads the file back to print the most expensive top-level subtrees.
+ */
+public class JfrSession {
+
+    public static final String DEFAULT_FILE = "json-diff.jfr";
+
+    private final Recording recording;
+    private final Path out;
+
+    private JfrSession(Recording recording, Path out) {
+        this.recording = recording;
+        this.out = out;
+    }
+
+    public static JfrSession start(Path out) throws IOException {
+        Recording recording;
+        try {
+            recording = new Recording(Configuration.getConfiguration("default"));
+        } catch (ParseException e) {
+            throw new IOException("Cannot load JFR default configuration", e);
+        }
+        recording.setName("json-diff");
+        recording.enable(FileLoadEvent.class).withoutThreshold();
+        recording.enable(SubtreeCompareEvent.class).withoutThreshold();
+        recording.enable(ArrayAlignmentEvent.class).withoutThreshold();
+        recording.enable(ReportFlushEvent.class).withoutThreshold();
+        recording.start();
+        return new JfrSession(recording, out);
+    }
+
+    /** Stops and dumps the recording, then prints the {@code top} slowest subtree comparisons. */
+    public void finish(int top) throws IOException {
+        recording.stop();
+        recording.dump(out);
+        recording.close();
+        System.out.println("JFR recording written to " + out.toAbsolutePath());
+
+        List<RecordedEvent> subtrees = RecordingFile.readAllEvents(out).stream()
+                .filter(e -> e.getEventType().getName().equals("jsondiff.SubtreeCompare"))
+                .sorted(Comparator.comparing((RecordedEvent e) -> e.getDuration()).reversed())
+                .limit(top)
+                .collect(Collectors.toList());
+
+        System.out.printf("Top %d subtrees by comparison time:%n", subtrees.size());
+        for (RecordedEvent e : subtrees) {
+            Duration d = e.getDuration();
+            System.out.printf("  %10.3f ms  %8d nodes  %s%n",
+                    d.toNanos() / 1_000_000.0, e.getLong("nodes"), e.getString("path"));
+        }
+    }
+}
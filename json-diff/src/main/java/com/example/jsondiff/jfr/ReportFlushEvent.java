@@ -0,0 +1,25 @@
+package com.example.jsondiff.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("jsondiff.ReportFlush")
+@Label("Report Flush")
+@Category({"JSON Diff"})
+@Description("Encoding and writing the report file")
+public class ReportFlushEvent extends Event {
+
+    @Label("File")
+    public String file;
+
+    @Label("Rows")
+    public long rows;
+
+    @Label("Size")
+    @DataAmount
+    public long bytes;
+}
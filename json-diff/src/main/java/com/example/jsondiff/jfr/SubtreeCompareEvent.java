@@ -0,0 +1,20 @@
+package com.example.jsondiff.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("jsondiff.SubtreeCompare")
+@Label("Top-level Subtree Compare")
+@Category({"JSON Diff"})
+@Description("Comparison of one top-level subtree under the diff boundary (e.g. BusinessRules)")
+public class SubtreeCompareEvent extends Event {
+
+    @Label("Path")
+    public String path;
+
+    @Label("Nodes")
+    public long nodes;
+}
@@ -1,19 +1,30 @@
 
 package com.example.jsondiff.model;
 
+import java.util.List;
+import java.util.function.Supplier;
+
 public class DiffEntry {
     private final DiffType type;
     private final String path;       // e.g., Feature.feature3.status
     private final String leftValue;  // value in file A (null if ADDED)
     private final String rightValue; // value in file B (null if REMOVED)
     private final String details;    // optional for arrays/objects
+    private final Supplier<List<DiffEntry>> drillDown; // field-level diffs, computed on first request
+    private volatile List<DiffEntry> fieldDiffs;
 
     public DiffEntry(DiffType type, String path, String leftValue, String rightValue, String details) {
+        this(type, path, leftValue, rightValue, details, null);
+    }
+
+    public DiffEntry(DiffType type, String path, String leftValue, String rightValue, String details,
+                     Supplier<List<DiffEntry>> drillDown) {
         this.type = type;
         this.path = path;
         this.leftValue = leftValue;
         this.rightValue = rightValue;
         this.details = details;
+        this.drillDown = drillDown;
     }
 
     public DiffType getType() { return type; }
@@ -21,4 +32,14 @@ public class DiffEntry {
     public String getLeftValue() { return leftValue; }
     public String getRightValue() { return rightValue; }
     public String getDetails() { return details; }
+
+    /** Field-level diffs below this entry (e.g. for a CHANGED feature); computed once, empty if none. */
+    public List<DiffEntry> getFieldDiffs() {
+        List<DiffEntry> out = fieldDiffs;
+        if (out == null) {
+            out = drillDown != null ? List.copyOf(drillDown.get()) : List.of();
+            fieldDiffs = out;
+        }
+        return out;
+    }
 }
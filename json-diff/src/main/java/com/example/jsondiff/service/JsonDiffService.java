@@ -1,23 +1,41 @@
 
 package com.example.jsondiff.service;
 
+import com.example.jsondiff.engine.DiffPolicy;
+import com.example.jsondiff.engine.DiffTraversal;
 import com.example.jsondiff.model.DiffEntry;
 import com.example.jsondiff.model.DiffType;
+import com.example.jsondiff.util.JsonMappers;
+import com.example.jsondiff.util.JsonTrees;
+import com.example.jsondiff.util.KeyUnion;
+import com.example.jsondiff.util.StructuralHash;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ValueNode;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.StreamSupport;
 
 public class JsonDiffService {
 
+    // From this many features on (and with more than one core), features are hashed and printed in parallel
+    private static final int PARALLEL_THRESHOLD = 64;
+
+    private final ObjectMapper mapper = JsonMappers.newMapper();
+
     /**
      * Feature-level diff:
      * - Missing: feature present only in one side -> ADDED/REMOVED
      * - Modified: feature present in both but objects differ -> CHANGED
      * Emits ONE DiffEntry per feature (path = "Feature.<name>") with whole feature objects
-     * as leftValue/rightValue.
+     * as leftValue/rightValue, in feature name order.
+     * Large blocks are compared by structural hash in parallel (see diffFeature); CHANGED entries
+     * drill down to field level lazily via {@link DiffEntry#getFieldDiffs()}.
      */
     public List<DiffEntry> diffFeatures(JsonNode leftRoot, JsonNode rightRoot) {
         List<DiffEntry> diffs = new ArrayList<>();
@@ -32,45 +50,91 @@ public class JsonDiffService {
             return diffs;
         }
 
-        Set<String> featureNames = new TreeSet<>();
-        if (leftFeatureObj != null && leftFeatureObj.isObject()) {
-            leftFeatureObj.fieldNames().forEachRemaining(featureNames::add);
-        }
-        if (rightFeatureObj != null && rightFeatureObj.isObject()) {
-            rightFeatureObj.fieldNames().forEachRemaining(featureNames::add);
-        }
-
-        for (String name : featureNames) {
+        KeyUnion union = new KeyUnion();
+        String[] featureNames = Arrays.copyOf(union.sorted(leftFeatureObj, rightFeatureObj), union.size());
+        int n = featureNames.length;
+
+        // One slot per feature in key order; reading the slots back in order replaces sorting the results
+        DiffEntry[] slots = new DiffEntry[n];
+        boolean parallel = n >= PARALLEL_THRESHOLD && Runtime.getRuntime().availableProcessors() > 1;
+        IntStream indexes = IntStream.range(0, n);
+        if (parallel) indexes = indexes.parallel();
+        indexes.forEach(i -> {
+            String name = featureNames[i];
             JsonNode l = (leftFeatureObj != null) ? leftFeatureObj.get(name) : null;
             JsonNode r = (rightFeatureObj != null) ? rightFeatureObj.get(name) : null;
-            String path = "Feature." + name;
-
-            if (l == null && r != null) {
-                // Present only in right -> Missing in A
-                diffs.add(new DiffEntry(DiffType.ADDED, path, null, toPrintable(r), null));
-            } else if (l != null && r == null) {
-                // Present only in left -> Missing in B
-                diffs.add(new DiffEntry(DiffType.REMOVED, path, toPrintable(l), null, null));
-            } else if (l != null && r != null && !deepEquals(l, r)) {
-                // Present in both, but structure/value differs -> Modified
-                diffs.add(new DiffEntry(DiffType.CHANGED, path, toPrintable(l), toPrintable(r), null));
-            }
-            // If equal, no entry
-        }
+            slots[i] = diffFeature("Feature." + name, l, r, parallel);
+        });
 
-        // Sort by path then type for stable report
-        diffs.sort(Comparator.comparing(DiffEntry::getPath)
-                .thenComparing(e -> e.getType().name()));
+        for (DiffEntry d : slots) {
+            if (d != null) diffs.add(d);
+        }
         return diffs;
     }
 
-    // --- Helpers (kept from previous service) ---
+    /**
+     * One feature: ADDED/REMOVED when on one side only, CHANGED when its two sides differ, else null.
+     * - Hashed: both sides are reduced to a structural hash; different hashes mean a CHANGED feature, equal ones
+     *   are confirmed with {@link JsonTrees#equal}, so the result does not depend on the number of cores.
+     *   Used when features are spread over cores.
+     * - Otherwise {@link JsonTrees#equal} alone, which stops at the first difference.
+     * Field-level diffs of a CHANGED feature are only computed when {@link DiffEntry#getFieldDiffs()} is called.
+     */
+    private DiffEntry diffFeature(String path, JsonNode l, JsonNode r, boolean hashed) {
+        if (l == null && r != null) {
+            // Present only in right -> Missing in A
+            return new DiffEntry(DiffType.ADDED, path, null, toPrintable(r), null);
+        }
+        if (l != null && r == null) {
+            // Present only in left -> Missing in B
+            return new DiffEntry(DiffType.REMOVED, path, toPrintable(l), null, null);
+        }
+        if (l == null || (!hashed || StructuralHash.of(l) == StructuralHash.of(r)) && JsonTrees.equal(l, r)) {
+            return null;
+        }
+        // Present in both, but structure/value differs -> Modified
+        return new DiffEntry(DiffType.CHANGED, path, toPrintable(l), toPrintable(r), null,
+                () -> diffFields(path, l, r));
+    }
 
-    /** Deep equality using JsonNode.equals for structural and value equality. */
-    private boolean deepEquals(JsonNode a, JsonNode b) {
-        return Objects.equals(a, b);
+    /**
+     * Field-level diff below a feature: objects are descended, arrays and scalars are compared as leaves.
+     * Paths continue the feature path, e.g. "Feature.feature9.override.segments".
+     */
+    public List<DiffEntry> diffFields(String path, JsonNode left, JsonNode right) {
+        List<DiffEntry> out = new ArrayList<>();
+        new DiffTraversal().compare(path, left, right, new DiffPolicy() {
+            @Override
+            public void onMissing(String p, JsonNode l, JsonNode r) {
+                if (l == null) out.add(new DiffEntry(DiffType.ADDED, p, null, toPrintable(r), null));
+                else out.add(new DiffEntry(DiffType.REMOVED, p, toPrintable(l), null, null));
+            }
+
+            @Override
+            public void onTypeMismatch(String p, JsonNode l, JsonNode r) {
+                out.add(new DiffEntry(DiffType.CHANGED, p, toPrintable(l), toPrintable(r), "Type mismatch"));
+            }
+
+            @Override
+            public boolean onObject(String p, JsonNode l, JsonNode r) {
+                return true;
+            }
+
+            @Override
+            public void onArray(String p, ArrayNode l, ArrayNode r, DiffTraversal traversal) {
+                if (!JsonTrees.equal(l, r)) out.add(new DiffEntry(DiffType.CHANGED, p, toPrintable(l), toPrintable(r), null));
+            }
+
+            @Override
+            public void onScalar(String p, ValueNode l, ValueNode r) {
+                if (!l.equals(r)) out.add(new DiffEntry(DiffType.CHANGED, p, toPrintable(l), toPrintable(r), null));
+            }
+        });
+        return out;
     }
 
+    // --- Helpers (kept from previous service) ---
+
     private Object normalizeValueNode(JsonNode node) {
         ValueNode vn = (ValueNode) node;
         if (vn.isTextual()) return vn.asText();
@@ -80,11 +144,15 @@ public class JsonDiffService {
         return vn.toString();
     }
 
-    /** Pretty prints objects; value nodes are stringified as scalars. */
+    /** Pretty prints objects (without recursion); value nodes are stringified as scalars. */
     private String toPrintable(JsonNode node) {
         if (node == null || node.isNull()) return "null";
         if (node.isValueNode()) return String.valueOf(normalizeValueNode(node));
-        return node.toPrettyString();
+        try {
+            return JsonTrees.writePretty(mapper, node);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to print " + node.getNodeType(), e);
+        }
     }
 
     // If you keep the old fine-grained diff, that's fine; the app will call diffFeatures().
@@ -0,0 +1,213 @@
+package com.example.jsondiff.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+
+import java.util.*;
+
+/**
+ * Decides which field aligns the items of two arrays of objects.
+ * - Per-path configuration wins (path written without array selectors, e.g. "BusinessRules.menuList").
+ * - Otherwise the first default candidate present in either array is used (id/code/name/...).
+ * - In learn mode the key is picked from one sampling pass by coverage and uniqueness.
+ * Decisions are cached by normalized path, so sibling arrays sharing a schema are resolved once. Index alignment
+ * is cached only when configured or learned from enough items: arrays without items or candidate fields (e.g. an
+ * empty first array) are decided one by one until a key is found.
+ */
+public class AlignmentKeyResolver {
+
+    public static final List<String> DEFAULT_CANDIDATES =
+            List.of("id", "code", "name", "demographic_PhoneNumberCountryCode");
+
+    /** Configured value forcing index alignment for a path. */
+    public static final String INDEX = "#index";
+
+    // Items sampled per side when learning a key
+    private static final int SAMPLE_LIMIT = 512;
+    // Minimum share of sampled items that must carry a learned key
+    private static final double MIN_COVERAGE = 0.5;
+    // Uniqueness says nothing on smaller samples; fall back to the candidates
+    private static final int MIN_SAMPLE = 2;
+
+    private final List<String> candidates;
+    private final Map<String, String> configured = new HashMap<>();
+    private final boolean learn;
+
+    // normalized path -> key ("" means index alignment)
+    private final Map<String, String> cache = new HashMap<>();
+    private int cacheHits;
+    private int cacheMisses;
+    // Last path normalized by resolve (null when it ends inside a selector) and its normalized form
+    private String lastPath;
+    private String lastNorm;
+
+    public AlignmentKeyResolver(List<String> candidates, Map<String, String> configured, boolean learn) {
+        this.candidates = candidates;
+        this.learn = learn;
+        configured.forEach((p, k) -> this.configured.put(normalize(p), k));
+    }
+
+    /**
+     * Builds a resolver from "--align-key=&lt;path&gt;=&lt;key&gt;" (repeatable) and "--align-learn".
+     */
+    public static AlignmentKeyResolver fromOptions(DiffOptions opts) {
+        Map<String, String> configured = new LinkedHashMap<>();
+        for (String spec : opts.values("align-key")) {
+            int eq = spec.lastIndexOf('=');
+            if (eq <= 0 || eq == spec.length() - 1) {
+                throw new IllegalArgumentException("Invalid --align-key (expected <path>=<key>): " + spec);
+            }
+            configured.put(spec.substring(0, eq), spec.substring(eq + 1));
+        }
+        return new AlignmentKeyResolver(DEFAULT_CANDIDATES, configured, opts.has("align-learn"));
+    }
+
+    /**
+     * @return the alignment field for the arrays at this path, or null for index alignment.
+     */
+    public String resolve(String path, ArrayNode a, ArrayNode b) {
+        String norm = normalizeNested(path);
+        String key = cache.get(norm);
+        if (key != null) {
+            cacheHits++;
+        } else {
+            cacheMisses++;
+            key = configured.get(norm);
+            boolean settled = key != null;
+            if (key == null && learn) {
+                Map<String, FieldStats> stats = new HashMap<>();
+                int[] sampled = {sample(a, 0, stats), sample(b, 1, stats)};
+                if (Math.max(sampled[0], sampled[1]) >= MIN_SAMPLE) {
+                    key = learnKey(stats, sampled);
+                    settled = true;
+                }
+            }
+            if (key == null) key = firstCandidate(a, b);
+            if (INDEX.equals(key)) key = "";
+            if (settled || !key.isEmpty()) cache.put(norm, key);
+        }
+        return key.isEmpty() ? null : key;
+    }
+
+    public int getCacheHits() { return cacheHits; }
+    public int getCacheMisses() { return cacheMisses; }
+
+    /** Strips array selectors: "a.list[id=3].items[0]" -> "a.list.items". */
+    public static String normalize(String path) {
+        if (path.indexOf('[') < 0) return path;
+        StringBuilder sb = new StringBuilder(path.length());
+        strip(path, 0, sb);
+        return sb.toString();
+    }
+
+    /**
+     * normalize, reusing the previous call's result when path extends that path: nested arrays come depth
+     * first, so the parent's selectors are not scanned again on every level.
+     */
+    private String normalizeNested(String path) {
+        StringBuilder sb;
+        int from = 0;
+        if (lastPath != null && path.startsWith(lastPath)) {
+            from = lastPath.length();
+            sb = new StringBuilder(lastNorm.length() + path.length() - from).append(lastNorm);
+        } else {
+            sb = new StringBuilder(path.length());
+        }
+        boolean closed = strip(path, from, sb);
+        lastPath = closed ? path : null;
+        lastNorm = sb.toString();
+        return lastNorm;
+    }
+
+    /** Appends path from 'from' on without its selectors; false if it ends inside one. */
+    private static boolean strip(String path, int from, StringBuilder sb) {
+        int open = path.indexOf('[', from);
+        // Text between selectors is copied in bulk
+        while (open >= 0) {
+            sb.append(path, from, open);
+            int depth = 0;
+            int i = open;
+            for (; i < path.length(); i++) {
+                char c = path.charAt(i);
+                if (c == '[') depth++;
+                else if (c == ']' && --depth == 0) break;
+            }
+            if (i == path.length()) return false;
+            from = i + 1;
+            open = path.indexOf('[', from);
+        }
+        sb.append(path, from, path.length());
+        return true;
+    }
+
+    private String firstCandidate(ArrayNode a, ArrayNode b) {
+        for (String k : candidates) {
+            if (keyExistsInSome(a, k) || keyExistsInSome(b, k)) return k;
+        }
+        return "";
+    }
+
+    private boolean keyExistsInSome(ArrayNode arr, String key) {
+        for (JsonNode n : arr) {
+            if (n.isObject() && n.has(key)) return true;
+        }
+        return false;
+    }
+
+    // ---- Learn mode ----
+
+    private static class FieldStats {
+        final int[] present = new int[2];
+        final List<Set<String>> values = List.of(new HashSet<>(), new HashSet<>());
+        boolean unique = true;
+    }
+
+    /** Picks the scalar field with the best coverage among fields unique on both sides; null if none qualify. */
+    private String learnKey(Map<String, FieldStats> stats, int[] sampled) {
+        String best = null;
+        double bestCoverage = 0;
+        for (Map.Entry<String, FieldStats> e : stats.entrySet()) {
+            FieldStats s = e.getValue();
+            if (!s.unique) continue;
+            double coverage = (double) (s.present[0] + s.present[1]) / (sampled[0] + sampled[1]);
+            if (coverage < MIN_COVERAGE) continue;
+            if (best == null || coverage > bestCoverage
+                    || (coverage == bestCoverage && preferred(e.getKey(), best))) {
+                best = e.getKey();
+                bestCoverage = coverage;
+            }
+        }
+        return best;
+    }
+
+    /** Collects field stats of the first SAMPLE_LIMIT items; returns how many of them were objects. */
+    private int sample(ArrayNode arr, int side, Map<String, FieldStats> stats) {
+        int n = Math.min(arr.size(), SAMPLE_LIMIT);
+        int objects = 0;
+        for (int i = 0; i < n; i++) {
+            JsonNode item = arr.get(i);
+            if (!item.isObject()) continue;
+            objects++;
+            Iterator<Map.Entry<String, JsonNode>> fields = item.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> f = fields.next();
+                JsonNode v = f.getValue();
+                if (!v.isValueNode() || v.isNull() || v.isBoolean()) continue;
+                FieldStats s = stats.computeIfAbsent(f.getKey(), k -> new FieldStats());
+                s.present[side]++;
+                if (s.unique && !s.values.get(side).add(v.asText())) s.unique = false;
+            }
+        }
+        return objects;
+    }
+
+    /** Tie-break: default candidates first (in order), then alphabetical. */
+    private boolean preferred(String challenger, String incumbent) {
+        int ci = candidates.indexOf(challenger);
+        int ii = candidates.indexOf(incumbent);
+        if (ci >= 0 || ii >= 0) {
+            return ci >= 0 && (ii < 0 || ci < ii);
+        }
+        return challenger.compareTo(incumbent) < 0;
+    }
+}
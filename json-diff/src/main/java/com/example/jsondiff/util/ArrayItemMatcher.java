@@ -0,0 +1,300 @@
+package com.example.jsondiff.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+
+import java.util.*;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Pairs the items of two keyless arrays so reordered or slightly changed items are compared
+ * with each other instead of with whatever sits at the same index.
+ * 1) Items equal at the same index stay paired.
+ * 2) Remaining items that are exactly equal are paired through a hash lookup.
+ * 3) Remaining items are paired by MinHash similarity, with LSH bucketing to find candidates.
+ * 4) Whatever is left stays index-aligned when both sides still have an item at that index.
+ * Every step is linear in the number of items (bucket scans are capped), so no pairwise O(n²) pass.
+ * Equality, hashing and shingling are iterative ({@link JsonTrees}, {@link StructuralHash}), so deeply nested
+ * items do not exhaust the thread stack.
+ */
+public class ArrayItemMatcher {
+
+    // MinHash signature length = BANDS * ROWS
+    private static final int BANDS = 8;
+    private static final int ROWS = 4;
+    private static final int K = BANDS * ROWS;
+    // Minimum estimated Jaccard similarity for a similarity pair
+    private static final double THRESHOLD = 0.5;
+    // Unmatched candidates inspected per bucket; keeps degenerate buckets from going quadratic
+    private static final int MAX_BUCKET_SCAN = 32;
+    // Items between two polls of the stop condition
+    private static final int POLL_INTERVAL = 1024;
+
+    private static final long[] SEEDS = new long[K];
+
+    static {
+        long s = 0x9E3779B97F4A7C15L;
+        for (int i = 0; i < K; i++) {
+            s = mix64(s + i);
+            SEEDS[i] = s;
+        }
+    }
+
+    /** Result of {@link #match}: right index per left item (-1 if unmatched) and which right items were paired. */
+    public static class Pairing {
+        public final int[] rightOf;
+        public final boolean[] rightMatched;
+
+        Pairing(int[] rightOf, boolean[] rightMatched) {
+            this.rightOf = rightOf;
+            this.rightMatched = rightMatched;
+        }
+
+        public boolean isMoved(int leftIndex) {
+            return rightOf[leftIndex] >= 0 && rightOf[leftIndex] != leftIndex;
+        }
+    }
+
+    public static Pairing match(ArrayNode left, ArrayNode right) {
+        return match(left, right, () -> false);
+    }
+
+    /**
+     * Same as {@link #match(ArrayNode, ArrayNode)}, polling stop every {@value #POLL_INTERVAL} items: once it
+     * answers true (the diff is ending anyway), steps 1-3 are cut short and step 4 pairs what is left.
+     */
+    public static Pairing match(ArrayNode left, ArrayNode right, BooleanSupplier stop) {
+        int n = left.size();
+        int m = right.size();
+        int[] rightOf = new int[n];
+        boolean[] rightMatched = new boolean[m];
+        Arrays.fill(rightOf, -1);
+
+        // One item on each side: steps 1-4 can only pair them, so skip comparing the subtrees (which, for
+        // arrays nested in arrays, would make every level walk everything below it)
+        if (n == 1 && m == 1) {
+            rightOf[0] = 0;
+            rightMatched[0] = true;
+            return new Pairing(rightOf, rightMatched);
+        }
+
+        if (pairEqualAtIndex(left, right, rightOf, rightMatched, stop)
+                && pairExact(left, right, rightOf, rightMatched, stop)) {
+            pairSimilar(left, right, rightOf, rightMatched, stop);
+        }
+
+        // 4) Leftovers stay index-aligned
+        for (int i = 0; i < Math.min(n, m); i++) {
+            if (rightOf[i] < 0 && !rightMatched[i]) {
+                rightOf[i] = i;
+                rightMatched[i] = true;
+            }
+        }
+        return new Pairing(rightOf, rightMatched);
+    }
+
+    /** 1) Same index, equal items. False when steps 2-3 are not needed (or stopped). */
+    private static boolean pairEqualAtIndex(ArrayNode left, ArrayNode right, int[] rightOf, boolean[] rightMatched,
+                                            BooleanSupplier stop) {
+        int n = left.size();
+        int m = right.size();
+        int unmatched = n;
+        for (int i = 0; i < Math.min(n, m); i++) {
+            if (polled(i, stop)) return false;
+            if (JsonTrees.equal(left.get(i), right.get(i))) {
+                rightOf[i] = i;
+                rightMatched[i] = true;
+                unmatched--;
+            }
+        }
+        // One index left on each side: whatever steps 2-3 find, step 4 pairs it with itself
+        return unmatched > 0 && m > 0 && !(unmatched == 1 && n == m);
+    }
+
+    /**
+     * 2) Exact matches elsewhere, looked up by structural hash and confirmed by equality. False once stopped.
+     * A hash bucket holds classes of equal right items, each queued in index order: a left item takes the head
+     * of the class it equals, the first equal candidate, in one poll however many duplicates there are.
+     */
+    private static boolean pairExact(ArrayNode left, ArrayNode right, int[] rightOf, boolean[] rightMatched,
+                                     BooleanSupplier stop) {
+        Map<Long, List<ArrayDeque<Integer>>> exact = new HashMap<>();
+        for (int j = 0; j < right.size(); j++) {
+            if (polled(j, stop)) return false;
+            if (rightMatched[j]) continue;
+            List<ArrayDeque<Integer>> classes =
+                    exact.computeIfAbsent(StructuralHash.of(right.get(j)), k -> new ArrayList<>(1));
+            ArrayDeque<Integer> same = equalClass(classes, right, right.get(j));
+            if (same == null) classes.add(same = new ArrayDeque<>());
+            same.add(j);
+        }
+        for (int i = 0; i < left.size(); i++) {
+            if (polled(i, stop)) return false;
+            if (rightOf[i] >= 0) continue;
+            List<ArrayDeque<Integer>> classes = exact.get(StructuralHash.of(left.get(i)));
+            if (classes == null) continue;
+            ArrayDeque<Integer> same = equalClass(classes, right, left.get(i));
+            if (same == null) continue;
+            int j = same.poll();
+            if (same.isEmpty()) classes.remove(same);
+            rightOf[i] = j;
+            rightMatched[j] = true;
+        }
+        return true;
+    }
+
+    /** The class whose items equal item; more than one class per hash only on a collision. */
+    private static ArrayDeque<Integer> equalClass(List<ArrayDeque<Integer>> classes, ArrayNode right, JsonNode item) {
+        for (ArrayDeque<Integer> same : classes) {
+            if (JsonTrees.equal(item, right.get(same.peek()))) return same;
+        }
+        return null;
+    }
+
+    /** 3) Similar items via MinHash + LSH. */
+    private static void pairSimilar(ArrayNode left, ArrayNode right, int[] rightOf, boolean[] rightMatched,
+                                    BooleanSupplier stop) {
+        Map<Long, Bucket> buckets = new HashMap<>();
+        int[][] rightSigs = new int[right.size()][];
+        for (int j = 0; j < right.size(); j++) {
+            if (polled(j, stop)) return;
+            if (rightMatched[j] || !right.get(j).isContainerNode()) continue;
+            rightSigs[j] = signature(right.get(j));
+            for (int b = 0; b < BANDS; b++) {
+                buckets.computeIfAbsent(bandKey(rightSigs[j], b), k -> new Bucket()).add(j);
+            }
+        }
+        if (buckets.isEmpty()) return;
+        for (int i = 0; i < left.size(); i++) {
+            if (polled(i, stop)) return;
+            if (rightOf[i] >= 0 || !left.get(i).isContainerNode()) continue;
+            int[] sig = signature(left.get(i));
+            int best = -1;
+            double bestSim = THRESHOLD;
+            for (int b = 0; b < BANDS; b++) {
+                Bucket bucket = buckets.get(bandKey(sig, b));
+                if (bucket == null) continue;
+                int scanned = 0;
+                for (int at = bucket.unmatched(0, rightMatched); at < bucket.size && scanned < MAX_BUCKET_SCAN;
+                     at = bucket.unmatched(at + 1, rightMatched), scanned++) {
+                    int j = bucket.items[at];
+                    double sim = similarity(sig, rightSigs[j]);
+                    // Prefer the same index on ties so unchanged positions stay put
+                    if (best < 0 ? sim >= bestSim : (sim > bestSim || (sim == bestSim && j == i))) {
+                        best = j;
+                        bestSim = sim;
+                    }
+                }
+            }
+            if (best >= 0) {
+                rightOf[i] = best;
+                rightMatched[best] = true;
+            }
+        }
+    }
+
+    /** Asks stop once every {@value #POLL_INTERVAL} items. */
+    private static boolean polled(int index, BooleanSupplier stop) {
+        return (index & (POLL_INTERVAL - 1)) == POLL_INTERVAL - 1 && stop.getAsBoolean();
+    }
+
+    /**
+     * Right indexes sharing one band key, in insertion order. Matched items are skipped through next-pointers
+     * that are compressed as they are followed, so a bucket of already matched items is not rescanned for every
+     * left item: each lookup costs about the unmatched items it returns.
+     */
+    private static final class Bucket {
+        int[] items = new int[4];
+        // For a position whose item is matched: a later position to continue from
+        int[] next = new int[4];
+        int size;
+
+        void add(int j) {
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size * 2);
+                next = Arrays.copyOf(next, size * 2);
+            }
+            items[size] = j;
+            next[size] = size + 1;
+            size++;
+        }
+
+        /** First position from at on whose item is still unmatched, or size. */
+        int unmatched(int at, boolean[] matched) {
+            int end = at;
+            while (end < size && matched[items[end]]) end = next[end];
+            while (at < end) {
+                int n = next[at];
+                next[at] = end;
+                at = n;
+            }
+            return end;
+        }
+    }
+
+    // ---- MinHash ----
+
+    private static int[] signature(JsonNode item) {
+        int[] sig = new int[K];
+        Arrays.fill(sig, Integer.MAX_VALUE);
+        addShingles(item, 0x51ED270B27A1F3L, sig);
+        return sig;
+    }
+
+    /**
+     * Each leaf contributes one shingle: hash(relative path, value). Array positions are ignored.
+     * Walks the subtree with an explicit stack of (node, path prefix) pairs.
+     */
+    private static void addShingles(JsonNode root, long rootPrefix, int[] sig) {
+        Deque<JsonNode> nodes = new ArrayDeque<>();
+        Deque<Long> prefixes = new ArrayDeque<>();
+        nodes.push(root);
+        prefixes.push(rootPrefix);
+        while (!nodes.isEmpty()) {
+            JsonNode node = nodes.pop();
+            long prefix = prefixes.pop();
+            if (node.isObject()) {
+                Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+                while (fields.hasNext()) {
+                    Map.Entry<String, JsonNode> f = fields.next();
+                    nodes.push(f.getValue());
+                    prefixes.push(mix64(prefix * 31 + f.getKey().hashCode()));
+                }
+            } else if (node.isArray()) {
+                long p = mix64(prefix + 0x5BD1E995L);
+                for (JsonNode child : node) {
+                    nodes.push(child);
+                    prefixes.push(p);
+                }
+            } else {
+                long token = mix64(prefix ^ ((long) node.getNodeType().ordinal() << 32 | (node.asText().hashCode() & 0xFFFFFFFFL)));
+                for (int i = 0; i < K; i++) {
+                    int h = (int) (mix64(token ^ SEEDS[i]) >>> 33);
+                    if (h < sig[i]) sig[i] = h;
+                }
+            }
+        }
+    }
+
+    private static long bandKey(int[] sig, int band) {
+        long h = band;
+        for (int r = band * ROWS; r < (band + 1) * ROWS; r++) {
+            h = h * 0x100000001B3L + sig[r];
+        }
+        return mix64(h);
+    }
+
+    private static double similarity(int[] a, int[] b) {
+        int same = 0;
+        for (int i = 0; i < K; i++) {
+            if (a[i] == b[i]) same++;
+        }
+        return (double) same / K;
+    }
+
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 33)) * 0xFF51AFD7ED558CCDL;
+        z = (z ^ (z >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return z ^ (z >>> 33);
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.jsondiff.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Moves writes to a downstream stream (typically a compressor) onto a dedicated thread.
+ * - The caller fills 256 KB chunks; full chunks cross an {@link SpscRingBuffer} and the thread writes them
+ *   downstream, so compression overlaps with whatever the caller does next (comparing, encoding rows).
+ * - Spent chunks go back over a second ring and are reused, so steady state allocates nothing.
+ * - A downstream failure is rethrown to the caller on its next write, flush or close.
+ * One writing thread only.
+ */
+public class AsyncOutputStream extends OutputStream {
+
+    private static final int CHUNK_SIZE = 256 * 1024;
+    private static final int RING_CAPACITY = 8;
+    private static final byte[] END = new byte[0];
+
+    // A chunk and how much of it is filled
+    private record Chunk(byte[] data, int length) {
+    }
+
+    private final OutputStream downstream;
+    private final SpscRingBuffer<Chunk> full = new SpscRingBuffer<>(RING_CAPACITY);
+    private final SpscRingBuffer<byte[]> free = new SpscRingBuffer<>(RING_CAPACITY * 2);
+    private final Thread thread;
+    private volatile Throwable failure;
+
+    private byte[] current = new byte[CHUNK_SIZE];
+    private int filled;
+    private boolean closed;
+
+    public AsyncOutputStream(OutputStream downstream) {
+        this.downstream = downstream;
+        this.thread = new Thread(this::drain, "json-diff-compress");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (filled == current.length) handOff();
+        current[filled++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (filled == current.length) handOff();
+            int n = Math.min(len, current.length - filled);
+            System.arraycopy(b, off, current, filled, n);
+            filled += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /** Hands over what is buffered; the data reaches the file once the thread has written it. */
+    @Override
+    public void flush() throws IOException {
+        if (filled > 0) handOff();
+        checkFailure();
+    }
+
+    /** Hands over the rest, waits for the thread to write and close downstream, and reports its failure. */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            if (filled > 0) handOff();
+        } finally {
+            full.put(new Chunk(END, 0), () -> !thread.isAlive());
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for the compressor", e);
+            }
+        }
+        checkFailure();
+    }
+
+    private void handOff() throws IOException {
+        checkFailure();
+        if (!full.put(new Chunk(current, filled), () -> failure != null)) checkFailure();
+        byte[] recycled = free.poll();
+        current = recycled != null ? recycled : new byte[CHUNK_SIZE];
+        filled = 0;
+    }
+
+    private void checkFailure() throws IOException {
+        Throwable t = failure;
+        if (t == null) return;
+        if (t instanceof IOException io) throw io;
+        throw new IOException("Compression failed: " + t.getMessage(), t);
+    }
+
+    private void drain() {
+        try (OutputStream out = downstream) {
+            for (Chunk c = full.take(); c.data != END; c = full.take()) {
+                out.write(c.data, 0, c.length);
+                free.offer(c.data);
+            }
+        } catch (Throwable t) {
+            failure = t;
+        }
+    }
+}
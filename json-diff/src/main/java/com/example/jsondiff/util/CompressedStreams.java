@@ -0,0 +1,93 @@
+package com.example.jsondiff.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * gzip/deflate (zlib) on the input and report side.
+ * - Inputs are recognised by their first two bytes, not by file name, so a renamed archive still works.
+ *   No JSON text starts with either: 0x1f is a control character, and no two leading bytes of a JSON text
+ *   form a valid zlib header without a preset dictionary.
+ * - Reports: --compress=gzip|deflate appends .gz/.zz to the report name; --compress-async moves the
+ *   compression onto its own thread (see {@link AsyncOutputStream}).
+ * All layers use 64 KB buffers.
+ */
+public final class CompressedStreams {
+
+    public static final int BUFFER_SIZE = 64 * 1024;
+
+    public enum Codec {
+        NONE(""), GZIP(".gz"), DEFLATE(".zz");
+
+        private final String extension;
+
+        Codec(String extension) {
+            this.extension = extension;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    private CompressedStreams() {
+    }
+
+    /** --compress=gzip|deflate|none (default none). */
+    public static Codec codecFromOptions(DiffOptions opts) {
+        String name = opts.value("compress", "none");
+        try {
+            return Codec.valueOf(name.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown --compress value: " + name + " (expected gzip, deflate or none)");
+        }
+    }
+
+    /** Wraps the input in a decompressor when it starts with a gzip or zlib header; plain input passes through. */
+    public static InputStream decode(InputStream in) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in, BUFFER_SIZE);
+        buffered.mark(2);
+        int b0 = buffered.read();
+        int b1 = buffered.read();
+        buffered.reset();
+        if (b0 == 0x1f && b1 == 0x8b) {
+            return new GZIPInputStream(buffered, BUFFER_SIZE);
+        }
+        if (isZlibHeader(b0, b1)) {
+            return new InflaterInputStream(buffered, new Inflater(), BUFFER_SIZE);
+        }
+        return buffered;
+    }
+
+    /** UTF-8 writer on a new report file, compressed per codec, optionally compressing on a separate thread. */
+    public static Writer openWriter(Path out, Codec codec, boolean async) throws IOException {
+        OutputStream file = Files.newOutputStream(out);
+        OutputStream encoded = switch (codec) {
+            case GZIP -> new GZIPOutputStream(file, BUFFER_SIZE);
+            case DEFLATE -> new DeflaterOutputStream(file, new Deflater(), BUFFER_SIZE);
+            case NONE -> file;
+        };
+        OutputStream stream = async && codec != Codec.NONE ? new AsyncOutputStream(encoded) : encoded;
+        return new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    // CMF: deflate method, window <= 32K; FLG: no preset dictionary; header checksum per RFC 1950
+    private static boolean isZlibHeader(int b0, int b1) {
+        if (b0 < 0 || b1 < 0) return false;
+        return (b0 & 0x0f) == 8 && (b0 >> 4) <= 7 && (b1 & 0x20) == 0 && ((b0 << 8) | b1) % 31 == 0;
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.jsondiff.util;
+
+import io.micrometer.core.instrument.Clock;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import io.micrometer.jmx.JmxConfig;
+import io.micrometer.jmx.JmxMeterRegistry;
+import io.micrometer.prometheusmetrics.PrometheusConfig;
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Micrometer meters for the diff pipeline: parse, traversal, array alignment and report writing.
+ * - Always recorded into a Prometheus registry; {@link #writePrometheus} dumps it in text format.
+ * - {@link #enableJmx()} additionally publishes the same meters as MBeans (domain "metrics").
+ * Meters are registered once and reused across runs, so counters accumulate per JVM.
+ * Thread-safe: concurrent diffs may record into one instance.
+ */
+public class DiffMetrics {
+
+    private final CompositeMeterRegistry registry = new CompositeMeterRegistry();
+    private final PrometheusMeterRegistry prometheus = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+    private JmxMeterRegistry jmx;
+
+    private final Map<String, Counter> rowCounters = new ConcurrentHashMap<>();
+    private final Map<String, Timer> arrayTimers = new ConcurrentHashMap<>();
+    private final Counter inputBytes;
+    private final Counter outputBytes;
+    private final Counter nodes;
+    private final Counter cacheHits;
+    private final Counter cacheMisses;
+    private final Timer traversal;
+    private final Timer reportWrite;
+    private final AtomicLong nodesPerSecond = new AtomicLong();
+
+    public DiffMetrics() {
+        registry.add(prometheus);
+        inputBytes = Counter.builder("jsondiff.input.bytes").baseUnit("bytes")
+                .description("Bytes of JSON input read").register(registry);
+        outputBytes = Counter.builder("jsondiff.output.bytes").baseUnit("bytes")
+                .description("Bytes of report output written").register(registry);
+        nodes = Counter.builder("jsondiff.traversal.nodes")
+                .description("Node pairs compared").register(registry);
+        cacheHits = Counter.builder("jsondiff.alignment.cache").tag("result", "hit")
+                .description("Alignment key lookups by cache result").register(registry);
+        cacheMisses = Counter.builder("jsondiff.alignment.cache").tag("result", "miss")
+                .description("Alignment key lookups by cache result").register(registry);
+        traversal = Timer.builder("jsondiff.traversal")
+                .description("Tree comparison time").register(registry);
+        reportWrite = Timer.builder("jsondiff.report.write")
+                .description("Report encoding and write time").register(registry);
+        registry.gauge("jsondiff.traversal.nodes.per.second", nodesPerSecond);
+    }
+
+    public MeterRegistry getRegistry() {
+        return registry;
+    }
+
+    /** Publishes all meters over JMX; idempotent. */
+    public synchronized void enableJmx() {
+        if (jmx == null) {
+            jmx = new JmxMeterRegistry(JmxConfig.DEFAULT, Clock.SYSTEM);
+            registry.add(jmx);
+        }
+    }
+
+    public Timer parseTimer(String side) {
+        return Timer.builder("jsondiff.parse").tag("side", side)
+                .description("JSON parse time per input side").register(registry);
+    }
+
+    public Timer arrayTimer(String mode) {
+        return arrayTimers.computeIfAbsent(mode, m -> Timer.builder("jsondiff.array.alignment").tag("mode", m)
+                .description("Array alignment time by alignment mode").register(registry));
+    }
+
+    public Timer traversalTimer() {
+        return traversal;
+    }
+
+    public Timer reportWriteTimer() {
+        return reportWrite;
+    }
+
+    public void inputBytes(long bytes) {
+        if (bytes > 0) inputBytes.increment(bytes);
+    }
+
+    public void outputBytes(long bytes) {
+        if (bytes > 0) outputBytes.increment(bytes);
+    }
+
+    public void row(String category) {
+        // Plain get first: computeIfAbsent would allocate its capturing lambda on every row
+        Counter counter = rowCounters.get(category);
+        if (counter == null) {
+            counter = rowCounters.computeIfAbsent(category, c -> Counter.builder("jsondiff.rows").tag("category", c)
+                    .description("Report rows by category").register(registry));
+        }
+        counter.increment();
+    }
+
+    /** Records one finished traversal: node count and the resulting throughput gauge. */
+    public void traversalDone(long nodeCount, long nanos) {
+        nodes.increment(nodeCount);
+        nodesPerSecond.set(nanos > 0 ? nodeCount * 1_000_000_000L / nanos : 0);
+    }
+
+    public void alignmentCache(long hits, long misses) {
+        cacheHits.increment(hits);
+        cacheMisses.increment(misses);
+    }
+
+    public String scrape() {
+        return prometheus.scrape();
+    }
+
+    public void writePrometheus(Path out) throws IOException {
+        Files.writeString(out, scrape(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.jsondiff.util;
+
+import java.util.*;
+
+/**
+ * Splits raw command line arguments into positional values (file names, mode)
+ * and "--name" / "--name=value" options.
+ * - Options may repeat; every value is kept in order.
+ * - A bare "--name" is recorded as a flag with no value, except for options that always take a value
+ *   ({@link #SEPARATE_VALUE}), which may also be written "--name value".
+ */
+public class DiffOptions {
+
+    // Options whose value may follow as the next argument
+    private static final Set<String> SEPARATE_VALUE = Set.of("only");
+
+    private final List<String> positional = new ArrayList<>();
+    private final Map<String, List<String>> options = new LinkedHashMap<>();
+
+    public static DiffOptions parse(String... args) {
+        DiffOptions opts = new DiffOptions();
+        if (args == null) return opts;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg == null) continue;
+            if (arg.startsWith("--") && arg.length() > 2) {
+                int eq = arg.indexOf('=');
+                String name = (eq > 0) ? arg.substring(2, eq) : arg.substring(2);
+                String value = (eq > 0) ? arg.substring(eq + 1) : null;
+                if (value == null && SEPARATE_VALUE.contains(name) && i + 1 < args.length
+                        && args[i + 1] != null && !args[i + 1].startsWith("--")) {
+                    value = args[++i];
+                }
+                List<String> values = opts.options.computeIfAbsent(name, k -> new ArrayList<>());
+                if (value != null) values.add(value);
+            } else {
+                opts.positional.add(arg);
+            }
+        }
+        return opts;
+    }
+
+    /** Arguments that are not options, in their original order. */
+    public List<String> positional() {
+        return positional;
+    }
+
+    public String positional(int index) {
+        return index < positional.size() ? positional.get(index) : null;
+    }
+
+    public boolean has(String name) {
+        return options.containsKey(name);
+    }
+
+    /** Last value given for the option, or null when absent or given as a bare flag. */
+    public String value(String name) {
+        List<String> values = options.get(name);
+        return (values == null || values.isEmpty()) ? null : values.get(values.size() - 1);
+    }
+
+    public String value(String name, String fallback) {
+        String v = value(name);
+        return v == null ? fallback : v;
+    }
+
+    public List<String> values(String name) {
+        return options.getOrDefault(name, Collections.emptyList());
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.jsondiff.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Row counts per category and path group, for reports that only need the totals (--summary).
+ * - A group is the path up to its depth-th segment: "BusinessRules.globalConfig" or "Feature.Login" at depth 2.
+ *   Segments end at '.' or '['.
+ * - Counting a row allocates nothing as long as it falls in the same group as the previous one,
+ *   which is the common case since diffs report paths in traversal order.
+ * Not thread-safe; one summary per diff.
+ */
+public final class DiffSummary {
+
+    public static final int PRESENT = 0;
+    public static final int MISSING = 1;
+    public static final int MODIFIED = 2;
+    public static final int MOVED = 3;
+    private static final String[] CATEGORIES = {"Present", "Missing", "Modified", "Moved"};
+
+    private final int depth;
+    private final Map<String, long[]> groups = new HashMap<>();
+    private final long[] total = new long[CATEGORIES.length];
+    // Group of the previous row, so consecutive rows of one group skip the map lookup
+    private String lastGroup;
+    private long[] lastCounts;
+    private String truncatedReason;
+
+    public DiffSummary(int depth) {
+        if (depth < 1) throw new IllegalArgumentException("--summary-depth must be at least 1: " + depth);
+        this.depth = depth;
+    }
+
+    /** --summary-depth=&lt;n&gt;, else the given default. */
+    public static DiffSummary fromOptions(DiffOptions opts, int defaultDepth) {
+        return new DiffSummary(Integer.parseInt(opts.value("summary-depth", String.valueOf(defaultDepth))));
+    }
+
+    public void add(int category, String path) {
+        total[category]++;
+        int end = groupEnd(path);
+        long[] counts = lastCounts;
+        if (counts == null || end != lastGroup.length() || !path.startsWith(lastGroup)) {
+            lastGroup = end == path.length() ? path : path.substring(0, end);
+            counts = groups.computeIfAbsent(lastGroup, k -> new long[CATEGORIES.length]);
+            lastCounts = counts;
+        }
+        counts[category]++;
+    }
+
+    /** The diff stopped early; the counts cover what was reported before. */
+    public void truncated(String reason) {
+        truncatedReason = reason;
+    }
+
+    public long total(int category) {
+        return total[category];
+    }
+
+    public int groupCount() {
+        return groups.size();
+    }
+
+    /** One line per group in path order, then the totals. */
+    public void printTable(PrintStream out) {
+        Map<String, long[]> sorted = new TreeMap<>(groups);
+        int width = "Group".length();
+        for (String group : sorted.keySet()) width = Math.max(width, group.length());
+        String format = "%-" + width + "s %10s %10s %10s %10s%n";
+        out.printf(format, "Group", CATEGORIES[0], CATEGORIES[1], CATEGORIES[2], CATEGORIES[3]);
+        for (Map.Entry<String, long[]> e : sorted.entrySet()) {
+            long[] c = e.getValue();
+            out.printf(format, e.getKey(), c[0], c[1], c[2], c[3]);
+        }
+        out.printf(format, "Total", total[0], total[1], total[2], total[3]);
+        if (truncatedReason != null) out.println("Truncated: " + truncatedReason);
+    }
+
+    /** {"total":{...},"groups":{"&lt;group&gt;":{"Present":n,...},...},"truncated":reason-or-null}, compact. */
+    public String toJson(ObjectMapper mapper) throws IOException {
+        ObjectNode root = mapper.createObjectNode();
+        counts(root.putObject("total"), total);
+        ObjectNode byGroup = root.putObject("groups");
+        new TreeMap<>(groups).forEach((group, c) -> counts(byGroup.putObject(group), c));
+        root.put("truncated", truncatedReason);
+        return mapper.writeValueAsString(root);
+    }
+
+    private static void counts(ObjectNode node, long[] c) {
+        for (int i = 0; i < CATEGORIES.length; i++) node.put(CATEGORIES[i], c[i]);
+    }
+
+    private int groupEnd(String path) {
+        int segments = 0;
+        for (int i = 0; i < path.length(); i++) {
+            char ch = path.charAt(i);
+            // "a[0]" and "a.b" both end segment "a"; '.' right after ']' closes nothing new
+            if ((ch == '.' && i > 0 && path.charAt(i - 1) != ']') || ch == '[') {
+                if (++segments == depth) return i;
+            }
+        }
+        return path.length();
+    }
+}
@@ -0,0 +1,499 @@
+package com.example.jsondiff.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Append-only local store of report rows across runs, so drift can be followed over time without
+ * re-reading old CSV reports. Layout of the store directory:
+ * - paths.dict / values.dict: every distinct path / every other cell (category, values, details, file labels)
+ *   as varint length + UTF-8; ids are assigned in order and shared by all runs, so a path is stored once.
+ * - category.col, path.col, left.col, right.col, details.col: one varint id per row, runs back to back.
+ * - path.idx: per run, one fixed-width (path id, run id, drift rows) record per distinct path, by path id.
+ * - runs.idx: one fixed-width record per run with where its data ends in each file above.
+ * A run becomes visible once its runs.idx record is written; bytes past the last record are dropped by the
+ * next append, so an interrupted run leaves no trace. One writer at a time: runs.idx is locked while appending
+ * (plus an in-process lock per store, as file locks do not exclude threads of one JVM), and a writer first
+ * picks up runs committed since it opened the store, re-numbering its own new dictionary entries after theirs.
+ * Drift rows are the Missing, Modified and Moved ones.
+ */
+public final class DriftHistory {
+
+    /** A committed run. */
+    public record Run(int id, long startedMillis, String left, String right, int rows, int driftRows) {
+    }
+
+    public static final String DEFAULT_DIR = "json-diff-history";
+
+    private static final int MAGIC = 0x4a444831; // "JDH1"
+    private static final int HEADER_BYTES = 4;
+    private static final Set<String> DRIFT = Set.of("Missing", "Modified", "Moved");
+
+    private static final String[] COLUMNS = {"category.col", "path.col", "left.col", "right.col", "details.col"};
+    private static final String PATHS = "paths.dict";
+    private static final String VALUES = "values.dict";
+    private static final String PATH_INDEX = "path.idx";
+    private static final String RUNS = "runs.idx";
+    private static final int PATH_INDEX_RECORD = 12;
+
+    // Files a run record keeps the end offset of, in this order
+    private static final int FILE_COUNT = COLUMNS.length + 3;
+    // id, startedMillis, left, right, rows, driftRows, path count, value count, file ends
+    private static final int RUN_RECORD = 4 + 8 + 4 * 6 + 8 * FILE_COUNT;
+
+    /** Run plus the dictionary sizes and file ends recorded with it. */
+    private record Entry(Run run, int pathCount, int valueCount, long[] ends) {
+    }
+
+    // Appending writers of this JVM, per store directory
+    private static final Map<Path, ReentrantLock> APPEND_LOCKS = new ConcurrentHashMap<>();
+
+    private final Path dir;
+    private final List<Entry> entries = new ArrayList<>();
+    private final List<String> paths = new ArrayList<>();
+    private final Map<String, Integer> pathIds = new HashMap<>();
+    // Loaded on first need: only appends and row reads touch the values dictionary
+    private List<String> values;
+    private Map<String, Integer> valueIds;
+
+    private DriftHistory(Path dir) {
+        this.dir = dir;
+    }
+
+    /** Opens (or starts) the store in dir, loading the run index and the path dictionary. */
+    public static DriftHistory open(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        DriftHistory h = new DriftHistory(dir);
+        h.loadRuns();
+        h.loadDictionary(PATHS, h.paths, h.pathIds, h.committedCount(true), 0, h.committedEnd(COLUMNS.length));
+        return h;
+    }
+
+    /** --history[=dir] opens the store (default {@value #DEFAULT_DIR}); null when the option is absent. */
+    public static DriftHistory fromOptions(DiffOptions opts) throws IOException {
+        return opts.has("history") ? open(Path.of(opts.value("history", DEFAULT_DIR))) : null;
+    }
+
+    public Path getDirectory() {
+        return dir;
+    }
+
+    public List<Run> runs() {
+        List<Run> out = new ArrayList<>(entries.size());
+        for (Entry e : entries) out.add(e.run);
+        return out;
+    }
+
+    public int pathCount() {
+        return paths.size();
+    }
+
+    /**
+     * Starts collecting the rows of a new run; nothing is written until {@link RunWriter#commit()}.
+     * One run at a time: starting another forgets whatever an uncommitted one interned.
+     */
+    public RunWriter newRun(String left, String right) {
+        ensureValues();
+        rollBack(paths, pathIds, committedCount(true));
+        rollBack(values, valueIds, committedCount(false));
+        return new RunWriter(left, right);
+    }
+
+    /** First run in which the path had a drift row; reads the path index only. */
+    public Optional<Run> firstDivergence(String path) throws IOException {
+        Integer id = pathIds.get(path);
+        if (id == null) return Optional.empty();
+        ByteBuffer index = readRange(PATH_INDEX, 0, committedEnd(COLUMNS.length + 2));
+        while (index.remaining() >= PATH_INDEX_RECORD) {
+            int pathId = index.getInt();
+            int runId = index.getInt();
+            int drift = index.getInt();
+            if (pathId == id && drift > 0) return Optional.of(entries.get(runId).run);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Drift rows per feature for every run (array index = position in {@link #runs()}), where the feature of
+     * a path is its first depth segments ("BusinessRules.LimitMaintenance" for depth 2). Reads the path index only.
+     */
+    public SortedMap<String, int[]> driftByFeature(int depth) throws IOException {
+        String[] features = new String[paths.size()];
+        for (int i = 0; i < features.length; i++) features[i] = prefix(paths.get(i), depth);
+        SortedMap<String, int[]> out = new TreeMap<>();
+        ByteBuffer index = readRange(PATH_INDEX, 0, committedEnd(COLUMNS.length + 2));
+        while (index.remaining() >= PATH_INDEX_RECORD) {
+            int pathId = index.getInt();
+            int runId = index.getInt();
+            int drift = index.getInt();
+            if (drift > 0) out.computeIfAbsent(features[pathId], k -> new int[entries.size()])[runId] += drift;
+        }
+        return out;
+    }
+
+    /** Rows of one run as report cells (category, path, left, right, details), decoded from all five columns. */
+    public List<String[]> rows(int runId) throws IOException {
+        if (runId < 0 || runId >= entries.size()) throw new IllegalArgumentException("No such run: " + runId);
+        ensureValues();
+        int n = entries.get(runId).run.rows();
+        ByteBuffer[] cols = new ByteBuffer[COLUMNS.length];
+        for (int c = 0; c < cols.length; c++) {
+            long start = runId == 0 ? 0 : entries.get(runId - 1).ends[c];
+            cols[c] = readRange(COLUMNS[c], start, entries.get(runId).ends[c]);
+        }
+        List<String[]> out = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            out.add(new String[]{
+                    values.get(readVarint(cols[0])), paths.get(readVarint(cols[1])),
+                    values.get(readVarint(cols[2])), values.get(readVarint(cols[3])), values.get(readVarint(cols[4]))
+            });
+        }
+        return out;
+    }
+
+    /**
+     * Collects one run's rows in memory (interning into the shared dictionaries) and appends them on commit.
+     * Not thread-safe; rows must arrive from one thread.
+     */
+    public final class RunWriter {
+        private final long startedMillis = System.currentTimeMillis();
+        private int leftLabel;
+        private int rightLabel;
+        private final ByteArrayOutputStream[] columns = new ByteArrayOutputStream[COLUMNS.length];
+        private final ByteArrayOutputStream newPaths = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream newValues = new ByteArrayOutputStream();
+        private int pathsBefore = paths.size();
+        // Path id -> {rows, drift rows}
+        private Map<Integer, int[]> perPath = new HashMap<>();
+        private int rows;
+        private int driftRows;
+        private boolean committed;
+
+        private RunWriter(String left, String right) {
+            for (int c = 0; c < columns.length; c++) columns[c] = new ByteArrayOutputStream();
+            leftLabel = internValue(left);
+            rightLabel = internValue(right);
+        }
+
+        public void add(String[] row) {
+            if (committed) throw new IllegalStateException("Run already committed");
+            boolean drift = DRIFT.contains(row[0]);
+            int pathId = internPath(cell(row, 1));
+            writeVarint(columns[0], internValue(cell(row, 0)));
+            writeVarint(columns[1], pathId);
+            writeVarint(columns[2], internValue(cell(row, 2)));
+            writeVarint(columns[3], internValue(cell(row, 3)));
+            writeVarint(columns[4], internValue(cell(row, 4)));
+            int[] counts = perPath.computeIfAbsent(pathId, k -> new int[2]);
+            counts[0]++;
+            rows++;
+            if (drift) {
+                counts[1]++;
+                driftRows++;
+            }
+        }
+
+        public int getRows() {
+            return rows;
+        }
+
+        /** Paths this run added to the dictionary; final once committed. */
+        public int getNewPaths() {
+            return paths.size() - pathsBefore;
+        }
+
+        /**
+         * Appends the run's data, then its run record; returns the committed run. Runs other writers committed
+         * since this store was read come first: their dictionary entries are loaded and this run's own new
+         * paths and values are re-numbered after them.
+         */
+        public Run commit() throws IOException {
+            if (committed) throw new IllegalStateException("Run already committed");
+            committed = true;
+            ReentrantLock appendLock = APPEND_LOCKS.computeIfAbsent(dir.toRealPath(), k -> new ReentrantLock());
+            appendLock.lock();
+            try (FileChannel runsFile = FileChannel.open(dir.resolve(RUNS),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                 FileLock ignored = runsFile.lock()) {
+                int pathBase = committedCount(true);
+                int valueBase = committedCount(false);
+                List<String> ownPaths = new ArrayList<>(paths.subList(pathBase, paths.size()));
+                List<String> ownValues = new ArrayList<>(values.subList(valueBase, values.size()));
+                if (refresh(runsFile)) rebase(pathBase, ownPaths, valueBase, ownValues);
+
+                int runId = entries.size();
+                ByteArrayOutputStream index = new ByteArrayOutputStream(perPath.size() * PATH_INDEX_RECORD);
+                ByteBuffer rec = ByteBuffer.allocate(PATH_INDEX_RECORD);
+                for (int pathId : new TreeSet<>(perPath.keySet())) {
+                    rec.clear();
+                    rec.putInt(pathId).putInt(runId).putInt(perPath.get(pathId)[1]);
+                    index.write(rec.array(), 0, PATH_INDEX_RECORD);
+                }
+
+                long[] ends = new long[FILE_COUNT];
+                for (int c = 0; c < COLUMNS.length; c++) {
+                    ends[c] = append(COLUMNS[c], committedEnd(c), columns[c]);
+                }
+                ends[COLUMNS.length] = append(PATHS, committedEnd(COLUMNS.length), newPaths);
+                ends[COLUMNS.length + 1] = append(VALUES, committedEnd(COLUMNS.length + 1), newValues);
+                ends[COLUMNS.length + 2] = append(PATH_INDEX, committedEnd(COLUMNS.length + 2), index);
+
+                Run run = new Run(runId, startedMillis, values.get(leftLabel), values.get(rightLabel), rows, driftRows);
+                Entry entry = new Entry(run, paths.size(), values.size(), ends);
+                ByteBuffer record = ByteBuffer.allocate(RUN_RECORD);
+                record.putInt(runId).putLong(startedMillis).putInt(leftLabel).putInt(rightLabel)
+                        .putInt(rows).putInt(driftRows).putInt(entry.pathCount).putInt(entry.valueCount);
+                for (long end : ends) record.putLong(end);
+                record.flip();
+
+                long at = HEADER_BYTES + (long) runId * RUN_RECORD;
+                if (runId == 0) runsFile.write(ByteBuffer.allocate(HEADER_BYTES).putInt(0, MAGIC), 0);
+                runsFile.truncate(at);
+                runsFile.write(record, at);
+                runsFile.force(true);
+                entries.add(entry);
+                return run;
+            } finally {
+                appendLock.unlock();
+            }
+        }
+
+        /**
+         * Re-interns the paths and values this run added (formerly ids pathBase.. / valueBase..) into the
+         * refreshed dictionaries and rewrites the ids in the columns, labels and per-path counts.
+         */
+        private void rebase(int pathBase, List<String> ownPaths, int valueBase, List<String> ownValues) {
+            newPaths.reset();
+            newValues.reset();
+            int[] pathIdOf = new int[ownPaths.size()];
+            for (int i = 0; i < pathIdOf.length; i++) pathIdOf[i] = internPath(ownPaths.get(i));
+            int[] valueIdOf = new int[ownValues.size()];
+            for (int i = 0; i < valueIdOf.length; i++) valueIdOf[i] = internValue(ownValues.get(i));
+
+            for (int c = 0; c < columns.length; c++) {
+                ByteBuffer ids = ByteBuffer.wrap(columns[c].toByteArray());
+                ByteArrayOutputStream out = new ByteArrayOutputStream(ids.capacity());
+                while (ids.hasRemaining()) {
+                    int id = readVarint(ids);
+                    writeVarint(out, c == 1 ? renumber(id, pathBase, pathIdOf) : renumber(id, valueBase, valueIdOf));
+                }
+                columns[c] = out;
+            }
+            leftLabel = renumber(leftLabel, valueBase, valueIdOf);
+            rightLabel = renumber(rightLabel, valueBase, valueIdOf);
+            Map<Integer, int[]> counts = new HashMap<>();
+            for (Map.Entry<Integer, int[]> e : perPath.entrySet()) {
+                counts.put(renumber(e.getKey(), pathBase, pathIdOf), e.getValue());
+            }
+            perPath = counts;
+            pathsBefore = committedCount(true);
+        }
+
+        private int internPath(String path) {
+            return intern(path, paths, pathIds, newPaths);
+        }
+
+        private int internValue(String value) {
+            return intern(value, values, valueIds, newValues);
+        }
+    }
+
+    private static int renumber(int id, int base, int[] newIds) {
+        return id < base ? id : newIds[id - base];
+    }
+
+    private static String cell(String[] row, int i) {
+        return i < row.length && row[i] != null ? row[i] : "";
+    }
+
+    private static int intern(String s, List<String> list, Map<String, Integer> ids, ByteArrayOutputStream pending) {
+        Integer id = ids.get(s);
+        if (id != null) return id;
+        int next = list.size();
+        list.add(s);
+        ids.put(s, next);
+        byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+        writeVarint(pending, utf8.length);
+        pending.write(utf8, 0, utf8.length);
+        return next;
+    }
+
+    private static void rollBack(List<String> list, Map<String, Integer> ids, int size) {
+        while (list.size() > size) ids.remove(list.remove(list.size() - 1));
+    }
+
+    private static String prefix(String path, int depth) {
+        int at = -1;
+        for (int i = 0; i < depth; i++) {
+            at = path.indexOf('.', at + 1);
+            if (at < 0) return path;
+        }
+        return path.substring(0, at);
+    }
+
+    private void ensureValues() {
+        if (values != null) return;
+        List<String> list = new ArrayList<>();
+        Map<String, Integer> ids = new HashMap<>();
+        try {
+            loadDictionary(VALUES, list, ids, committedCount(false), 0, committedEnd(COLUMNS.length + 1));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read " + dir.resolve(VALUES), e);
+        }
+        values = list;
+        valueIds = ids;
+    }
+
+    private void loadRuns() throws IOException {
+        Path file = dir.resolve(RUNS);
+        if (!Files.exists(file) || Files.size(file) < HEADER_BYTES) return;
+        ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(file));
+        if (buf.getInt() != MAGIC) throw new IOException("Not a drift history index: " + file);
+        List<int[]> labels = new ArrayList<>();
+        List<Entry> loaded = readEntries(buf, labels);
+        if (loaded.isEmpty()) return;
+        // Labels live in the values dictionary: resolve just those entries without keeping the dictionary
+        int maxLabel = labels.stream().mapToInt(l -> Math.max(l[0], l[1])).max().orElse(0);
+        List<String> head = new ArrayList<>();
+        loadDictionary(VALUES, head, null, maxLabel + 1, 0, loaded.get(loaded.size() - 1).ends[COLUMNS.length + 1]);
+        for (int i = 0; i < loaded.size(); i++) entries.add(labelled(loaded.get(i), head, labels.get(i)));
+    }
+
+    /**
+     * Under the append lock: loads the run records other writers committed since this store was read, and the
+     * dictionary entries they added, after dropping the uncommitted ones. False when there were none.
+     */
+    private boolean refresh(FileChannel runsFile) throws IOException {
+        long known = HEADER_BYTES + (long) entries.size() * RUN_RECORD;
+        long size = runsFile.size();
+        if (size < known + RUN_RECORD) return false;
+        if (entries.isEmpty()) {
+            ByteBuffer magic = ByteBuffer.allocate(Integer.BYTES);
+            runsFile.read(magic, 0);
+            if (magic.getInt(0) != MAGIC) throw new IOException("Not a drift history index: " + dir.resolve(RUNS));
+        }
+        ByteBuffer buf = ByteBuffer.allocate(Math.toIntExact((size - known) / RUN_RECORD * RUN_RECORD));
+        while (buf.hasRemaining()) {
+            if (runsFile.read(buf, known + buf.position()) < 0) throw new IOException("Drift history index shrank");
+        }
+        buf.flip();
+        List<int[]> labels = new ArrayList<>();
+        List<Entry> added = readEntries(buf, labels);
+        Entry last = added.get(added.size() - 1);
+
+        rollBack(paths, pathIds, committedCount(true));
+        rollBack(values, valueIds, committedCount(false));
+        loadDictionary(PATHS, paths, pathIds, last.pathCount, committedEnd(COLUMNS.length), last.ends[COLUMNS.length]);
+        loadDictionary(VALUES, values, valueIds, last.valueCount, committedEnd(COLUMNS.length + 1),
+                last.ends[COLUMNS.length + 1]);
+        for (int i = 0; i < added.size(); i++) entries.add(labelled(added.get(i), values, labels.get(i)));
+        return true;
+    }
+
+    /** Run records up to the end of buf, with null labels; their label ids go to labels. */
+    private static List<Entry> readEntries(ByteBuffer buf, List<int[]> labels) {
+        List<Entry> out = new ArrayList<>();
+        while (buf.remaining() >= RUN_RECORD) {
+            int id = buf.getInt();
+            long started = buf.getLong();
+            int left = buf.getInt();
+            int right = buf.getInt();
+            int rows = buf.getInt();
+            int drift = buf.getInt();
+            int pathCount = buf.getInt();
+            int valueCount = buf.getInt();
+            long[] ends = new long[FILE_COUNT];
+            for (int i = 0; i < ends.length; i++) ends[i] = buf.getLong();
+            out.add(new Entry(new Run(id, started, null, null, rows, drift), pathCount, valueCount, ends));
+            labels.add(new int[]{left, right});
+        }
+        return out;
+    }
+
+    private static Entry labelled(Entry e, List<String> values, int[] labels) {
+        Run r = e.run;
+        return new Entry(new Run(r.id(), r.startedMillis(), values.get(labels[0]), values.get(labels[1]), r.rows(),
+                r.driftRows()), e.pathCount, e.valueCount, e.ends);
+    }
+
+    /**
+     * Appends the entries of a dictionary file between start (the end of those already in list) and end,
+     * until list holds limit entries.
+     */
+    private void loadDictionary(String name, List<String> list, Map<String, Integer> ids, int limit, long start,
+                                long end) throws IOException {
+        if (list.size() >= limit || end <= start) return;
+        ByteBuffer buf = readRange(name, start, end);
+        while (list.size() < limit && buf.hasRemaining()) {
+            int len = readVarint(buf);
+            String s = new String(buf.array(), buf.arrayOffset() + buf.position(), len, StandardCharsets.UTF_8);
+            buf.position(buf.position() + len);
+            if (ids != null) ids.put(s, list.size());
+            list.add(s);
+        }
+    }
+
+    private int committedCount(boolean paths) {
+        if (entries.isEmpty()) return 0;
+        Entry last = entries.get(entries.size() - 1);
+        return paths ? last.pathCount : last.valueCount;
+    }
+
+    private long committedEnd(int file) {
+        return entries.isEmpty() ? 0 : entries.get(entries.size() - 1).ends[file];
+    }
+
+    private ByteBuffer readRange(String name, long start, long end) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(Math.toIntExact(end - start));
+        if (end == start) return buf;
+        try (FileChannel ch = FileChannel.open(dir.resolve(name), StandardOpenOption.READ)) {
+            long pos = start;
+            while (buf.hasRemaining()) {
+                int n = ch.read(buf, pos);
+                if (n < 0) throw new IOException("Drift history file is shorter than its index: " + dir.resolve(name));
+                pos += n;
+            }
+        }
+        return buf.flip();
+    }
+
+    /** Drops anything past the committed end (left by an interrupted run), appends, syncs; returns the new end. */
+    private long append(String name, long committedEnd, ByteArrayOutputStream data) throws IOException {
+        try (FileChannel ch = FileChannel.open(dir.resolve(name), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            ch.truncate(committedEnd);
+            ByteBuffer buf = ByteBuffer.wrap(data.toByteArray());
+            long pos = committedEnd;
+            while (buf.hasRemaining()) pos += ch.write(buf, pos);
+            ch.force(false);
+            return pos;
+        }
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7f) != 0) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarint(ByteBuffer buf) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buf.get();
+            value |= (b & 0x7f) << shift;
+            if (b >= 0) return value;
+        }
+    }
+}
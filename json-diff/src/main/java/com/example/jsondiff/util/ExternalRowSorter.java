@@ -0,0 +1,207 @@
+package com.example.jsondiff.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Sorts report rows (cell arrays) that need not fit in memory.
+ * - Rows are buffered until their estimated heap size reaches the run budget; the buffer is then sorted and
+ *   spilled to a temp file as one sorted run. {@link #finish} k-way merges the runs into the sink.
+ * - Run files are compact binary: per row a varint cell count, then per cell a varint UTF-8 length and the bytes.
+ * - Stable: rows that compare equal keep their insertion order (stable sort per run, ties go to the earlier run).
+ * - Memory: one run while adding; one decoded row and a read buffer per run while merging.
+ * - When all rows fit in one run nothing touches the disk. {@link #close} deletes the run files.
+ * Null cells are stored as "", so the order and the rows do not depend on whether they were spilled. Not
+ * thread-safe.
+ */
+public final class ExternalRowSorter implements AutoCloseable {
+
+    /** Receives the rows in order. */
+    public interface RowSink {
+        void accept(String[] row) throws IOException;
+    }
+
+    // Per-run read buffer while merging; small, since hundreds of runs may be open at once
+    private static final int MERGE_BUFFER = 32 * 1024;
+    // Rough heap cost of a row and of a cell beyond their characters
+    private static final long ROW_OVERHEAD = 32;
+    private static final long CELL_OVERHEAD = 56;
+
+    private final Comparator<String[]> order;
+    private final long runBytes;
+    private final Path tempDir;
+    private final List<String[]> buffer = new ArrayList<>();
+    private final List<Path> runs = new ArrayList<>();
+    private long bufferedBytes;
+    private long spilledBytes;
+    private long rows;
+    private boolean finished;
+
+    /**
+     * @param runBytes estimated heap the buffered rows may take before they are spilled as a run
+     * @param tempDir  where run files go
+     */
+    public ExternalRowSorter(Comparator<String[]> order, long runBytes, Path tempDir) {
+        if (runBytes < 1) throw new IllegalArgumentException("Run size must be positive: " + runBytes);
+        this.order = order;
+        this.runBytes = runBytes;
+        this.tempDir = tempDir;
+    }
+
+    /** --sort-run-mb=&lt;n&gt; (default 64) and --sort-dir=&lt;dir&gt; (default the system temp dir). */
+    public static ExternalRowSorter fromOptions(DiffOptions opts, Comparator<String[]> order) {
+        long mb = Long.parseLong(opts.value("sort-run-mb", "64"));
+        Path dir = Path.of(opts.value("sort-dir", System.getProperty("java.io.tmpdir")));
+        return new ExternalRowSorter(order, mb << 20, dir);
+    }
+
+    public void add(String[] row) throws IOException {
+        if (finished) throw new IllegalStateException("Sorter already finished");
+        String[] copy = null;
+        bufferedBytes += ROW_OVERHEAD;
+        for (int i = 0; i < row.length; i++) {
+            if (row[i] == null) {
+                if (copy == null) copy = row.clone();
+                copy[i] = "";
+            }
+            bufferedBytes += CELL_OVERHEAD + (row[i] == null ? 0 : row[i].length());
+        }
+        buffer.add(copy != null ? copy : row);
+        rows++;
+        if (bufferedBytes >= runBytes) spill();
+    }
+
+    /** Hands every row to the sink in sorted order. */
+    public void finish(RowSink sink) throws IOException {
+        if (finished) throw new IllegalStateException("Sorter already finished");
+        finished = true;
+        buffer.sort(order);
+        if (runs.isEmpty()) {
+            for (String[] row : buffer) sink.accept(row);
+            buffer.clear();
+            return;
+        }
+        if (!buffer.isEmpty()) spill();
+
+        List<RunReader> readers = new ArrayList<>();
+        PriorityQueue<RunReader> heap = new PriorityQueue<>((a, b) -> {
+            int c = order.compare(a.row, b.row);
+            return c != 0 ? c : Integer.compare(a.index, b.index);
+        });
+        try {
+            for (Path run : runs) {
+                RunReader reader = new RunReader(readers.size(), Files.newInputStream(run));
+                readers.add(reader);
+                if (reader.advance()) heap.add(reader);
+            }
+            while (!heap.isEmpty()) {
+                RunReader next = heap.poll();
+                sink.accept(next.row);
+                if (next.advance()) heap.add(next);
+            }
+        } finally {
+            for (RunReader reader : readers) reader.in.close();
+        }
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    /** Sorted runs written to disk (0 when everything fit in memory). */
+    public int getRuns() {
+        return runs.size();
+    }
+
+    public long getSpilledBytes() {
+        return spilledBytes;
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer.clear();
+        for (Path run : runs) Files.deleteIfExists(run);
+        runs.clear();
+    }
+
+    private void spill() throws IOException {
+        buffer.sort(order);
+        Path run = Files.createTempFile(tempDir, "json-diff-sort-", ".run");
+        runs.add(run);
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(run), CompressedStreams.BUFFER_SIZE)) {
+            for (String[] row : buffer) {
+                writeVarint(out, row.length);
+                for (String cell : row) {
+                    byte[] utf8 = cell.getBytes(StandardCharsets.UTF_8);
+                    writeVarint(out, utf8.length);
+                    out.write(utf8);
+                }
+            }
+        }
+        spilledBytes += Files.size(run);
+        buffer.clear();
+        bufferedBytes = 0;
+    }
+
+    /** Current row of one run file. */
+    private static final class RunReader {
+        final int index;
+        final DataInputStream in;
+        byte[] scratch = new byte[256];
+        String[] row;
+
+        RunReader(int index, InputStream in) {
+            this.index = index;
+            this.in = new DataInputStream(new BufferedInputStream(in, MERGE_BUFFER));
+        }
+
+        boolean advance() throws IOException {
+            int first = in.read();
+            if (first < 0) {
+                row = null;
+                return false;
+            }
+            int cells = readVarint(in, first);
+            String[] next = new String[cells];
+            for (int i = 0; i < cells; i++) {
+                int len = readVarint(in, in.read());
+                if (scratch.length < len) scratch = new byte[Math.max(len, scratch.length * 2)];
+                in.readFully(scratch, 0, len);
+                next[i] = new String(scratch, 0, len, StandardCharsets.UTF_8);
+            }
+            row = next;
+            return true;
+        }
+    }
+
+    private static void writeVarint(OutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /** Varint whose first byte was already read. */
+    private static int readVarint(InputStream in, int b) throws IOException {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            if (b < 0) throw new EOFException("Truncated sort run");
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+            b = in.read();
+        }
+    }
+}
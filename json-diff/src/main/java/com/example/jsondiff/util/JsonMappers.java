@@ -0,0 +1,30 @@
+package com.example.jsondiff.util;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.StreamReadConstraints;
+import com.fasterxml.jackson.core.StreamWriteConstraints;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * ObjectMapper factory for diff inputs.
+ * Jackson caps nesting at 1000 levels by default; generated rule documents can go much deeper.
+ * Traversal, equality, hashing and rendering are iterative ({@link JsonTrees}, {@link StructuralHash}),
+ * so depth costs heap rather than thread stack, and the cap is raised to {@link #MAX_NESTING_DEPTH}
+ * for both reading and writing. Deeper input fails with Jackson's StreamConstraintsException.
+ */
+public final class JsonMappers {
+
+    /** Deepest nesting read or written; bounds the heap an adversarial input can pin in explicit stacks. */
+    public static final int MAX_NESTING_DEPTH = 100_000;
+
+    private JsonMappers() {
+    }
+
+    public static ObjectMapper newMapper() {
+        JsonFactory factory = JsonFactory.builder()
+                .streamReadConstraints(StreamReadConstraints.builder().maxNestingDepth(MAX_NESTING_DEPTH).build())
+                .streamWriteConstraints(StreamWriteConstraints.builder().maxNestingDepth(MAX_NESTING_DEPTH).build())
+                .build();
+        return new ObjectMapper(factory);
+    }
+}
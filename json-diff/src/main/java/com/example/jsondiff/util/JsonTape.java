@@ -0,0 +1,784 @@
+package com.example.jsondiff.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.BigIntegerNode;
+import com.fasterxml.jackson.databind.node.BooleanNode;
+import com.fasterxml.jackson.databind.node.DoubleNode;
+import com.fasterxml.jackson.databind.node.IntNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.LongNode;
+import com.fasterxml.jackson.databind.node.MissingNode;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractCollection;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Compact, immutable form of a parsed document: one long per token in a flat tape, the original UTF-8 bytes,
+ * and a table of interned field names.
+ * - Tape word: type in the top byte, payload below. Objects and arrays hold their child count and the index
+ *   just past their last word, so a subtree is skipped in O(1). Field names hold a key id; strings and numbers
+ *   hold the byte offset of their text, decoded only when read.
+ * - {@link #root()} exposes the tape as Jackson nodes: objects and arrays are ObjectNode / ArrayNode over
+ *   read-only views of the tape, scalars are decoded on access. Nothing is materialized up front, and views
+ *   are not cached, so the same position read twice gives equal but not identical nodes.
+ * - Built from {@link StructuralIndexer} offsets, with grammar, escapes, numbers and literals checked as
+ *   strictly as Jackson does (UTF-8 input only; malformed UTF-8 decodes to U+FFFD instead of failing).
+ * - Node types and values match ObjectMapper.readTree (ints narrow to int, then long, then BigInteger; floats
+ *   are doubles; a duplicate field keeps its first position and its last value; content after the first
+ *   value is ignored).
+ * Immutable and thread-safe once built; a view's lazily built index is private to that view.
+ */
+public final class JsonTape {
+
+    private static final int OBJECT = 1;
+    // Object with a repeated field name; read through a resolved map (rare)
+    private static final int OBJECT_DUP = 2;
+    private static final int ARRAY = 3;
+    private static final int KEY = 4;
+    private static final int STRING = 5;
+    private static final int INT = 6;
+    private static final int FLOAT = 7;
+    private static final int TRUE = 8;
+    private static final int FALSE = 9;
+    private static final int NULL = 10;
+
+    private static final long PAYLOAD = (1L << 56) - 1;
+    // Containers: child count in bits 32..55 (saturating), end index in bits 0..31
+    private static final int MAX_COUNT = (1 << 24) - 1;
+    // Objects with more fields than this get a key-id hash index on first lookup
+    private static final int INDEX_THRESHOLD = 8;
+
+    private static final JsonNodeFactory NODES = JsonNodeFactory.instance;
+
+    private final long[] tape;
+    private final byte[] source;
+    private final String[] keys;
+    private final Map<String, Integer> keyIds;
+    private final int nodes;
+
+    private JsonTape(long[] tape, byte[] source, String[] keys, Map<String, Integer> keyIds, int nodes) {
+        this.tape = tape;
+        this.source = source;
+        this.keys = keys;
+        this.keyIds = keyIds;
+        this.nodes = nodes;
+    }
+
+    /** Reads the whole stream (already decompressed, UTF-8) and builds its tape. */
+    public static JsonTape read(InputStream in) throws IOException {
+        return read(in, () -> false);
+    }
+
+    /** Same as {@link #read(InputStream)}; building fails with InterruptedIOException once stop answers true. */
+    public static JsonTape read(InputStream in, BooleanSupplier stop) throws IOException {
+        return new Builder(in.readAllBytes(), stop).build();
+    }
+
+    /** Builds the tape of the first JSON value in source (UTF-8); the array is kept, not copied. */
+    public static JsonTape parse(byte[] source) throws IOException {
+        return new Builder(source, () -> false).build();
+    }
+
+    /** The document as a Jackson node (MissingNode for empty input). */
+    public JsonNode root() {
+        return tape.length == 0 ? MissingNode.getInstance() : node(0);
+    }
+
+    /** Tape words (tokens). */
+    public int size() {
+        return tape.length;
+    }
+
+    /** Values in the document, containers included (each occurrence of a repeated field too): the non-key words. */
+    public int nodeCount() {
+        return nodes;
+    }
+
+    public int keyCount() {
+        return keys.length;
+    }
+
+    /** Heap held by the tape, source bytes and key table (estimate). */
+    public long retainedBytes() {
+        long bytes = 16L + 8L * tape.length + 16 + source.length + 16 + 4L * keys.length;
+        for (String key : keys) bytes += 40 + key.length() + 48; // string, and its key-id map entry
+        return bytes;
+    }
+
+    private static int type(long word) {
+        return (int) (word >>> 56);
+    }
+
+    private static int end(long word) {
+        return (int) word;
+    }
+
+    /** Index of the word after the value at i. */
+    private int skip(int i) {
+        int t = type(tape[i]);
+        return t == OBJECT || t == OBJECT_DUP || t == ARRAY ? end(tape[i]) : i + 1;
+    }
+
+    private int count(int i) {
+        int c = (int) (tape[i] >>> 32) & MAX_COUNT;
+        if (c < MAX_COUNT) return c;
+        // Saturated: count by walking
+        boolean object = type(tape[i]) != ARRAY;
+        int n = 0;
+        for (int j = i + 1, end = end(tape[i]); j < end; j = skip(object ? j + 1 : j)) n++;
+        return n;
+    }
+
+    private JsonNode node(int i) {
+        long word = tape[i];
+        switch (type(word)) {
+            case OBJECT:
+                return new ObjectNode(NODES, new FieldMap(i));
+            case OBJECT_DUP:
+                return new ObjectNode(NODES, resolveDuplicates(i));
+            case ARRAY:
+                return new ArrayNode(NODES, new ItemList(i));
+            case STRING:
+                return TextNode.valueOf(decode(source, (int) (word & PAYLOAD)));
+            case INT:
+                return integer((int) (word & PAYLOAD));
+            case FLOAT:
+                return DoubleNode.valueOf(Double.parseDouble(numberText((int) (word & PAYLOAD))));
+            case TRUE:
+                return BooleanNode.TRUE;
+            case FALSE:
+                return BooleanNode.FALSE;
+            case NULL:
+                return NullNode.getInstance();
+            default:
+                throw new IllegalStateException("Corrupt tape at " + i);
+        }
+    }
+
+    private Map<String, JsonNode> resolveDuplicates(int i) {
+        Map<String, JsonNode> fields = new LinkedHashMap<>();
+        for (int j = i + 1, end = end(tape[i]); j < end; j = skip(j + 1)) {
+            fields.put(keys[(int) (tape[j] & PAYLOAD)], node(j + 1));
+        }
+        return fields;
+    }
+
+    private JsonNode integer(int offset) {
+        String text = numberText(offset);
+        try {
+            long v = Long.parseLong(text);
+            return v == (int) v ? IntNode.valueOf((int) v) : LongNode.valueOf(v);
+        } catch (NumberFormatException e) {
+            return BigIntegerNode.valueOf(new BigInteger(text));
+        }
+    }
+
+    private String numberText(int offset) {
+        int end = offset;
+        while (end < source.length && isNumberChar(source[end])) end++;
+        return new String(source, offset, end - offset, StandardCharsets.ISO_8859_1);
+    }
+
+    private static boolean isNumberChar(byte b) {
+        return (b >= '0' && b <= '9') || b == '-' || b == '+' || b == '.' || b == 'e' || b == 'E';
+    }
+
+    /** Decodes the string literal whose opening quote is at offset. */
+    static String decode(byte[] source, int offset) {
+        int start = offset + 1;
+        int i = start;
+        boolean ascii = true;
+        while (true) {
+            byte b = source[i];
+            if (b == '"') break;
+            if (b == '\\') return unescape(source, start);
+            if (b < 0) ascii = false;
+            i++;
+        }
+        return new String(source, start, i - start, ascii ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8);
+    }
+
+    private static String unescape(byte[] source, int start) {
+        StringBuilder sb = new StringBuilder();
+        int run = start;
+        int i = start;
+        while (true) {
+            byte b = source[i];
+            if (b == '"') break;
+            if (b != '\\') {
+                i++;
+                continue;
+            }
+            sb.append(new String(source, run, i - run, StandardCharsets.UTF_8));
+            char c = (char) source[i + 1];
+            i += 2;
+            switch (c) {
+                case 'b' -> sb.append('\b');
+                case 'f' -> sb.append('\f');
+                case 'n' -> sb.append('\n');
+                case 'r' -> sb.append('\r');
+                case 't' -> sb.append('\t');
+                case 'u' -> {
+                    sb.append((char) hex(source, i));
+                    i += 4;
+                }
+                case '"', '\\', '/' -> sb.append(c);
+                default -> throw new IllegalArgumentException("Invalid escape '\\" + c + "' at byte " + (i - 2));
+            }
+            run = i;
+        }
+        sb.append(new String(source, run, i - run, StandardCharsets.UTF_8));
+        return sb.toString();
+    }
+
+    private static int hex(byte[] source, int at) {
+        int v = 0;
+        for (int i = at; i < at + 4; i++) {
+            int d = Character.digit(source[i], 16);
+            if (d < 0) throw new IllegalArgumentException("Invalid \\u escape at byte " + (at - 2));
+            v = v << 4 | d;
+        }
+        return v;
+    }
+
+    /** Read-only field map of the object at tape index start. */
+    private final class FieldMap extends AbstractMap<String, JsonNode> {
+        private final int start;
+        private final int end;
+        private final int size;
+        // Open-addressed key-id table of key word indexes (+1), built on the first lookup of a wide object
+        private int[] index;
+
+        FieldMap(int start) {
+            this.start = start;
+            this.end = end(tape[start]);
+            this.size = count(start);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public JsonNode get(Object key) {
+            int at = find(key);
+            return at < 0 ? null : node(at + 1);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return find(key) >= 0;
+        }
+
+        /** Tape index of the field's key word, or -1. */
+        private int find(Object key) {
+            Integer id = keyIds.get(key);
+            if (id == null) return -1;
+            if (size > INDEX_THRESHOLD) {
+                if (index == null) index = buildIndex();
+                int mask = index.length - 1;
+                for (int h = mix(id) & mask; index[h] != 0; h = (h + 1) & mask) {
+                    int at = index[h] - 1;
+                    if ((int) (tape[at] & PAYLOAD) == id) return at;
+                }
+                return -1;
+            }
+            for (int j = start + 1; j < end; j = skip(j + 1)) {
+                if ((int) (tape[j] & PAYLOAD) == id) return j;
+            }
+            return -1;
+        }
+
+        private int[] buildIndex() {
+            int[] table = new int[Integer.highestOneBit(size * 2 - 1) << 1];
+            int mask = table.length - 1;
+            for (int j = start + 1; j < end; j = skip(j + 1)) {
+                int h = mix((int) (tape[j] & PAYLOAD)) & mask;
+                while (table[h] != 0) h = (h + 1) & mask;
+                table[h] = j + 1;
+            }
+            return table;
+        }
+
+        @Override
+        public Set<String> keySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<String> iterator() {
+                    return new FieldIterator<>() {
+                        @Override
+                        String at(int keyWord) {
+                            return keys[(int) (tape[keyWord] & PAYLOAD)];
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+
+                @Override
+                public boolean contains(Object o) {
+                    return find(o) >= 0;
+                }
+            };
+        }
+
+        @Override
+        public Collection<JsonNode> values() {
+            return new AbstractCollection<>() {
+                @Override
+                public Iterator<JsonNode> iterator() {
+                    return new FieldIterator<>() {
+                        @Override
+                        JsonNode at(int keyWord) {
+                            return node(keyWord + 1);
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+
+        @Override
+        public Set<Entry<String, JsonNode>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<String, JsonNode>> iterator() {
+                    return new FieldIterator<>() {
+                        @Override
+                        Entry<String, JsonNode> at(int keyWord) {
+                            return new SimpleImmutableEntry<>(keys[(int) (tape[keyWord] & PAYLOAD)], node(keyWord + 1));
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+
+        /** Walks the key words in document order. */
+        private abstract class FieldIterator<T> implements Iterator<T> {
+            private int next = start + 1;
+
+            abstract T at(int keyWord);
+
+            @Override
+            public boolean hasNext() {
+                return next < end;
+            }
+
+            @Override
+            public T next() {
+                if (next >= end) throw new NoSuchElementException();
+                int keyWord = next;
+                next = skip(keyWord + 1);
+                return at(keyWord);
+            }
+        }
+    }
+
+    /** Read-only item list of the array at tape index start; item offsets are indexed on the first get(i). */
+    private final class ItemList extends AbstractList<JsonNode> implements RandomAccess {
+        private final int start;
+        private final int end;
+        private final int size;
+        private int[] offsets;
+
+        ItemList(int start) {
+            this.start = start;
+            this.end = end(tape[start]);
+            this.size = count(start);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public JsonNode get(int i) {
+            if (i < 0 || i >= size) throw new IndexOutOfBoundsException(i);
+            if (offsets == null) {
+                int[] o = new int[size];
+                for (int k = 0, j = start + 1; k < size; k++, j = skip(j)) o[k] = j;
+                offsets = o;
+            }
+            return node(offsets[i]);
+        }
+
+        @Override
+        public Iterator<JsonNode> iterator() {
+            return new Iterator<>() {
+                private int next = start + 1;
+
+                @Override
+                public boolean hasNext() {
+                    return next < end;
+                }
+
+                @Override
+                public JsonNode next() {
+                    if (next >= end) throw new NoSuchElementException();
+                    int at = next;
+                    next = skip(at);
+                    return node(at);
+                }
+            };
+        }
+    }
+
+    private static int mix(int id) {
+        return id * 0x9E3779B9 >>> 7;
+    }
+
+    /**
+     * Stage 2 over the {@link StructuralIndexer} offsets: checks the grammar, appends one word per token and
+     * patches container words when they close. Field names without escapes are interned by their bytes, so a
+     * repeated name costs no String. String values are not read at all until decoded.
+     */
+    private static final class Builder {
+        // Bytes indexed per stage-1 call
+        private static final int WINDOW = 64 * StructuralIndexer.BLOCK;
+
+        // What the next structural may be
+        private static final int VALUE = 0;
+        private static final int VALUE_OR_END = 1;
+        private static final int KEY = 2;
+        private static final int KEY_OR_END = 3;
+        private static final int COLON = 4;
+        private static final int COMMA_OR_END = 5;
+        private static final int DONE = 6;
+
+        private final byte[] source;
+        // Polled once per window
+        private final BooleanSupplier stop;
+        private long[] tape;
+        private int size;
+        // Field-name words on the tape
+        private int fields;
+        private final Map<String, Integer> keyIds = new HashMap<>();
+        private final List<String> keys = new ArrayList<>();
+        // Raw key bytes -> key id + 1 (open addressing); per id, where its unescaped bytes are (length -1: none)
+        private int[] rawTable = new int[256];
+        private int rawCount;
+        private int[] keyOffset = new int[64];
+        private int[] keyLength = new int[64];
+        // Open containers: tape index and children so far
+        private int[] open = new int[32];
+        private int[] counts = new int[32];
+        private int depth;
+        private int state = VALUE;
+        // Whether the last string passed to stringEnd had a backslash
+        private boolean escapes;
+        // Duplicate-field check scratch: key id -> stamp of the object last seen with it
+        private int[] seen = new int[64];
+        private int stamp;
+
+        Builder(byte[] source, BooleanSupplier stop) {
+            this.source = source;
+            this.stop = stop;
+            this.tape = new long[Math.max(16, source.length / 8)];
+        }
+
+        JsonTape build() throws IOException {
+            StructuralIndexer indexer = new StructuralIndexer();
+            int[] offsets = new int[WINDOW];
+            int from = hasBom() ? 3 : 0;
+            while (from < source.length && state != DONE) {
+                if (stop.getAsBoolean()) throw new InterruptedIOException("Stopped at byte " + from);
+                int to = Math.min(source.length, from + WINDOW);
+                int n = indexer.index(source, from, to, to == source.length, offsets, 0);
+                int errorAt = indexer.errorAt();
+                int last = -1;
+                for (int i = 0; i < n && state != DONE; i++) {
+                    if (errorAt >= 0 && offsets[i] > errorAt) break;
+                    step(last = offsets[i]);
+                }
+                // A malformed string counts unless it lies after the document (ignored like any trailing content)
+                if (errorAt >= 0 && (state != DONE || errorAt <= valueEnd(last))) throw error(indexer.error(), errorAt);
+                from = to;
+            }
+            if (state != DONE && (size > 0 || depth > 0)) throw new IOException("Unexpected end of input");
+            return new JsonTape(Arrays.copyOf(tape, size), source, keys.toArray(new String[0]), keyIds, size - fields);
+        }
+
+        /** End of the value or bracket at at. */
+        private int valueEnd(int at) {
+            byte c = source[at];
+            if (c == '"') return stringEnd(at);
+            return c == '}' || c == ']' ? at : atomEnd(at);
+        }
+
+        private boolean hasBom() {
+            return source.length >= 3 && source[0] == (byte) 0xEF && source[1] == (byte) 0xBB && source[2] == (byte) 0xBF;
+        }
+
+        private void step(int at) throws IOException {
+            byte c = source[at];
+            switch (state) {
+                case VALUE -> value(at, c);
+                case VALUE_OR_END -> {
+                    if (c == ']') close(ARRAY);
+                    else value(at, c);
+                }
+                case KEY, KEY_OR_END -> {
+                    if (c == '}' && state == KEY_OR_END) {
+                        close(OBJECT);
+                    } else if (c == '"') {
+                        append(JsonTape.KEY, key(at));
+                        fields++;
+                        state = COLON;
+                    } else {
+                        throw error("Expected a field name", at);
+                    }
+                }
+                case COLON -> {
+                    if (c != ':') throw error("Expected ':'", at);
+                    state = VALUE;
+                }
+                case COMMA_OR_END -> {
+                    boolean object = type(tape[open[depth - 1]]) == OBJECT;
+                    if (c == ',') state = object ? KEY : VALUE;
+                    else if (c == (object ? '}' : ']')) close(object ? OBJECT : ARRAY);
+                    else throw error(object ? "Expected ',' or '}'" : "Expected ',' or ']'", at);
+                }
+                default -> throw new IllegalStateException("Input after the document");
+            }
+        }
+
+        private void value(int at, byte c) throws IOException {
+            if (depth > 0) counts[depth - 1]++;
+            switch (c) {
+                case '{', '[' -> {
+                    if (depth == JsonMappers.MAX_NESTING_DEPTH) throw error("Nesting deeper than " + depth, at);
+                    if (depth == open.length) {
+                        open = Arrays.copyOf(open, depth * 2);
+                        counts = Arrays.copyOf(counts, depth * 2);
+                    }
+                    open[depth] = size;
+                    counts[depth++] = 0;
+                    append(c == '{' ? OBJECT : ARRAY, 0);
+                    state = c == '{' ? KEY_OR_END : VALUE_OR_END;
+                    return;
+                }
+                case '"' -> {
+                    // Inside a container an unclosed string runs to the end, so the container never closes
+                    if (depth == 0 && stringEnd(at) == source.length) throw error("Unterminated string", at);
+                    append(STRING, at);
+                }
+                case 't' -> literal(at, "true", TRUE);
+                case 'f' -> literal(at, "false", FALSE);
+                case 'n' -> literal(at, "null", NULL);
+                default -> {
+                    int end = atomEnd(at);
+                    append(number(at, end), at);
+                    // As Jackson: a root-level number must be followed by whitespace or the end
+                    if (depth == 0 && end < source.length && !isWhitespace(source[end])) {
+                        throw error("Expected space separating root-level values", end);
+                    }
+                }
+            }
+            state = depth == 0 ? DONE : COMMA_OR_END;
+        }
+
+        private void literal(int at, String text, int type) throws IOException {
+            int end = atomEnd(at);
+            boolean ok = end - at == text.length();
+            for (int i = 0; ok && i < text.length(); i++) ok = source[at + i] == text.charAt(i);
+            if (!ok) throw error("Unrecognized token '" + new String(source, at, end - at, StandardCharsets.UTF_8) + "'", at);
+            append(type, 0);
+        }
+
+        /** Checks the JSON number grammar; INT unless it has a fraction or exponent. */
+        private int number(int at, int end) throws IOException {
+            int i = at;
+            boolean fraction = false;
+            if (i < end && source[i] == '-') i++;
+            if (i < end && source[i] == '0') i++;
+            else if (i < end && source[i] >= '1' && source[i] <= '9') i = digits(i, end);
+            else i = -1;
+            if (i > 0 && i < end && source[i] == '.') {
+                fraction = true;
+                int d = digits(i + 1, end);
+                i = d == i + 1 ? -1 : d;
+            }
+            if (i > 0 && i < end && (source[i] == 'e' || source[i] == 'E')) {
+                fraction = true;
+                int e = i + 1;
+                if (e < end && (source[e] == '+' || source[e] == '-')) e++;
+                int d = digits(e, end);
+                i = d == e ? -1 : d;
+            }
+            if (i != end) {
+                throw error("Unrecognized token '" + new String(source, at, end - at, StandardCharsets.UTF_8) + "'", at);
+            }
+            return fraction ? FLOAT : INT;
+        }
+
+        private int digits(int i, int end) {
+            while (i < end && source[i] >= '0' && source[i] <= '9') i++;
+            return i;
+        }
+
+        /** End of the scalar starting at at: the next whitespace, operator or quote. */
+        private int atomEnd(int at) {
+            int i = at;
+            while (i < source.length) {
+                byte b = source[i];
+                if (isWhitespace(b) || b == ',' || b == ':' || b == '"' || b == '{' || b == '}' || b == '[' || b == ']') break;
+                i++;
+            }
+            return i;
+        }
+
+        /** Index of the closing quote of the string opening at at (source.length if none); sets escapes. */
+        private int stringEnd(int at) {
+            escapes = false;
+            int i = at + 1;
+            while (i < source.length && source[i] != '"') {
+                if (source[i] == '\\') {
+                    escapes = true;
+                    i++;
+                }
+                i++;
+            }
+            return Math.min(i, source.length);
+        }
+
+        private static boolean isWhitespace(byte b) {
+            return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+        }
+
+        /** Id of the field name whose opening quote is at at. */
+        private int key(int at) throws IOException {
+            int start = at + 1;
+            int i = stringEnd(at);
+            if (i == source.length) throw error("Unterminated string", at);
+            if (escapes) {
+                try {
+                    return intern(decode(source, at), 0, -1);
+                } catch (IllegalArgumentException e) {
+                    throw new IOException(e.getMessage(), e);
+                }
+            }
+            int len = i - start;
+            int mask = rawTable.length - 1;
+            int h = hash(start, len) & mask;
+            for (int slot = rawTable[h]; slot != 0; slot = rawTable[h]) {
+                int id = slot - 1;
+                if (keyLength[id] == len && Arrays.equals(source, keyOffset[id], keyOffset[id] + len, source, start, i)) return id;
+                h = (h + 1) & mask;
+            }
+            return intern(new String(source, start, len, StandardCharsets.UTF_8), start, len);
+        }
+
+        /** Id of name, created if new; a raw (unescaped) occurrence is also entered into the byte table. */
+        private int intern(String name, int rawStart, int rawLength) {
+            Integer known = keyIds.get(name);
+            int id = known != null ? known : keys.size();
+            if (known == null) {
+                keyIds.put(name, id);
+                keys.add(name);
+                if (id == keyOffset.length) {
+                    keyOffset = Arrays.copyOf(keyOffset, id * 2);
+                    keyLength = Arrays.copyOf(keyLength, id * 2);
+                }
+                keyLength[id] = -1;
+            }
+            if (rawLength >= 0 && keyLength[id] < 0) {
+                keyOffset[id] = rawStart;
+                keyLength[id] = rawLength;
+                if (++rawCount * 2 > rawTable.length) rehash(rawTable.length * 2);
+                else rawTable[free(hash(rawStart, rawLength))] = id + 1;
+            }
+            return id;
+        }
+
+        private int free(int hash) {
+            int mask = rawTable.length - 1;
+            int h = hash & mask;
+            while (rawTable[h] != 0) h = (h + 1) & mask;
+            return h;
+        }
+
+        private void rehash(int capacity) {
+            rawTable = new int[capacity];
+            for (int id = 0; id < keys.size(); id++) {
+                if (keyLength[id] >= 0) rawTable[free(hash(keyOffset[id], keyLength[id]))] = id + 1;
+            }
+        }
+
+        private int hash(int start, int len) {
+            int h = 0x811C9DC5;
+            for (int i = start; i < start + len; i++) h = (h ^ source[i]) * 0x01000193;
+            return h ^ h >>> 15;
+        }
+
+        private static IOException error(String message, int at) {
+            return new IOException(message + " at byte " + at);
+        }
+
+        private void close(int type) {
+            int openAt = open[--depth];
+            int count = counts[depth];
+            if (type == OBJECT && count > 1 && hasDuplicates(openAt)) type = OBJECT_DUP;
+            tape[openAt] = (long) type << 56 | (long) Math.min(count, MAX_COUNT) << 32 | size;
+            state = depth == 0 ? DONE : COMMA_OR_END;
+        }
+
+        private boolean hasDuplicates(int at) {
+            if (seen.length < keys.size()) seen = Arrays.copyOf(seen, Math.max(keys.size(), seen.length * 2));
+            stamp++;
+            for (int j = at + 1; j < size; j = skipBuilt(j + 1)) {
+                int id = (int) (tape[j] & PAYLOAD);
+                if (seen[id] == stamp) return true;
+                seen[id] = stamp;
+            }
+            return false;
+        }
+
+        /** skip() over the tape being built: closed containers already hold their end index. */
+        private int skipBuilt(int i) {
+            int t = type(tape[i]);
+            return t == OBJECT || t == OBJECT_DUP || t == ARRAY ? end(tape[i]) : i + 1;
+        }
+
+        private void append(int type, long payload) {
+            if (size == tape.length) tape = Arrays.copyOf(tape, tape.length * 2);
+            tape[size++] = (long) type << 56 | payload;
+        }
+    }
+}
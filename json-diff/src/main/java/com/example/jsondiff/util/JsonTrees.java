@@ -0,0 +1,120 @@
+package com.example.jsondiff.util;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.node.BaseJsonNode;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Iterative stand-ins for the JsonNode operations that recurse once per nesting level (equals, hashCode via
+ * maps, serialization), so deep documents cost heap, not thread stack.
+ * - {@link #equal}: same result as JsonNode.equals.
+ * - {@link #write} / {@link #writePretty}: same text as ObjectMapper.writeValueAsString / JsonNode.toPrettyString.
+ * Hash with {@link StructuralHash}, which agrees with {@link #equal}. Stateless and thread-safe.
+ */
+public final class JsonTrees {
+
+    private JsonTrees() {
+    }
+
+    /** JsonNode.equals without recursion: same node types, object fields (any order), array items, scalar values. */
+    public static boolean equal(JsonNode a, JsonNode b) {
+        if (a == null || b == null) return a == b;
+        // Pairs still to compare, left above right
+        Deque<JsonNode> pending = new ArrayDeque<>();
+        pending.push(b);
+        pending.push(a);
+        while (!pending.isEmpty()) {
+            JsonNode x = pending.pop();
+            JsonNode y = pending.pop();
+            if (x == y) continue;
+            if (x.getNodeType() != y.getNodeType() || x.size() != y.size()) return false;
+            if (x.isObject()) {
+                Iterator<Map.Entry<String, JsonNode>> fields = x.fields();
+                while (fields.hasNext()) {
+                    Map.Entry<String, JsonNode> field = fields.next();
+                    JsonNode other = y.get(field.getKey());
+                    if (other == null) return false;
+                    if (!queue(field.getValue(), other, pending)) return false;
+                }
+            } else if (x.isArray()) {
+                for (int i = 0; i < x.size(); i++) {
+                    if (!queue(x.get(i), y.get(i), pending)) return false;
+                }
+            } else if (!x.equals(y)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Compares scalars right away; containers are queued. */
+    private static boolean queue(JsonNode x, JsonNode y, Deque<JsonNode> pending) {
+        if (x.isContainerNode() && y.isContainerNode()) {
+            pending.push(y);
+            pending.push(x);
+            return true;
+        }
+        return x.equals(y);
+    }
+
+    /** Compact JSON, as mapper.writeValueAsString(node) writes it. */
+    public static String write(ObjectMapper mapper, JsonNode node) throws IOException {
+        return write(mapper, node, false);
+    }
+
+    /** Indented JSON, as node.toPrettyString() writes it. */
+    public static String writePretty(ObjectMapper mapper, JsonNode node) throws IOException {
+        return write(mapper, node, true);
+    }
+
+    private static String write(ObjectMapper mapper, JsonNode root, boolean pretty) throws IOException {
+        StringWriter out = new StringWriter();
+        SerializerProvider provider = mapper.getSerializerProviderInstance();
+        try (JsonGenerator g = mapper.getFactory().createGenerator(out)) {
+            if (pretty) g.setPrettyPrinter(new DefaultPrettyPrinter());
+            // Per open container: its remaining fields (Map.Entry) or items (JsonNode)
+            Deque<Iterator<?>> open = new ArrayDeque<>();
+            JsonNode next = root;
+            while (true) {
+                if (next != null) {
+                    if (next.isObject()) {
+                        g.writeStartObject(next, next.size());
+                        open.push(next.fields());
+                    } else if (next.isArray()) {
+                        g.writeStartArray(next, next.size());
+                        open.push(next.elements());
+                    } else {
+                        ((BaseJsonNode) next).serialize(g, provider);
+                    }
+                    next = null;
+                }
+                if (open.isEmpty()) break;
+                Iterator<?> children = open.peek();
+                if (!children.hasNext()) {
+                    open.pop();
+                    if (g.getOutputContext().inArray()) g.writeEndArray();
+                    else g.writeEndObject();
+                    continue;
+                }
+                Object child = children.next();
+                if (child instanceof Map.Entry<?, ?> field) {
+                    g.writeFieldName((String) field.getKey());
+                    next = (JsonNode) field.getValue();
+                } else {
+                    next = (JsonNode) child;
+                }
+            }
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.jsondiff.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Sorted union of the field names of two object nodes without building a TreeSet per node.
+ * - Rule files repeat a handful of object shapes (same names, same order) many times, so each shape seen
+ *   twice keeps its sorted names in a small direct-mapped cache; later objects of that shape cost one
+ *   pass over their names and no copy or sort.
+ * - Other objects have their names copied into reusable arrays and sorted; two sorted sides are merged in
+ *   one pass. When both objects have the same shape, one sorted array and no merge is needed.
+ * Instances reuse their buffers and cache and are not thread-safe.
+ */
+public class KeyUnion {
+
+    // Cached shapes; a power of two
+    private static final int SHAPES = 512;
+
+    /** Field names of one object shape, in node order and sorted. */
+    private static final class Shape {
+        final int hash;
+        final String[] names;
+        final String[] sorted;
+
+        Shape(int hash, String[] names, String[] sorted) {
+            this.hash = hash;
+            this.names = names;
+            this.sorted = sorted;
+        }
+    }
+
+    private final Shape[] shapes = new Shape[SHAPES];
+    // Per slot: hash of the last shape seen there, so a shape is cached on its second sighting only
+    private final int[] seen = new int[SHAPES];
+
+    private String[] left = new String[16];
+    private String[] right = new String[16];
+    private String[] merged = new String[32];
+    private int size;
+    // Name count of the array the last sortedNames call returned
+    private int count;
+
+    /**
+     * Sorted union of the field names of l and r (either may be null or a non-object).
+     * The returned array is reused (or cached) and must not be modified; only the first {@link #size()} slots
+     * are valid, until the next call.
+     */
+    public String[] sorted(JsonNode l, JsonNode r) {
+        boolean lObj = l != null && l.isObject() && l.size() > 0;
+        boolean rObj = r != null && r.isObject() && r.size() > 0;
+        if (!lObj && !rObj) return result(left, 0);
+        if (!rObj) return result(sortedNames(l, shapeHash(l), true), count);
+        if (!lObj) return result(sortedNames(r, shapeHash(r), false), count);
+
+        int hl = shapeHash(l);
+        int hr = shapeHash(r);
+        if (hl == hr && l.size() == r.size() && sameOrder(l, r)) return result(sortedNames(l, hl, true), count);
+
+        String[] sl = sortedNames(l, hl, true);
+        int nl = count;
+        String[] sr = sortedNames(r, hr, false);
+        int nr = count;
+        if (merged.length < nl + nr) merged = new String[Math.max(nl + nr, merged.length * 2)];
+        int i = 0, j = 0, k = 0;
+        while (i < nl && j < nr) {
+            int c = sl[i].compareTo(sr[j]);
+            if (c < 0) merged[k++] = sl[i++];
+            else if (c > 0) merged[k++] = sr[j++];
+            else {
+                merged[k++] = sl[i++];
+                j++;
+            }
+        }
+        while (i < nl) merged[k++] = sl[i++];
+        while (j < nr) merged[k++] = sr[j++];
+        return result(merged, k);
+    }
+
+    /** Number of valid names in the array returned by the last {@link #sorted} call. */
+    public int size() {
+        return size;
+    }
+
+    private String[] result(String[] src, int n) {
+        size = n;
+        return src;
+    }
+
+    /** Sorted names of node: the cached shape's array, else the left or right buffer sorted in place. */
+    private String[] sortedNames(JsonNode node, int hash, boolean intoLeft) {
+        int slot = hash & (SHAPES - 1);
+        Shape shape = shapes[slot];
+        if (shape != null && shape.hash == hash && matches(shape.names, node)) {
+            count = shape.sorted.length;
+            return shape.sorted;
+        }
+        int n = copyNames(node, intoLeft);
+        String[] buf = intoLeft ? left : right;
+        String[] names = seen[slot] == hash ? Arrays.copyOf(buf, n) : null;
+        Arrays.sort(buf, 0, n);
+        if (names != null) shapes[slot] = new Shape(hash, names, Arrays.copyOf(buf, n));
+        seen[slot] = hash;
+        count = n;
+        return buf;
+    }
+
+    /** Hash of the field names in node order; Strings cache their own hash codes. */
+    private static int shapeHash(JsonNode node) {
+        int h = node.size();
+        Iterator<String> it = node.fieldNames();
+        while (it.hasNext()) h = h * 31 + it.next().hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean matches(String[] names, JsonNode node) {
+        if (names.length != node.size()) return false;
+        Iterator<String> it = node.fieldNames();
+        for (String name : names) {
+            String other = it.next();
+            // Parsed field names are interned, so the identity check usually decides
+            if (name != other && !name.equals(other)) return false;
+        }
+        return true;
+    }
+
+    private static boolean sameOrder(JsonNode l, JsonNode r) {
+        Iterator<String> a = l.fieldNames();
+        Iterator<String> b = r.fieldNames();
+        while (a.hasNext()) {
+            String x = a.next();
+            String y = b.next();
+            if (x != y && !x.equals(y)) return false;
+        }
+        return true;
+    }
+
+    private int copyNames(JsonNode node, boolean intoLeft) {
+        int n = node.size();
+        String[] buf = intoLeft ? left : right;
+        if (buf.length < n) {
+            buf = new String[Math.max(n, buf.length * 2)];
+            if (intoLeft) left = buf;
+            else right = buf;
+        }
+        int i = 0;
+        Iterator<String> it = node.fieldNames();
+        while (it.hasNext()) buf[i++] = it.next();
+        return i;
+    }
+}
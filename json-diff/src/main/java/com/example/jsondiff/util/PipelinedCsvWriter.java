@@ -0,0 +1,128 @@
+package com.example.jsondiff.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.function.Function;
+
+/**
+ * Write stage of the pipelined mode: rows are encoded and written on a dedicated thread.
+ * - The producer fills a batch of rows and hands the whole batch over an {@link SpscRingBuffer},
+ *   so the per-row cost on the compare thread is one array store.
+ * - When the writer falls behind, the ring fills up and {@link #accept} blocks the producer (backpressure).
+ * - A write error stops the writer; the producer sees it (unchecked) on the next hand-off, or at {@link #close()}.
+ */
+public class PipelinedCsvWriter implements AutoCloseable {
+
+    // Marks the end of the stream in the ring
+    private static final String[][] END = new String[0][];
+
+    private final SpscRingBuffer<String[][]> ring;
+    private final Function<String[], String> encoder;
+    private final int batchSize;
+    private final Writer out;
+    private final Thread thread;
+
+    private String[][] batch;
+    private int filled;
+    private long rows;
+    private volatile Throwable failure;
+
+    // Written by the writer thread, read after join()
+    private long busyNanos;
+    private long startNanos;
+    private long endNanos;
+
+    /** Takes ownership of {@code out}; the writer thread closes it. */
+    public PipelinedCsvWriter(Writer out, Function<String[], String> encoder, int ringCapacity, int batchSize) {
+        this.out = out;
+        this.encoder = encoder;
+        this.batchSize = batchSize;
+        this.ring = new SpscRingBuffer<>(ringCapacity);
+        this.batch = new String[batchSize][];
+        this.thread = new Thread(this::drain, "json-diff-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** Queues one row; blocks while the ring is full. */
+    public void accept(String[] row) {
+        batch[filled++] = row;
+        rows++;
+        if (filled == batchSize) handOff();
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    /** Flushes the last batch, waits for the writer and rethrows its failure, if any. */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (filled > 0) handOff();
+        } finally {
+            ring.put(END, () -> !thread.isAlive());
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for the report writer", e);
+            }
+        }
+        checkFailure();
+    }
+
+    /** Writer thread lifetime; valid after {@link #close()}. */
+    public long getWallNanos() {
+        return endNanos - startNanos;
+    }
+
+    /** Time the writer spent encoding and writing (not waiting for rows); valid after {@link #close()}. */
+    public long getBusyNanos() {
+        return busyNanos;
+    }
+
+    /** Time the producer was blocked on a full ring. */
+    public long getBackpressureNanos() {
+        return ring.getProducerWaitNanos();
+    }
+
+    private void handOff() {
+        String[][] full = filled == batchSize ? batch : Arrays.copyOf(batch, filled);
+        try {
+            checkFailure();
+            if (!ring.put(full, () -> failure != null)) checkFailure();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        batch = new String[batchSize][];
+        filled = 0;
+    }
+
+    private void checkFailure() throws IOException {
+        Throwable t = failure;
+        if (t == null) return;
+        if (t instanceof IOException io) throw io;
+        throw new IOException("Report writer failed: " + t.getMessage(), t);
+    }
+
+    private void drain() {
+        startNanos = System.nanoTime();
+        try (Writer writer = out) {
+            for (String[][] rowsIn = ring.take(); rowsIn != END; rowsIn = ring.take()) {
+                long t0 = System.nanoTime();
+                for (String[] row : rowsIn) {
+                    writer.write(encoder.apply(row));
+                    writer.write("\n");
+                }
+                busyNanos += System.nanoTime() - t0;
+            }
+        } catch (Throwable t) {
+            failure = t;
+        } finally {
+            endNanos = System.nanoTime();
+        }
+    }
+}
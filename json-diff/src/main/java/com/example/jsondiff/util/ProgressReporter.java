@@ -0,0 +1,160 @@
+package com.example.jsondiff.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Periodic progress line for long diffs (--progress[=seconds]), printed from a daemon thread:
+ * phase, bytes parsed, nodes compared per second, rows emitted and an ETA.
+ * - The diff thread only publishes counters with lazySet (an ordered store, no fence or lock),
+ *   and the reporter thread reads them at its own pace; slightly stale values are fine here.
+ *   Each tracked input has its own byte counter, so inputs parsed on different threads never share a writer.
+ * - ETA while parsing comes from bytes read vs. total input size; while comparing, from nodes
+ *   compared vs. the expected node count of the larger input (exact for a tape, else estimated from its size).
+ */
+public class ProgressReporter implements AutoCloseable {
+
+    private final AtomicLong bytesTotal = new AtomicLong();
+    private final List<AtomicLong> bytesRead = new CopyOnWriteArrayList<>();
+    private final AtomicLong nodesExpected = new AtomicLong();
+    private final AtomicLong rows = new AtomicLong();
+    private volatile String phase = "starting";
+    private volatile LongSupplier nodes = () -> 0L;
+
+    private final long intervalMillis;
+    private final PrintStream out;
+    private Thread thread;
+    private long startNanos;
+    private long compareStartNanos;
+    private long compareEndNanos;
+
+    public ProgressReporter(long intervalMillis, PrintStream out) {
+        this.intervalMillis = intervalMillis;
+        this.out = out;
+    }
+
+    /** Reporter for --progress[=seconds] (default 1s); null when the option is absent. */
+    public static ProgressReporter fromOptions(DiffOptions opts) {
+        if (!opts.has("progress")) return null;
+        double seconds = Double.parseDouble(opts.value("progress", "1"));
+        return new ProgressReporter((long) (seconds * 1000), System.err);
+    }
+
+    public ProgressReporter start() {
+        startNanos = System.nanoTime();
+        thread = new Thread(this::loop, "json-diff-progress");
+        thread.setDaemon(true);
+        thread.start();
+        return this;
+    }
+
+    public void addInputSize(long bytes) {
+        if (bytes > 0) bytesTotal.addAndGet(bytes);
+    }
+
+    /** Wraps a parser input so bytes consumed by the parser show up as progress. */
+    public InputStream track(InputStream in) {
+        AtomicLong counter = new AtomicLong();
+        bytesRead.add(counter);
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0) counter.lazySet(counter.get() + 1);
+                return b;
+            }
+
+            @Override
+            public int read(byte[] buf, int off, int len) throws IOException {
+                int n = super.read(buf, off, len);
+                if (n > 0) counter.lazySet(counter.get() + n);
+                return n;
+            }
+        };
+    }
+
+    public void phase(String phase) {
+        if (phase.equals("compare")) compareStartNanos = System.nanoTime();
+        else if (this.phase.equals("compare")) compareEndNanos = System.nanoTime();
+        this.phase = phase;
+    }
+
+    /** Source of the published node count (read from the reporter thread). */
+    public void nodes(LongSupplier nodes, long expected) {
+        nodesExpected.set(expected);
+        this.nodes = nodes;
+    }
+
+    public void rows(long count) {
+        rows.lazySet(count);
+    }
+
+    @Override
+    public void close() {
+        if (thread == null) return;
+        thread.interrupt();
+        try {
+            thread.join(intervalMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        print();
+    }
+
+    private void loop() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Thread.sleep(intervalMillis);
+                print();
+            }
+        } catch (InterruptedException ignored) {
+            // close() stops the loop
+        }
+    }
+
+    private void print() {
+        long now = System.nanoTime();
+        String p = phase;
+        long read = 0;
+        for (AtomicLong counter : bytesRead) read += counter.get();
+        long total = bytesTotal.get();
+        long n = nodes.getAsLong();
+        long expected = nodesExpected.get();
+        double elapsed = (now - startNanos) / 1e9;
+
+        double compareSecs = compareStartNanos == 0 ? 0
+                : ((compareEndNanos != 0 ? compareEndNanos : now) - compareStartNanos) / 1e9;
+        long nodesPerSec = compareSecs > 0 ? (long) (n / compareSecs) : 0;
+
+        String eta = "?";
+        if (p.equals("parse") && read > 0 && total > 0) {
+            eta = formatSeconds(elapsed * (total - read) / read);
+        } else if (p.equals("compare") && nodesPerSec > 0 && expected > n) {
+            eta = formatSeconds((double) (expected - n) / nodesPerSec);
+        } else if (p.equals("write") || p.equals("done")) {
+            eta = "0s";
+        }
+
+        out.printf("[progress %s] %-7s | parsed %s / %s | nodes %,d (%,d/s) | rows %,d | ETA %s%n",
+                formatSeconds(elapsed), p, formatBytes(read), formatBytes(total), n, nodesPerSec, rows.get(), eta);
+    }
+
+    private static String formatBytes(long b) {
+        if (b < 1024) return b + " B";
+        if (b < 1024 * 1024) return String.format("%.1f KB", b / 1024.0);
+        if (b < 1024L * 1024 * 1024) return String.format("%.1f MB", b / (1024.0 * 1024));
+        return String.format("%.2f GB", b / (1024.0 * 1024 * 1024));
+    }
+
+    private static String formatSeconds(double s) {
+        long secs = Math.round(s);
+        if (secs < 60) return secs + "s";
+        return String.format("%dm%02ds", secs / 60, secs % 60);
+    }
+}
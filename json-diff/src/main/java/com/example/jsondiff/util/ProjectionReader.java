@@ -0,0 +1,100 @@
+package com.example.jsondiff.util;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Streams a document and materializes only the subtrees under the given object paths ("Feature",
+ * "BusinessRules.LimitMaintenance"); everything else is skipped at the token level with skipChildren().
+ * - The result keeps the document shape: ancestors of a projected path become objects holding only the
+ *   projected children, so paths and "missing" semantics match a full parse.
+ * - A path whose parent is not an object, or that does not exist, simply yields nothing.
+ * - Byte counts come from the parser's input offsets (decompressed bytes for compressed input).
+ */
+public final class ProjectionReader {
+
+    /** Projected tree plus how much of the input was parsed into nodes vs. skipped. */
+    public record Projection(JsonNode root, long bytesMaterialized, long bytesSkipped) {
+    }
+
+    /** Path trie: a terminal node materializes its whole value. */
+    private static final class PathNode {
+        final Map<String, PathNode> children = new HashMap<>();
+        boolean terminal;
+    }
+
+    private final ObjectMapper mapper;
+    private final PathNode root = new PathNode();
+    private long materialized;
+    private long skipped;
+
+    private ProjectionReader(ObjectMapper mapper, Collection<String> paths) {
+        this.mapper = mapper;
+        for (String path : paths) {
+            String p = path.startsWith("$.") ? path.substring(2) : path;
+            if (p.isEmpty() || p.equals("$")) throw new IllegalArgumentException("Projection path must name a field: " + path);
+            PathNode node = root;
+            for (String segment : p.split("\\.")) {
+                node = node.children.computeIfAbsent(segment, k -> new PathNode());
+            }
+            node.terminal = true;
+        }
+    }
+
+    public static Projection read(ObjectMapper mapper, InputStream in, Collection<String> paths) throws IOException {
+        return new ProjectionReader(mapper, paths).read(in);
+    }
+
+    private Projection read(InputStream in) throws IOException {
+        try (JsonParser p = mapper.getFactory().createParser(in)) {
+            JsonToken t = p.nextToken();
+            if (t == null) return new Projection(mapper.missingNode(), 0, 0);
+            JsonNode result;
+            if (t == JsonToken.START_OBJECT) {
+                result = readObject(p, root);
+            } else {
+                // Paths only address object fields; a non-object root contributes nothing
+                skipValue(p);
+                result = mapper.createObjectNode();
+            }
+            return new Projection(result, materialized, skipped);
+        }
+    }
+
+    /** Parser is on START_OBJECT; returns with it on the matching END_OBJECT. */
+    private ObjectNode readObject(JsonParser p, PathNode projection) throws IOException {
+        ObjectNode out = mapper.createObjectNode();
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String name = p.currentName();
+            PathNode child = projection.children.get(name);
+            JsonToken value = p.nextToken();
+            if (child == null) {
+                skipValue(p);
+            } else if (child.terminal) {
+                long start = p.currentTokenLocation().getByteOffset();
+                out.set(name, mapper.readTree(p));
+                materialized += p.currentLocation().getByteOffset() - start;
+            } else if (value == JsonToken.START_OBJECT) {
+                out.set(name, readObject(p, child));
+            } else {
+                skipValue(p);
+            }
+        }
+        return out;
+    }
+
+    private void skipValue(JsonParser p) throws IOException {
+        long start = p.currentTokenLocation().getByteOffset();
+        p.skipChildren();
+        skipped += p.currentLocation().getByteOffset() - start;
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.jsondiff.util;
+
+import com.fasterxml.jackson.core.JsonParser.NumberType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ValueNode;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Scalar equality on the values Jackson already holds, without asText()/numberValue() allocations
+ * on the int/long/double paths.
+ * - STRICT: same number representation and value (1 != 1L != 1.0), i.e. the old numberValue().equals rule.
+ * - NUMERIC: same mathematical value (1 == 1L == 1.0 == 1.00); BigDecimal only when a big type is involved.
+ * Strings compare the stored String (textValue(), no copy); case-sensitive in both modes.
+ */
+public class ScalarComparator {
+
+    public enum Mode {STRICT, NUMERIC}
+
+    private final Mode mode;
+
+    public ScalarComparator(Mode mode) {
+        this.mode = mode;
+    }
+
+    /** --scalar-mode=strict|numeric (default strict). */
+    public static ScalarComparator fromOptions(DiffOptions opts) {
+        return new ScalarComparator(Mode.valueOf(opts.value("scalar-mode", "strict").toUpperCase()));
+    }
+
+    public boolean equals(ValueNode a, ValueNode b) {
+        if (a.isTextual() && b.isTextual()) {
+            return a.textValue().equals(b.textValue());
+        }
+        if (a.isNumber() && b.isNumber()) {
+            return mode == Mode.STRICT ? strictNumberEquals(a, b) : numericEquals(a, b);
+        }
+        if (a.isBoolean() && b.isBoolean()) {
+            return a.booleanValue() == b.booleanValue();
+        }
+        if (a.isNull() && b.isNull()) return true;
+        if (a.isBinary() && b.isBinary()) {
+            return Arrays.equals(binary(a), binary(b));
+        }
+        return a.toString().equals(b.toString());
+    }
+
+    /**
+     * Same result as a.asText().equals(b.asText()) (the scalar-array rule), skipping the
+     * String conversion when both sides are text, integral numbers or doubles.
+     */
+    public static boolean textEquals(JsonNode a, JsonNode b) {
+        if (a.isTextual() && b.isTextual()) return a.textValue().equals(b.textValue());
+        if (a.isNumber() && b.isNumber()) {
+            NumberType ta = a.numberType();
+            NumberType tb = b.numberType();
+            if (isIntegral(ta) && isIntegral(tb) && ta != NumberType.BIG_INTEGER && tb != NumberType.BIG_INTEGER) {
+                return a.longValue() == b.longValue();
+            }
+            if (ta == NumberType.DOUBLE && tb == NumberType.DOUBLE) {
+                return Double.doubleToLongBits(a.doubleValue()) == Double.doubleToLongBits(b.doubleValue());
+            }
+        }
+        if (a.isBoolean() && b.isBoolean()) return a.booleanValue() == b.booleanValue();
+        return a.asText().equals(b.asText());
+    }
+
+    private static boolean strictNumberEquals(JsonNode a, JsonNode b) {
+        NumberType t = a.numberType();
+        if (t != b.numberType()) return false;
+        switch (t) {
+            case INT:
+                return a.intValue() == b.intValue();
+            case LONG:
+                return a.longValue() == b.longValue();
+            case DOUBLE:
+                // Double.equals semantics: NaN equals NaN, 0.0 differs from -0.0
+                return Double.doubleToLongBits(a.doubleValue()) == Double.doubleToLongBits(b.doubleValue());
+            case FLOAT:
+                return Float.floatToIntBits(a.floatValue()) == Float.floatToIntBits(b.floatValue());
+            case BIG_INTEGER:
+                return a.bigIntegerValue().equals(b.bigIntegerValue());
+            default:
+                // BigDecimal.equals is scale-sensitive, as numberValue().equals was
+                return a.decimalValue().equals(b.decimalValue());
+        }
+    }
+
+    private static boolean numericEquals(JsonNode a, JsonNode b) {
+        NumberType ta = a.numberType();
+        NumberType tb = b.numberType();
+        boolean bigA = ta == NumberType.BIG_INTEGER || ta == NumberType.BIG_DECIMAL;
+        boolean bigB = tb == NumberType.BIG_INTEGER || tb == NumberType.BIG_DECIMAL;
+        if (!bigA && !bigB) {
+            boolean intA = isIntegral(ta);
+            boolean intB = isIntegral(tb);
+            if (intA && intB) return a.longValue() == b.longValue();
+            if (!intA && !intB) return a.doubleValue() == b.doubleValue();
+            long l = intA ? a.longValue() : b.longValue();
+            double d = intA ? b.doubleValue() : a.doubleValue();
+            // Exact only when the double holds an integral value inside the long range
+            if (d != Math.rint(d) || Double.isInfinite(d)) return false;
+            if (Math.abs(d) < 0x1p62) return (long) d == l;
+        }
+        if (!finite(a) || !finite(b)) return false;
+        return a.decimalValue().compareTo(b.decimalValue()) == 0;
+    }
+
+    private static boolean finite(JsonNode n) {
+        NumberType t = n.numberType();
+        return (t != NumberType.DOUBLE && t != NumberType.FLOAT) || Double.isFinite(n.doubleValue());
+    }
+
+    private static boolean isIntegral(NumberType t) {
+        return t == NumberType.INT || t == NumberType.LONG || t == NumberType.BIG_INTEGER;
+    }
+
+    private static byte[] binary(JsonNode n) {
+        try {
+            return n.binaryValue();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.example.jsondiff.util;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * K-way merge of RuleDiff reports that each cover a disjoint set of boundary keys (one report per shard)
+ * into the report a single run over all keys would have written.
+ * - A row belongs to the key its path starts with, after the common prefix ("BusinessRules.", "Feature." or "").
+ *   Rows whose path does not have the prefix (the wrapper object's own row) come first; every shard repeats
+ *   them, so only the first shard's are kept. The header is also taken from the first shard.
+ * - Keys are ordered like the traversal orders them (String order), and each report lists its keys' rows
+ *   contiguously in that order, so a heap over one pending row per report restores the global order.
+ * - Records are copied verbatim; only the path cell is decoded. Memory holds one record per report.
+ * Keys must not contain '.' or '[' (the path could not tell which key a row belongs to).
+ */
+public final class ShardReportMerger {
+
+    private ShardReportMerger() {
+    }
+
+    /** Where one shard's report is and which keys it covers. */
+    public record Shard(Path report, List<String> keys) {
+    }
+
+    /** @return the number of rows written, header excluded */
+    public static long merge(List<Shard> shards, String prefix, Writer out) throws IOException {
+        Map<String, Integer> ranks = new HashMap<>();
+        List<String> all = new ArrayList<>();
+        for (Shard shard : shards) all.addAll(shard.keys());
+        all.sort(null);
+        for (String key : all) {
+            if (ranks.put(key, ranks.size()) != null) throw new IllegalArgumentException("Key in two shards: " + key);
+        }
+
+        List<Cursor> cursors = new ArrayList<>();
+        PriorityQueue<Cursor> heap = new PriorityQueue<>((a, b) -> a.rank != b.rank
+                ? Integer.compare(a.rank, b.rank) : Integer.compare(a.index, b.index));
+        long rows = 0;
+        try {
+            for (int i = 0; i < shards.size(); i++) {
+                Cursor c = new Cursor(i, shards.get(i), prefix, ranks);
+                cursors.add(c);
+                String header = c.reader.next();
+                if (header == null) throw new IOException("Empty shard report: " + c.shard.report());
+                if (i == 0) {
+                    out.write(header);
+                    out.write("\n");
+                }
+                if (c.advance()) heap.add(c);
+            }
+            while (!heap.isEmpty()) {
+                Cursor c = heap.poll();
+                // Wrapper rows (rank -1) are identical in every shard
+                if (c.rank >= 0 || c.index == 0) {
+                    out.write(c.record);
+                    out.write("\n");
+                    rows++;
+                }
+                if (c.advance()) heap.add(c);
+            }
+        } finally {
+            for (Cursor c : cursors) c.reader.close();
+        }
+        return rows;
+    }
+
+    /** The pending record of one shard report and the global rank of the key it belongs to. */
+    private static final class Cursor {
+        final int index;
+        final Shard shard;
+        final String prefix;
+        final Map<String, Integer> ranks;
+        final RecordReader reader;
+        // Position in shard.keys of the key the last row belonged to
+        int keyPos;
+        String record;
+        int rank;
+
+        Cursor(int index, Shard shard, String prefix, Map<String, Integer> ranks) throws IOException {
+            this.index = index;
+            this.shard = shard;
+            this.prefix = prefix;
+            this.ranks = ranks;
+            this.reader = new RecordReader(Files.newBufferedReader(shard.report(), StandardCharsets.UTF_8));
+        }
+
+        boolean advance() throws IOException {
+            record = reader.next();
+            if (record == null) return false;
+            String path = pathCell(record);
+            if (!path.startsWith(prefix) || path.length() == prefix.length()) {
+                rank = -1;
+                return true;
+            }
+            List<String> keys = shard.keys();
+            while (keyPos < keys.size() && !belongsTo(path, keys.get(keyPos))) keyPos++;
+            if (keyPos == keys.size()) {
+                throw new IOException("Row outside the shard's keys (or out of order) in " + shard.report() + ": " + path);
+            }
+            rank = ranks.get(keys.get(keyPos));
+            return true;
+        }
+
+        private boolean belongsTo(String path, String key) {
+            int end = prefix.length() + key.length();
+            if (!path.startsWith(key, prefix.length())) return false;
+            return path.length() == end || path.charAt(end) == '.' || path.charAt(end) == '[';
+        }
+    }
+
+    /** Second cell of a report record: every cell is quoted, with quotes doubled inside. */
+    static String pathCell(String record) {
+        int i = 0;
+        int cell = 0;
+        StringBuilder sb = null;
+        while (i < record.length()) {
+            // At the opening quote of a cell
+            i++;
+            if (cell == 1) sb = new StringBuilder();
+            while (i < record.length()) {
+                char ch = record.charAt(i++);
+                if (ch == '"') {
+                    if (i < record.length() && record.charAt(i) == '"') {
+                        if (sb != null) sb.append('"');
+                        i++;
+                    } else {
+                        break;
+                    }
+                } else if (sb != null) {
+                    sb.append(ch);
+                }
+            }
+            if (cell == 1) return sb.toString();
+            cell++;
+            i++; // comma
+        }
+        return "";
+    }
+
+    /** Splits a report into records at '\n'; a line break inside a quoted cell does not end a record. */
+    private static final class RecordReader implements AutoCloseable {
+        private final Reader in;
+        private final char[] buf = new char[CompressedStreams.BUFFER_SIZE];
+        private final StringBuilder sb = new StringBuilder();
+        private int pos;
+        private int limit;
+
+        RecordReader(Reader in) {
+            this.in = in;
+        }
+
+        String next() throws IOException {
+            sb.setLength(0);
+            boolean quoted = false;
+            while (true) {
+                if (pos == limit) {
+                    limit = in.read(buf, 0, buf.length);
+                    pos = 0;
+                    if (limit <= 0) {
+                        limit = 0;
+                        if (quoted) throw new IOException("Unterminated quoted cell at end of report");
+                        return sb.length() == 0 ? null : sb.toString();
+                    }
+                }
+                int start = pos;
+                while (pos < limit) {
+                    char ch = buf[pos];
+                    if (ch == '"') {
+                        quoted = !quoted;
+                    } else if (ch == '\n' && !quoted) {
+                        sb.append(buf, start, pos - start);
+                        pos++;
+                        return sb.toString();
+                    }
+                    pos++;
+                }
+                sb.append(buf, start, pos - start);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
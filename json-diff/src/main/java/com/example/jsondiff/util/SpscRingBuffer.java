@@ -0,0 +1,119 @@
+package com.example.jsondiff.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Bounded single-producer/single-consumer queue on a power-of-two array.
+ * - Only the producer writes {@code tail}, only the consumer writes {@code head}; both are published with
+ *   lazySet, and each side caches the other's index so it only re-reads it when the ring looks full/empty.
+ * - {@link #put}/{@link #take} wait by spinning briefly, then parking; the time spent waiting is counted,
+ *   which is how pipeline stages report how long they were blocked or starved.
+ * Exactly one thread may offer/put and exactly one other thread may poll/take.
+ */
+public class SpscRingBuffer<T> {
+
+    private static final int SPINS = 64;
+    private static final long MAX_PARK_NANOS = 1_000_000L;
+
+    private final Object[] slots;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    // Producer-local view of head, consumer-local view of tail
+    private long headCache;
+    private long tailCache;
+
+    private long producerWaitNanos;
+    private long consumerWaitNanos;
+
+    public SpscRingBuffer(int capacity) {
+        if (capacity < 2) throw new IllegalArgumentException("Ring capacity must be at least 2: " + capacity);
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        slots = new Object[size];
+        mask = size - 1;
+    }
+
+    public int capacity() {
+        return slots.length;
+    }
+
+    /** Producer side; false when the ring is full. */
+    public boolean offer(T item) {
+        long t = tail.get();
+        if (t - headCache >= slots.length) {
+            headCache = head.get();
+            if (t - headCache >= slots.length) return false;
+        }
+        slots[(int) (t & mask)] = item;
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    /** Consumer side; null when the ring is empty. */
+    @SuppressWarnings("unchecked")
+    public T poll() {
+        long h = head.get();
+        if (h >= tailCache) {
+            tailCache = tail.get();
+            if (h >= tailCache) return null;
+        }
+        int i = (int) (h & mask);
+        T item = (T) slots[i];
+        slots[i] = null;
+        head.lazySet(h + 1);
+        return item;
+    }
+
+    /**
+     * Producer side; waits while the ring is full (backpressure).
+     *
+     * @param abort checked while waiting, e.g. "the consumer has failed"; when it returns true the item is dropped
+     * @return false if aborted
+     */
+    public boolean put(T item, BooleanSupplier abort) {
+        if (offer(item)) return true;
+        long t0 = System.nanoTime();
+        try {
+            for (int attempt = 0; !offer(item); attempt++) {
+                if (abort.getAsBoolean()) return false;
+                pause(attempt);
+            }
+            return true;
+        } finally {
+            producerWaitNanos += System.nanoTime() - t0;
+        }
+    }
+
+    /** Consumer side; waits while the ring is empty. */
+    public T take() {
+        T item = poll();
+        if (item != null) return item;
+        long t0 = System.nanoTime();
+        for (int attempt = 0; (item = poll()) == null; attempt++) {
+            pause(attempt);
+        }
+        consumerWaitNanos += System.nanoTime() - t0;
+        return item;
+    }
+
+    /** Time the producer spent in {@link #put} waiting for space; read it once the producer is done. */
+    public long getProducerWaitNanos() {
+        return producerWaitNanos;
+    }
+
+    /** Time the consumer spent in {@link #take} waiting for items; read it once the consumer is done. */
+    public long getConsumerWaitNanos() {
+        return consumerWaitNanos;
+    }
+
+    /** Spin first (the other side is usually mid-batch), then park with growing intervals. */
+    public static void pause(int attempt) {
+        if (attempt < SPINS) {
+            Thread.onSpinWait();
+        } else {
+            LockSupport.parkNanos(Math.min(MAX_PARK_NANOS, 1_000L << Math.min(attempt - SPINS, 10)));
+        }
+    }
+}
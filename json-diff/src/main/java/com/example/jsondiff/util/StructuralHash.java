@@ -0,0 +1,134 @@
+package com.example.jsondiff.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * 64-bit hash of a JSON subtree that agrees with {@link JsonNode#equals}: equal trees always hash equal.
+ * - Object fields are combined order-insensitively (ObjectNode equality ignores field order), array items in order.
+ * - Scalars hash their node type and number representation too, as equals does (1 != 1L != 1.0). Big numbers
+ *   hash their canonical bytes; a BigDecimal its value, not its scale, as DecimalNode.equals (1.0 == 1.00).
+ * - Different hashes prove the trees differ. Equal hashes do not prove them equal: the mix is not
+ *   collision-resistant, so no odds hold for crafted or structured input. Confirm with {@link JsonTrees#equal}.
+ * Iterative, so deeply nested documents do not exhaust the thread stack. Stateless and thread-safe.
+ */
+public final class StructuralHash {
+
+    private static final long OBJECT_SEED = 0x6a09e667f3bcc909L;
+    private static final long ARRAY_SEED = 0xbb67ae8584caa73bL;
+    private static final long PRIME = 0x9e3779b97f4a7c15L;
+
+    private StructuralHash() {
+    }
+
+    /** Container being hashed: its child iterator and what has been folded in so far. */
+    private static final class Frame {
+        final JsonNode node;
+        final Iterator<Map.Entry<String, JsonNode>> fields;
+        final Iterator<JsonNode> items;
+        String pendingKey;
+        long acc;
+
+        Frame(JsonNode node) {
+            this.node = node;
+            this.fields = node.isObject() ? node.fields() : null;
+            this.items = node.isObject() ? null : node.elements();
+            this.acc = node.isObject() ? OBJECT_SEED : ARRAY_SEED;
+        }
+    }
+
+    public static long of(JsonNode root) {
+        return of(root, null);
+    }
+
+    /** Same as {@link #of(JsonNode)}, also recording the hash of every container node into containers when non-null. */
+    public static long of(JsonNode root, Map<JsonNode, Long> containers) {
+        if (root == null) return 0;
+        if (!root.isContainerNode()) return scalar(root);
+        Deque<Frame> stack = new ArrayDeque<>();
+        stack.push(new Frame(root));
+        while (true) {
+            Frame top = stack.peek();
+            JsonNode child = null;
+            if (top.fields != null && top.fields.hasNext()) {
+                Map.Entry<String, JsonNode> e = top.fields.next();
+                top.pendingKey = e.getKey();
+                child = e.getValue();
+            } else if (top.items != null && top.items.hasNext()) {
+                child = top.items.next();
+            }
+            if (child != null) {
+                if (child.isContainerNode()) stack.push(new Frame(child));
+                else fold(top, scalar(child));
+                continue;
+            }
+            stack.pop();
+            long h = mix(top.acc ^ top.node.size() * PRIME);
+            if (containers != null) containers.put(top.node, h);
+            if (stack.isEmpty()) return h;
+            fold(stack.peek(), h);
+        }
+    }
+
+    private static void fold(Frame f, long childHash) {
+        if (f.fields != null) {
+            // Sum of independent per-field hashes: field order does not matter
+            f.acc += mix(text(f.pendingKey) ^ Long.rotateLeft(childHash, 29));
+        } else {
+            f.acc = mix(f.acc * PRIME + childHash);
+        }
+    }
+
+    private static long scalar(JsonNode n) {
+        long tag = n.getNodeType().ordinal() + 1;
+        long value;
+        if (n.isTextual()) {
+            value = text(n.textValue());
+        } else if (n.isNumber()) {
+            tag = tag * 31 + n.numberType().ordinal();
+            if (n.isIntegralNumber() && n.canConvertToLong()) value = n.longValue();
+            else if (n.isDouble() || n.isFloat()) value = Double.doubleToLongBits(n.doubleValue());
+            else if (n.isBigDecimal()) value = decimal(n.decimalValue());
+            else value = bytes(n.bigIntegerValue().toByteArray());
+        } else if (n.isBoolean()) {
+            value = n.booleanValue() ? 1 : 2;
+        } else {
+            value = n.hashCode();
+        }
+        return mix(value * PRIME + tag);
+    }
+
+    private static long decimal(BigDecimal d) {
+        // 1.0 and 1.00 compare equal: same unscaled value and scale once trailing zeros are stripped
+        BigDecimal canonical = d.signum() == 0 ? BigDecimal.ZERO : d.stripTrailingZeros();
+        return bytes(canonical.unscaledValue().toByteArray()) * PRIME + canonical.scale();
+    }
+
+    private static long bytes(byte[] b) {
+        long h = 0xcbf29ce484222325L;
+        for (byte x : b) {
+            h = (h ^ (x & 0xff)) * 0x100000001b3L;
+        }
+        return h;
+    }
+
+    private static long text(String s) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h = (h ^ s.charAt(i)) * 0x100000001b3L;
+        }
+        return h;
+    }
+
+    /** SplitMix64 finalizer. */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
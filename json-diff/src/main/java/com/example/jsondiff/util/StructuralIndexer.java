@@ -0,0 +1,249 @@
+package com.example.jsondiff.util;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.lang.reflect.Constructor;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/**
+ * Stage 1 of a simdjson-style parse: classifies 64 bytes at a time and emits the offsets of the structural
+ * characters ({ } [ ] : , outside strings), of every string's opening quote and of the first byte of every
+ * other scalar (number, true, false, null). Consumers walk those offsets instead of every byte.
+ * - Per block the classifier yields bitmasks (backslash, quote, operator, whitespace, control); escapes,
+ *   in-string ranges (prefix XOR of the unescaped quotes) and scalar starts are derived with plain long
+ *   arithmetic, carrying state to the next block, so input can arrive in pieces.
+ * - The classifier uses jdk.incubator.vector when the module is present (java --add-modules
+ *   jdk.incubator.vector), else SWAR arithmetic on longs; see {@link #implementation()}.
+ * - Checks only what the masks show and escapes (an unescaped control character inside a string, a backslash
+ *   before anything but a JSON escape letter or a unicode escape without four hex digits); grammar,
+ *   including unclosed strings, is the consumer's job.
+ * Not thread-safe: one indexer per input.
+ */
+public final class StructuralIndexer {
+
+    public static final int BLOCK = 64;
+
+    /** Bitmasks of one 64-byte block; bit i is byte offset + i. */
+    public interface BlockClassifier {
+        int BACKSLASH = 0;
+        int QUOTE = 1;
+        // { } [ ] : ,
+        int OPERATOR = 2;
+        // space, tab, line feed, carriage return
+        int WHITESPACE = 3;
+        // bytes below 0x20
+        int CONTROL = 4;
+
+        void classify(byte[] buf, int offset, long[] masks);
+    }
+
+    // Classifiers may keep scratch space, so each indexer gets its own
+    private static final Supplier<BlockClassifier> CLASSIFIERS = selectClassifier();
+
+    private final BlockClassifier classifier;
+    private final long[] masks = new long[5];
+    private final byte[] pad = new byte[BLOCK];
+    // Carried between blocks: inside a string, next byte escaped, previous byte part of a scalar
+    private long inString;
+    private boolean escapeCarry;
+    // Hex digits of a unicode escape that continue into the next block
+    private int hexPending;
+    private long scalarCarry;
+    // First problem found by the last index call (buf index, -1 if none)
+    private int errorAt;
+    private String error;
+
+    public StructuralIndexer() {
+        this(CLASSIFIERS.get());
+    }
+
+    public StructuralIndexer(BlockClassifier classifier) {
+        this.classifier = classifier;
+    }
+
+    /** "vector (N-byte lanes)" or "scalar (SWAR)": what {@link #StructuralIndexer()} runs on in this JVM. */
+    public static String implementation() {
+        return CLASSIFIERS.get().toString();
+    }
+
+    /**
+     * Indexes buf[from, to) and writes the structural offsets (indexes into buf) to out from outFrom on, which
+     * needs room for to - from entries. Unless last, to - from must be a multiple of {@link #BLOCK}; a last partial block is
+     * padded with spaces. A string still open at the end is left to the consumer, which
+     * may have stopped reading before it.
+     *
+     * @return the number of offsets written
+     */
+    public int index(byte[] buf, int from, int to, boolean last, int[] out, int outFrom) {
+        errorAt = -1;
+        error = null;
+        int n = outFrom;
+        int at = from;
+        for (; at + BLOCK <= to; at += BLOCK) {
+            classifier.classify(buf, at, masks);
+            n = block(buf, at, at, out, n, -1L);
+        }
+        if (at < to) {
+            if (!last) throw new IllegalArgumentException("Partial block before the end of input");
+            Arrays.fill(pad, (byte) ' ');
+            System.arraycopy(buf, at, pad, 0, to - at);
+            classifier.classify(pad, 0, masks);
+            n = block(pad, 0, at, out, n, (1L << (to - at)) - 1);
+        }
+        return n - outFrom;
+    }
+
+    /** data[dataOffset..] holds the block's bytes, which start at buf offset offset. */
+    private int block(byte[] data, int dataOffset, int offset, int[] out, int n, long valid) {
+        long backslash = masks[BlockClassifier.BACKSLASH];
+        long escaped = 0;
+        if (escapeCarry) {
+            escaped = 1;
+            backslash &= ~1L;
+            escapeCarry = false;
+        }
+        // A backslash escapes the next byte, which then cannot escape anything itself
+        while (backslash != 0) {
+            int i = Long.numberOfTrailingZeros(backslash);
+            if (i == 63) {
+                escapeCarry = true;
+                break;
+            }
+            escaped |= 1L << (i + 1);
+            backslash &= ~(3L << i);
+        }
+        if (hexPending > 0) hexPending = hexDigits(data, dataOffset, offset, 0, hexPending);
+        for (long e = escaped & valid; e != 0; e &= e - 1) {
+            int i = Long.numberOfTrailingZeros(e);
+            byte b = data[dataOffset + i];
+            if (b == 'u') {
+                hexPending = hexDigits(data, dataOffset, offset, i + 1, 4);
+            } else if (b != '"' && b != '\\' && b != '/' && b != 'b' && b != 'f' && b != 'n' && b != 'r' && b != 't') {
+                fail(offset + i - 1, "Invalid escape");
+            }
+        }
+        long quotes = masks[BlockClassifier.QUOTE] & ~escaped;
+        // Bits from an opening quote up to (not including) its closing quote
+        long strings = prefixXor(quotes) ^ inString;
+        inString = strings >> 63;
+        long control = masks[BlockClassifier.CONTROL] & strings & valid;
+        if (control != 0) fail(offset + Long.numberOfTrailingZeros(control), "Unescaped control character in string");
+        long operators = masks[BlockClassifier.OPERATOR] & ~strings;
+        long scalars = ~(operators | masks[BlockClassifier.WHITESPACE] | quotes | strings);
+        long scalarStarts = scalars & ~(scalars << 1 | scalarCarry);
+        scalarCarry = scalars >>> 63;
+        long structurals = (operators | (quotes & strings) | scalarStarts) & valid;
+        while (structurals != 0) {
+            out[n++] = offset + Long.numberOfTrailingZeros(structurals);
+            structurals &= structurals - 1;
+        }
+        return n;
+    }
+
+    /** Checks up to count hex digits from bit i of the block; returns how many fall into the next block. */
+    private int hexDigits(byte[] data, int dataOffset, int offset, int i, int count) {
+        for (; count > 0 && i < BLOCK; count--, i++) {
+            if (Character.digit(data[dataOffset + i], 16) < 0) fail(offset + i, "Invalid unicode escape");
+        }
+        return count;
+    }
+
+    private void fail(int at, String message) {
+        if (error == null || at < errorAt) {
+            errorAt = at;
+            error = message;
+        }
+    }
+
+    /**
+     * Where the last {@link #index} call found a malformed string (buf index), or -1. Reported rather than
+     * thrown, since the consumer may stop reading before that point.
+     */
+    public int errorAt() {
+        return errorAt;
+    }
+
+    /** What is wrong at {@link #errorAt()}. */
+    public String error() {
+        return error;
+    }
+
+    private static long prefixXor(long x) {
+        x ^= x << 1;
+        x ^= x << 2;
+        x ^= x << 4;
+        x ^= x << 8;
+        x ^= x << 16;
+        x ^= x << 32;
+        return x;
+    }
+
+    private static Supplier<BlockClassifier> selectClassifier() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                Constructor<?> vector = Class.forName(StructuralIndexer.class.getPackageName() + ".VectorClassifier")
+                        .getDeclaredConstructor();
+                vector.newInstance();
+                return () -> {
+                    try {
+                        return (BlockClassifier) vector.newInstance();
+                    } catch (ReflectiveOperationException e) {
+                        throw new IllegalStateException(e);
+                    }
+                };
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // Module present but unusable here: fall through
+            }
+        }
+        return ScalarClassifier::new;
+    }
+
+    /** Packs the top bit of each of the 8 bytes of y (little-endian) into 8 bits. */
+    static long movemask(long y) {
+        return (y >>> 7 & 0x0101010101010101L) * 0x0102040810204080L >>> 56;
+    }
+
+    /**
+     * SWAR (eight bytes per long) classifier; used when the Vector API is not available. A byte equal to c
+     * gets its top bit set by ~(((t &amp; 0x7F..) + 0x7F..) | t) with t = word ^ c repeated.
+     */
+    static final class ScalarClassifier implements BlockClassifier {
+        private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+        private static final long ONES = 0x0101010101010101L;
+        private static final long LOW7 = 0x7F7F7F7F7F7F7F7FL;
+        private static final long HIGH = 0x8080808080808080L;
+
+        @Override
+        public void classify(byte[] buf, int offset, long[] masks) {
+            long backslash = 0, quote = 0, operator = 0, whitespace = 0, control = 0;
+            for (int i = 0; i < BLOCK; i += 8) {
+                long w = (long) LONGS.get(buf, offset + i);
+                // '[' and ']' fold onto '{' and '}'
+                long folded = w | 0x2020202020202020L;
+                backslash |= movemask(eq(w, '\\')) << i;
+                quote |= movemask(eq(w, '"')) << i;
+                operator |= movemask(eq(folded, '{') | eq(folded, '}') | eq(w, ':') | eq(w, ',')) << i;
+                whitespace |= movemask(eq(w, ' ') | eq(w, '\n') | eq(w, '\r') | eq(w, '\t')) << i;
+                // Top bit clear and below 0x20
+                control |= movemask(~(((w & LOW7) + 0x6060606060606060L) | w) & HIGH) << i;
+            }
+            masks[BACKSLASH] = backslash;
+            masks[QUOTE] = quote;
+            masks[OPERATOR] = operator;
+            masks[WHITESPACE] = whitespace;
+            masks[CONTROL] = control;
+        }
+
+        @Override
+        public String toString() {
+            return "scalar (SWAR)";
+        }
+
+        private static long eq(long word, char c) {
+            long t = word ^ (c * ONES);
+            return ~(((t & LOW7) + LOW7) | t) & HIGH;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.jsondiff.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Forward-only cursor over the {@link StructuralIndexer} offsets of a stream, for skimming a document without
+ * parsing it: {@link #skipValue()} crosses a whole subtree by counting brackets on the structural offsets only.
+ * - Reads in chunks; only the bytes from the current structural on are kept when refilling, so memory stays at
+ *   one chunk (plus the longest string read with {@link #string()}).
+ * - Does not check the grammar: meant for sizing and locating fields in input that a real parse reads later.
+ */
+public final class StructuralReader implements AutoCloseable {
+
+    private static final int CHUNK = 1 << 20;
+
+    private final InputStream in;
+    private final StructuralIndexer indexer = new StructuralIndexer();
+    private byte[] buf = new byte[CHUNK];
+    private int limit;
+    // Bytes of buf already indexed (a whole number of blocks until the end of input)
+    private int scanned;
+    // Stream offset of buf[0]
+    private long base;
+    private boolean eof;
+    // Pending structural offsets (into buf), next one at pos[next]
+    private int[] pos = new int[CHUNK / 4];
+    private int count;
+    private int next;
+    // Offset (into buf) of the current structural, -1 before the first
+    private int current = -1;
+
+    public StructuralReader(InputStream in) {
+        this.in = in;
+    }
+
+    /** Moves to the next structural; returns its byte ({ } [ ] : , " or a scalar's first byte), or -1 at the end. */
+    public int next() throws IOException {
+        while (next == count) {
+            if (!fill()) return -1;
+        }
+        current = pos[next++];
+        return buf[current];
+    }
+
+    /** Stream offset of the current structural. */
+    public long offset() {
+        return base + current;
+    }
+
+    /**
+     * With the current structural on a value's first byte: moves to the value's last structural (its closing
+     * bracket, or the value itself for a string or scalar).
+     */
+    public void skipValue() throws IOException {
+        int c = buf[current];
+        if (c != '{' && c != '[') return;
+        int depth = 1;
+        while (depth > 0) {
+            c = next();
+            if (c == '{' || c == '[') depth++;
+            else if (c == '}' || c == ']') depth--;
+            else if (c < 0) throw new IOException("Unexpected end of input");
+        }
+    }
+
+    /** Decodes the string whose opening quote is the current structural. */
+    public String string() throws IOException {
+        if (buf[current] != '"') throw new IOException("Expected a string at byte " + offset());
+        int i = current + 1;
+        while (true) {
+            if (i >= limit) {
+                int before = current;
+                if (!fill()) throw new IOException("Unterminated string at byte " + offset());
+                i -= before - current;
+                continue;
+            }
+            byte b = buf[i];
+            if (b == '"') break;
+            i += b == '\\' ? 2 : 1;
+        }
+        return JsonTape.decode(buf, current);
+    }
+
+    /** Reads more input, keeping the bytes from the current structural on; false once nothing is left. */
+    private boolean fill() throws IOException {
+        if (eof) return false;
+        int keep = current >= 0 ? Math.min(current, scanned) : 0;
+        if (keep > 0) {
+            System.arraycopy(buf, keep, buf, 0, limit - keep);
+            limit -= keep;
+            scanned -= keep;
+            base += keep;
+            current -= keep;
+        }
+        for (int i = next; i < count; i++) pos[i - next] = pos[i] - keep;
+        count -= next;
+        next = 0;
+        if (limit == buf.length) buf = Arrays.copyOf(buf, buf.length * 2);
+        int read = in.read(buf, limit, buf.length - limit);
+        if (read < 0) eof = true;
+        else limit += read;
+        int end = eof ? limit : scanned + (limit - scanned) / StructuralIndexer.BLOCK * StructuralIndexer.BLOCK;
+        if (end > scanned || eof) {
+            if (pos.length < count + end - scanned) pos = Arrays.copyOf(pos, count + end - scanned);
+            count += indexer.index(buf, scanned, end, eof, pos, count);
+            scanned = end;
+        }
+        return read >= 0 || next < count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.jsondiff.util;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.BiConsumer;
+
+/**
+ * Builds the same tree as {@code mapper.readTree(in)}, handing out subtrees while the rest is still being parsed.
+ * - Units are the values of the root object's fields; for fields whose value is an object, its own fields
+ *   are the units instead (so a lone wrapper such as "BusinessRules" still yields many units).
+ * - A unit's path is "key" or "key.child", the same path the traversal gives that pair under "$".
+ * - A handed-out subtree is complete and never touched again by the reader, so another thread may read it
+ *   once it has been passed safely (e.g. through a BlockingQueue).
+ * Non-object roots produce no units.
+ */
+public final class SubtreeStreamReader {
+
+    private SubtreeStreamReader() {
+    }
+
+    public static JsonNode read(ObjectMapper mapper, InputStream in, BiConsumer<String, JsonNode> onUnit) throws IOException {
+        try (JsonParser p = mapper.getFactory().createParser(in)) {
+            JsonToken t = p.nextToken();
+            if (t == null) return mapper.missingNode();
+            if (t != JsonToken.START_OBJECT) return mapper.readTree(p);
+
+            ObjectNode root = mapper.createObjectNode();
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String key = p.currentName();
+                if (p.nextToken() == JsonToken.START_OBJECT) {
+                    ObjectNode child = mapper.createObjectNode();
+                    root.set(key, child);
+                    while (p.nextToken() == JsonToken.FIELD_NAME) {
+                        String name = p.currentName();
+                        p.nextToken();
+                        JsonNode value = mapper.readTree(p);
+                        child.set(name, value);
+                        onUnit.accept(key + "." + name, value);
+                    }
+                } else {
+                    JsonNode value = mapper.readTree(p);
+                    root.set(key, value);
+                    onUnit.accept(key, value);
+                }
+            }
+            return root;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.jsondiff.util;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * {@link StructuralIndexer.BlockClassifier} on jdk.incubator.vector: compares whole lanes of bytes against the
+ * characters of interest and folds the results into one class byte per input byte (bit 0 backslash, 1 quote,
+ * 2 operator, 3 whitespace, 4 control), which is then packed into the masks eight bytes at a time.
+ * - Brackets are matched case-folded ('[' | 0x20 == '{').
+ * - The class bytes go through an array rather than VectorMask.toLong(), which JDK 17 does not compile to a
+ *   single instruction and which would make this slower than the SWAR classifier.
+ * Loaded reflectively by {@link StructuralIndexer}, so this class is only touched when the module is present.
+ */
+final class VectorClassifier implements StructuralIndexer.BlockClassifier {
+
+    // Up to 32 lanes: as fast as 64 here, and available on more machines
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED.length() > 32
+            ? ByteVector.SPECIES_256 : ByteVector.SPECIES_PREFERRED;
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final byte[] classes = new byte[StructuralIndexer.BLOCK];
+
+    @Override
+    public void classify(byte[] buf, int offset, long[] masks) {
+        for (int i = 0; i < StructuralIndexer.BLOCK; i += SPECIES.length()) {
+            ByteVector v = ByteVector.fromArray(SPECIES, buf, offset + i);
+            ByteVector folded = v.or((byte) 0x20);
+            ByteVector backslash = (ByteVector) v.eq((byte) '\\').toVector();
+            ByteVector quote = (ByteVector) v.eq((byte) '"').toVector();
+            ByteVector operator = (ByteVector) folded.eq((byte) '{').or(folded.eq((byte) '}'))
+                    .or(v.eq((byte) ':')).or(v.eq((byte) ',')).toVector();
+            ByteVector whitespace = (ByteVector) v.eq((byte) ' ').or(v.eq((byte) '\n'))
+                    .or(v.eq((byte) '\r')).or(v.eq((byte) '\t')).toVector();
+            // Signed bytes: 0x00..0x1F are the non-negative ones below 0x20
+            ByteVector control = (ByteVector) v.compare(VectorOperators.LT, (byte) 0x20)
+                    .and(v.compare(VectorOperators.GE, (byte) 0)).toVector();
+            backslash.and((byte) 1).or(quote.and((byte) 2)).or(operator.and((byte) 4))
+                    .or(whitespace.and((byte) 8)).or(control.and((byte) 16)).intoArray(classes, i);
+        }
+        long backslash = 0, quote = 0, operator = 0, whitespace = 0, control = 0;
+        for (int i = 0; i < StructuralIndexer.BLOCK; i += 8) {
+            long w = (long) LONGS.get(classes, i);
+            backslash |= StructuralIndexer.movemask(w << 7) << i;
+            quote |= StructuralIndexer.movemask(w << 6) << i;
+            operator |= StructuralIndexer.movemask(w << 5) << i;
+            whitespace |= StructuralIndexer.movemask(w << 4) << i;
+            control |= StructuralIndexer.movemask(w << 3) << i;
+        }
+        masks[BACKSLASH] = backslash;
+        masks[QUOTE] = quote;
+        masks[OPERATOR] = operator;
+        masks[WHITESPACE] = whitespace;
+        masks[CONTROL] = control;
+    }
+
+    @Override
+    public String toString() {
+        return "vector (" + SPECIES.length() + "-byte lanes)";
+    }
+}
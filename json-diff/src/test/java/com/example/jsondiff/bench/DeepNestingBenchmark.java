@@ -0,0 +1,129 @@
+package com.example.jsondiff.bench;
+
+import com.example.jsondiff.engine.CancellationToken;
+import com.example.jsondiff.engine.DiffEngine;
+import com.example.jsondiff.engine.DiffListener;
+import com.example.jsondiff.engine.DiffValue;
+import com.example.jsondiff.util.DiffOptions;
+import com.example.jsondiff.util.JsonMappers;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Diff of two documents of keyless arrays of objects nested depth levels deep, differing at the innermost leaf:
+ * {@link DiffEngine} (the iterative DiffTraversal) vs the recursive walk RuleDiff had before it (baseline).
+ * Both emit the same rows and consume them the same way (row count plus path lengths; rows are not kept, as
+ * paths grow with the depth). The fork's -Xss gives the baseline the stack it needs at 10,000 levels; the
+ * engine runs on any stack.
+ * Run: java -cp &lt;test classpath&gt; org.openjdk.jmh.Main DeepNesting
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xss256m")
+public class DeepNestingBenchmark {
+
+    @Param({"1000", "10000"})
+    public int depth;
+
+    private final ObjectMapper mapper = JsonMappers.newMapper();
+    private JsonNode left;
+    private JsonNode right;
+
+    @Setup
+    public void load() throws IOException {
+        left = mapper.readTree("{\"A\":" + nested(depth, 1) + "}");
+        right = mapper.readTree("{\"A\":" + nested(depth, 2) + "}");
+    }
+
+    @Benchmark
+    public long diffEngine() {
+        long[] sink = new long[1];
+        new DiffEngine().diff(left, right, DiffOptions.parse(), new CancellationToken(), new DiffListener() {
+            @Override
+            public void onPresent(String path, DiffValue l, DiffValue r) {
+                sink[0] += 1 + path.length() + l.text().length();
+            }
+
+            @Override
+            public void onModified(String path, DiffValue l, DiffValue r, String details) {
+                sink[0] += 1 + path.length() + l.text().length();
+            }
+        });
+        return sink[0];
+    }
+
+    @Benchmark
+    public long recursiveBaseline() {
+        long[] sink = new long[1];
+        Iterator<String> names = left.fieldNames();
+        while (names.hasNext()) {
+            String name = names.next();
+            recurse(name, left.get(name), right.get(name), sink);
+        }
+        return sink[0];
+    }
+
+    /** RuleDiff.emitAndStopAtLeaves before DiffTraversal, cut down to what this input reaches. */
+    private void recurse(String path, JsonNode l, JsonNode r, long[] sink) {
+        if (l == null || r == null || l.getNodeType() != r.getNodeType()) {
+            emit(path, pretty(l), sink);
+            return;
+        }
+        if (l.isObject()) {
+            emit(path, "{}", sink);
+            TreeSet<String> keys = new TreeSet<>();
+            l.fieldNames().forEachRemaining(keys::add);
+            r.fieldNames().forEachRemaining(keys::add);
+            for (String key : keys) recurse(path + "." + key, l.get(key), r.get(key), sink);
+        } else if (l.isArray()) {
+            array(path, (ArrayNode) l, (ArrayNode) r, sink);
+        } else {
+            emit(path, pretty(l), sink);
+        }
+    }
+
+    /** RuleDiff.handleArrayComparison: no candidate key in these items, so index alignment. */
+    private void array(String path, ArrayNode la, ArrayNode ra, long[] sink) {
+        emit(path, "[]", sink);
+        for (int i = 0; i < Math.max(la.size(), ra.size()); i++) {
+            recurse(path + "[" + i + "]", la.get(i), ra.get(i), sink);
+        }
+    }
+
+    private static void emit(String path, String value, long[] sink) {
+        sink[0] += 1 + path.length() + value.length();
+    }
+
+    private static String pretty(JsonNode n) {
+        return n == null ? "" : n.toString();
+    }
+
+    /** depth levels of [{"x":level,"c":[...]}], innermost {"x":leaf}. */
+    private static String nested(int depth, int leaf) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < depth; i++) sb.append("[{\"x\":").append(i % 3).append(",\"c\":");
+        sb.append("{\"x\":").append(leaf).append('}');
+        for (int i = 0; i < depth; i++) sb.append("}]");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.jsondiff.bench;
+
+import com.example.jsondiff.util.JsonMappers;
+import com.example.jsondiff.util.JsonTape;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Input kept as a {@link JsonTape} vs the tree ObjectMapper.readTree builds.
+ * - pre_login: the bundled pre_login_SG_rule.json (1.3 MB, mostly long strings).
+ * - records: 50,000 generated rule-like records (about 7 MB, many small scalars).
+ * parse* time building each form, walk* a full walk reading every scalar as text, retained* the heap each form
+ * keeps (measured once per fork around a full GC, reported as the retainedBytes counter).
+ * Run: java -cp &lt;test classpath&gt; org.openjdk.jmh.Main JsonTape
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xms1g", "-Xmx1g", "-XX:+UseSerialGC"})
+public class JsonTapeBenchmark {
+
+    @Param({"pre_login", "records"})
+    public String input;
+
+    private final ObjectMapper mapper = JsonMappers.newMapper();
+    private byte[] bytes;
+    private JsonNode tree;
+    private JsonTape tape;
+
+    /** Bytes held by the form built in the measured call. */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Retained {
+        public long retainedBytes;
+    }
+
+    @Setup
+    public void load() throws IOException {
+        if (input.equals("pre_login")) {
+            try (InputStream in = getClass().getClassLoader().getResourceAsStream("pre_login_SG_rule.json")) {
+                bytes = in.readAllBytes();
+            }
+        } else {
+            bytes = records(50_000);
+        }
+        tree = mapper.readTree(bytes);
+        tape = JsonTape.parse(bytes);
+    }
+
+    @Benchmark
+    public JsonNode parseTree() throws IOException {
+        return mapper.readTree(bytes);
+    }
+
+    @Benchmark
+    public JsonTape parseTape() throws IOException {
+        return JsonTape.parse(bytes);
+    }
+
+    @Benchmark
+    public long walkTree() {
+        return walk(tree);
+    }
+
+    @Benchmark
+    public long walkTape() {
+        return walk(tape.root());
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    public Object retainedTree(Retained retained) throws IOException {
+        long before = usedHeap();
+        JsonNode kept = mapper.readTree(bytes);
+        retained.retainedBytes = usedHeap() - before;
+        return kept;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    public Object retainedTape(Retained retained) throws IOException {
+        // The tape keeps the source bytes it was built from: count them as part of it
+        byte[] source = bytes.clone();
+        long before = usedHeap() - source.length;
+        JsonTape kept = JsonTape.parse(source);
+        retained.retainedBytes = usedHeap() - before;
+        return kept;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /** Node count plus the text length of every scalar, so each one is decoded. */
+    private static long walk(JsonNode node) {
+        if (node.isObject()) {
+            long sum = 1;
+            Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+            while (fields.hasNext()) sum += walk(fields.next().getValue());
+            return sum;
+        }
+        if (node.isArray()) {
+            long sum = 1;
+            for (JsonNode item : node) sum += walk(item);
+            return sum;
+        }
+        return 1 + node.asText().length();
+    }
+
+    /** {"rules":[{"id":..,"code":..,"limit":..,"enabled":..,"segments":[..],"meta":{..}}, ...]} */
+    static byte[] records(int n) {
+        Random random = new Random(42);
+        StringBuilder sb = new StringBuilder("{\"rules\":[");
+        for (int i = 0; i < n; i++) {
+            if (i > 0) sb.append(',');
+            sb.append("{\"id\":").append(i)
+                    .append(",\"code\":\"R").append(random.nextInt(1_000_000)).append('"')
+                    .append(",\"limit\":").append(random.nextInt(100_000) / 100.0)
+                    .append(",\"enabled\":").append(random.nextBoolean())
+                    .append(",\"segments\":[\"retail\",\"sme\",").append(random.nextInt(10)).append(']')
+                    .append(",\"meta\":{\"owner\":\"team").append(random.nextInt(20))
+                    .append("\",\"note\":null,\"version\":").append(random.nextInt(5)).append("}}");
+        }
+        return sb.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.jsondiff.bench;
+
+import com.example.jsondiff.util.JsonMappers;
+import com.example.jsondiff.util.KeyUnion;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Field name union per object pair, as DiffTraversal needs it: a TreeSet per pair (before) vs {@link KeyUnion}.
+ * - pre_login: every object pair of the bundled pre_login rule files, in traversal order.
+ * - wide: 200 pairs of 1000-field objects whose names only partly overlap.
+ * Score is the time for all pairs of the input. Run: java -cp &lt;test classpath&gt; org.openjdk.jmh.Main KeyUnion
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KeyUnionBenchmark {
+
+    @Param({"pre_login", "wide"})
+    public String input;
+
+    private final List<JsonNode[]> pairs = new ArrayList<>();
+    private final KeyUnion union = new KeyUnion();
+
+    @Setup
+    public void load() throws IOException {
+        ObjectMapper mapper = JsonMappers.newMapper();
+        if (input.equals("pre_login")) {
+            collect(read(mapper, "pre_login_SG_rule.json"), read(mapper, "pre_login_IPB_rule.json"));
+            return;
+        }
+        for (int p = 0; p < 200; p++) {
+            ObjectNode l = mapper.createObjectNode();
+            ObjectNode r = mapper.createObjectNode();
+            for (int i = 0; i < 1000; i++) {
+                l.put("f" + (i * 7919) % 1000, i);
+                r.put("f" + (i * 104729 + p) % 1003, i);
+            }
+            pairs.add(new JsonNode[]{l, r});
+        }
+    }
+
+    @Benchmark
+    public long treeSet() {
+        long sink = 0;
+        for (JsonNode[] pair : pairs) {
+            TreeSet<String> names = new TreeSet<>();
+            pair[0].fieldNames().forEachRemaining(names::add);
+            pair[1].fieldNames().forEachRemaining(names::add);
+            for (String name : names) sink += name.length();
+        }
+        return sink;
+    }
+
+    @Benchmark
+    public long keyUnion() {
+        long sink = 0;
+        for (JsonNode[] pair : pairs) {
+            String[] names = union.sorted(pair[0], pair[1]);
+            for (int i = 0; i < union.size(); i++) sink += names[i].length();
+        }
+        return sink;
+    }
+
+    /** Object pairs present on both sides, parents before children. */
+    private void collect(JsonNode l, JsonNode r) {
+        if (l == null || r == null) return;
+        if (l.isObject() && r.isObject()) {
+            pairs.add(new JsonNode[]{l, r});
+            Iterator<String> names = l.fieldNames();
+            while (names.hasNext()) {
+                String name = names.next();
+                collect(l.get(name), r.get(name));
+            }
+        } else if (l.isArray() && r.isArray()) {
+            for (int i = 0; i < Math.min(l.size(), r.size()); i++) collect(l.get(i), r.get(i));
+        }
+    }
+
+    static JsonNode read(ObjectMapper mapper, String resource) throws IOException {
+        try (InputStream in = KeyUnionBenchmark.class.getClassLoader().getResourceAsStream(resource)) {
+            return mapper.readTree(in);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.jsondiff.bench;
+
+import com.example.jsondiff.util.JsonMappers;
+import com.example.jsondiff.util.ScalarComparator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.DoubleNode;
+import com.fasterxml.jackson.databind.node.IntNode;
+import com.fasterxml.jackson.databind.node.LongNode;
+import com.fasterxml.jackson.databind.node.ValueNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Leaf comparison: the asText()/numberValue() rule the comparators used before (before) vs {@link ScalarComparator}.
+ * - pre_login: every scalar pair of the bundled pre_login rule files (mostly strings).
+ * - numbers: 2^16 equal pairs, a third each int, long and double.
+ * Score is the time for all pairs of the input. Run: java -cp &lt;test classpath&gt; org.openjdk.jmh.Main ScalarComparator
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScalarComparatorBenchmark {
+
+    @Param({"pre_login", "numbers"})
+    public String input;
+
+    private final List<ValueNode> lefts = new ArrayList<>();
+    private final List<ValueNode> rights = new ArrayList<>();
+    private final ScalarComparator strict = new ScalarComparator(ScalarComparator.Mode.STRICT);
+
+    @Setup
+    public void load() throws IOException {
+        if (input.equals("pre_login")) {
+            ObjectMapper mapper = JsonMappers.newMapper();
+            collect(KeyUnionBenchmark.read(mapper, "pre_login_SG_rule.json"),
+                    KeyUnionBenchmark.read(mapper, "pre_login_IPB_rule.json"));
+            return;
+        }
+        for (int i = 0; i < 1 << 16; i++) {
+            ValueNode v = switch (i % 3) {
+                case 0 -> IntNode.valueOf(i);
+                case 1 -> LongNode.valueOf(i * 1_000_000_000L);
+                default -> DoubleNode.valueOf(i * 0.5);
+            };
+            lefts.add(v);
+            rights.add(v.deepCopy());
+        }
+    }
+
+    @Benchmark
+    public int asTextRule() {
+        int equal = 0;
+        for (int i = 0; i < lefts.size(); i++) {
+            if (asTextEquals(lefts.get(i), rights.get(i))) equal++;
+        }
+        return equal;
+    }
+
+    @Benchmark
+    public int scalarComparator() {
+        int equal = 0;
+        for (int i = 0; i < lefts.size(); i++) {
+            if (strict.equals(lefts.get(i), rights.get(i))) equal++;
+        }
+        return equal;
+    }
+
+    @Benchmark
+    public int asTextSetRule() {
+        int equal = 0;
+        for (int i = 0; i < lefts.size(); i++) {
+            if (lefts.get(i).asText().equals(rights.get(i).asText())) equal++;
+        }
+        return equal;
+    }
+
+    @Benchmark
+    public int textEquals() {
+        int equal = 0;
+        for (int i = 0; i < lefts.size(); i++) {
+            if (ScalarComparator.textEquals(lefts.get(i), rights.get(i))) equal++;
+        }
+        return equal;
+    }
+
+    /** The strict scalar rule as written before ScalarComparator. */
+    private static boolean asTextEquals(ValueNode a, ValueNode b) {
+        if (a.isTextual() && b.isTextual()) return a.asText().equals(b.asText());
+        if (a.isNumber() && b.isNumber()) return a.numberValue().equals(b.numberValue());
+        if (a.isBoolean() && b.isBoolean()) return a.booleanValue() == b.booleanValue();
+        return a.toString().equals(b.toString());
+    }
+
+    /** Scalar pairs present on both sides at the same path. */
+    private void collect(JsonNode l, JsonNode r) {
+        if (l == null || r == null) return;
+        if (l.isValueNode() && r.isValueNode()) {
+            lefts.add((ValueNode) l);
+            rights.add((ValueNode) r);
+        } else if (l.isObject() && r.isObject()) {
+            Iterator<String> names = l.fieldNames();
+            while (names.hasNext()) {
+                String name = names.next();
+                collect(l.get(name), r.get(name));
+            }
+        } else if (l.isArray() && r.isArray()) {
+            for (int i = 0; i < Math.min(l.size(), r.size()); i++) collect(l.get(i), r.get(i));
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.jsondiff.component;
+
+import com.example.jsondiff.engine.CancellationToken;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The time budget and the cancellation token cover parsing: a run stopped before its inputs are read writes
+ * a report holding only the header and the "Truncated" row.
+ */
+class RuleDiffBudgetTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void cancelledRunStopsWhileParsing() throws Exception {
+        for (String mode : new String[]{"--parse-mode=sequential", "--parse-mode=concurrent", "--parse-mode=overlap", "--tape"}) {
+            CancellationToken token = new CancellationToken();
+            token.cancel();
+            Path out = dir.resolve("report.csv");
+
+            new RuleDiff().execute(token, mode, "--out=" + out);
+
+            assertThat(Files.readAllLines(out)).as(mode).containsExactly(
+                    "\"Category\",\"Path\",\"pre_login_SG_rule.json\",\"pre_login_IPB_rule.json\",\"Details\"",
+                    "\"Truncated\",\"\",\"\",\"\",\"Report truncated: cancelled\"");
+        }
+    }
+
+    @Test
+    void equalCheckOutOfTimeIsUndecided() throws Exception {
+        CancellationToken token = new CancellationToken();
+        token.cancel();
+        assertThat(new RuleDiff().execute(token, "--equal")).isEqualTo(RuleDiff.UNDECIDED);
+    }
+
+    @Test
+    void generousBudgetChangesNothing() throws Exception {
+        Path limited = dir.resolve("limited.csv");
+        Path unlimited = dir.resolve("unlimited.csv");
+        new RuleDiff().execute("--max-time=60000", "--out=" + limited);
+        new RuleDiff().execute("--out=" + unlimited);
+        List<String> rows = Files.readAllLines(limited);
+        assertThat(rows).hasSizeGreaterThan(1000).isEqualTo(Files.readAllLines(unlimited));
+    }
+}
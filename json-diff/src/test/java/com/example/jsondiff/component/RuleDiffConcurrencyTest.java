@@ -0,0 +1,79 @@
+package com.example.jsondiff.component;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Concurrent execute calls on one {@link RuleDiff} instance, across parse modes and output paths, must write
+ * the same reports as sequential calls.
+ */
+class RuleDiffConcurrencyTest {
+
+    private static final String[][] OPTION_SETS = {
+            {"--parse-mode=sequential"},
+            {"--parse-mode=overlap"},
+            {"--parse-mode=concurrent", "--no-moves"},
+            {"--pipeline"},
+            {"--tape"},
+            {"--sort=path"},
+    };
+    private static final int THREADS = 6;
+    private static final int RUNS = 24;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void concurrentRunsWriteTheSequentialReports() throws Exception {
+        RuleDiff ruleDiff = new RuleDiff();
+        List<byte[]> expected = new ArrayList<>();
+        for (int k = 0; k < OPTION_SETS.length; k++) {
+            expected.add(run(ruleDiff, k, dir.resolve("sequential-" + k + ".csv")));
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<byte[]>> results = new ArrayList<>();
+            for (int i = 0; i < RUNS; i++) {
+                int k = i % OPTION_SETS.length;
+                Path out = dir.resolve("concurrent-" + i + ".csv");
+                results.add(pool.submit(() -> {
+                    start.await();
+                    return run(ruleDiff, k, out);
+                }));
+            }
+            start.countDown();
+            for (int i = 0; i < RUNS; i++) {
+                int k = i % OPTION_SETS.length;
+                assertThat(results.get(i).get(5, TimeUnit.MINUTES))
+                        .as("run %d with %s", i, String.join(" ", OPTION_SETS[k]))
+                        .isEqualTo(expected.get(k));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /** One run on the bundled pre_login files; returns its report. */
+    private static byte[] run(RuleDiff ruleDiff, int optionSet, Path out) throws Exception {
+        List<String> args = new ArrayList<>(List.of(OPTION_SETS[optionSet]));
+        args.add("--out=" + out);
+        ruleDiff.execute(args.toArray(new String[0]));
+        byte[] report = Files.readAllBytes(out);
+        assertThat(report).isNotEmpty();
+        return report;
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.jsondiff.component;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Input resolution: an existing file that cannot be read is an error with its cause, not a missing resource.
+ */
+class RuleDiffInputTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void truncatedGzipReportsTheReadError() throws Exception {
+        byte[] gz = gzip(resource("pre_login_SG_rule.json"));
+        Path truncated = dir.resolve("truncated.json.gz");
+        Files.write(truncated, Arrays.copyOf(gz, gz.length / 2));
+
+        assertThatThrownBy(() -> new RuleDiff().execute(truncated.toString(), "pre_login_IPB_rule.json",
+                "--parse-mode=sequential", "--out=" + dir.resolve("report.csv")))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("Failed to read " + truncated)
+                .hasRootCauseInstanceOf(EOFException.class);
+    }
+
+    @Test
+    void malformedFileIsNotReportedAsMissing() throws Exception {
+        Path malformed = dir.resolve("malformed.json");
+        Files.writeString(malformed, "{\"a\":");
+
+        for (String mode : new String[]{"--parse-mode=sequential", "--tape"}) {
+            assertThatThrownBy(() -> new RuleDiff().execute(malformed.toString(), "pre_login_IPB_rule.json",
+                    mode, "--out=" + dir.resolve("report.csv")))
+                    .as(mode)
+                    .isInstanceOf(IOException.class)
+                    .hasMessageContaining("Failed to read " + malformed)
+                    .hasMessageNotContaining("Resource not found");
+        }
+    }
+
+    @Test
+    void missingFileFallsBackToTheClasspath() throws Exception {
+        Path out = dir.resolve("report.csv");
+        new RuleDiff().execute("pre_login_SG_rule.json", "pre_login_IPB_rule.json", "--out=" + out);
+        assertThat(Files.readString(out)).startsWith("\"Category\",\"Path\"");
+    }
+
+    private static byte[] resource(String name) throws IOException {
+        try (InputStream in = RuleDiffInputTest.class.getClassLoader().getResourceAsStream(name)) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(data);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.jsondiff.component;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * --tape reads the inputs through JsonTape views; the report must be the one the node tree path writes.
+ */
+class RuleDiffTapeTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void tapeReportMatchesTreeReport() throws Exception {
+        String[][] pairs = {
+                {"pre_login_SG_rule.json", "pre_login_IPB_rule.json"},
+                {"Rule_SG.json", "Rule_IPB.json"},
+                {"Feature_SG.json", "Feature_IPB.json"}
+        };
+        for (String[] pair : pairs) {
+            Path tree = dir.resolve("tree.csv");
+            Path tape = dir.resolve("tape.csv");
+            new RuleDiff().execute(pair[0], pair[1], "--out=" + tree);
+            new RuleDiff().execute(pair[0], pair[1], "--tape", "--out=" + tape);
+            assertThat(Files.readString(tape)).as(pair[0]).isEqualTo(Files.readString(tree));
+        }
+    }
+
+    @Test
+    void tapeAnswersEqualityLikeTheTree() throws Exception {
+        assertThat(new RuleDiff().execute("Rule_SG.json", "Rule_SG.json", "--equal", "--tape"))
+                .isEqualTo(RuleDiff.EQUAL);
+        assertThat(new RuleDiff().execute("Rule_SG.json", "Rule_IPB.json", "--equal", "--tape"))
+                .isEqualTo(new RuleDiff().execute("Rule_SG.json", "Rule_IPB.json", "--equal"));
+    }
+
+    @Test
+    void tapeIsRejectedWithProjection() {
+        assertThatThrownBy(() -> new RuleDiff().execute("Rule_SG.json", "Rule_IPB.json", "--tape",
+                "--only=BusinessRules", "--out=" + dir.resolve("report.csv")))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("--only");
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.jsondiff.component;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Sharding with a launcher that runs each worker's RuleDiff in this JVM: the keys each shard is given, and the
+ * merged report against a single run.
+ */
+class ShardedDiffTest {
+
+    @TempDir
+    Path dir;
+
+    // Worker arguments by shard
+    private final Map<Integer, List<String>> launched = new TreeMap<>();
+
+    @Test
+    void largestKeysGoToTheLeastLoadedShard() throws Exception {
+        // Value sizes 400 > 300 > 200 > 100 > 50 bytes per side
+        Path left = input("left.json", "Feature", new int[]{400, 300, 200, 100, 50}, 'a');
+        Path right = input("right.json", "Feature", new int[]{400, 300, 200, 100, 50}, 'b');
+        Path merged = dir.resolve("merged.csv");
+
+        new ShardedDiff(this::inProcess).execute(left.toString(), right.toString(), "--shards=2", "--no-moves",
+                "--align-key=Feature.k1=id", "--out=" + merged);
+
+        // k1 -> 0, k2 -> 1, k3 -> 1 (300 < 400), k4 -> 0 (400 < 500), k5 -> 0 (500 = 500: first shard); sorted
+        assertThat(launched).hasSize(2);
+        assertThat(only(launched.get(0))).containsExactly("Feature.k1", "Feature.k4", "Feature.k5");
+        assertThat(only(launched.get(1))).containsExactly("Feature.k2", "Feature.k3");
+        for (List<String> args : launched.values()) {
+            assertThat(args.subList(0, 2)).containsExactly(left.toString(), right.toString());
+            assertThat(args).contains("--no-moves", "--align-key=Feature.k1=id").noneMatch(a -> a.startsWith("--shards"));
+        }
+
+        Path single = dir.resolve("single.csv");
+        new RuleDiff().execute(left.toString(), right.toString(), "--no-moves", "--align-key=Feature.k1=id",
+                "--out=" + single);
+        assertThat(Files.readString(merged)).isEqualTo(Files.readString(single));
+    }
+
+    @Test
+    void noMoreShardsThanKeys() throws Exception {
+        Path left = input("left.json", "BusinessRules", new int[]{10, 20}, 'a');
+        Path right = input("right.json", "BusinessRules", new int[]{10, 20}, 'a');
+        new ShardedDiff(this::inProcess).execute(left.toString(), right.toString(), "--shards=8",
+                "--out=" + dir.resolve("merged.csv"));
+        assertThat(launched).hasSize(2);
+        assertThat(only(launched.get(0))).containsExactly("BusinessRules.k2");
+        assertThat(only(launched.get(1))).containsExactly("BusinessRules.k1");
+    }
+
+    @Test
+    void keysAProjectionCannotNameLeaveOneUnsplitShard() throws Exception {
+        Path left = Files.writeString(dir.resolve("left.json"), "{\"Feature\":{\"a.b\":1,\"c\":2}}");
+        Path right = Files.writeString(dir.resolve("right.json"), "{\"Feature\":{\"a.b\":1,\"c\":3}}");
+        Path merged = dir.resolve("merged.csv");
+        new ShardedDiff(this::inProcess).execute(left.toString(), right.toString(), "--shards=4", "--out=" + merged);
+
+        assertThat(launched).hasSize(1);
+        assertThat(only(launched.get(0))).isEmpty();
+        Path single = dir.resolve("single.csv");
+        new RuleDiff().execute(left.toString(), right.toString(), "--out=" + single);
+        assertThat(Files.readString(merged)).isEqualTo(Files.readString(single));
+    }
+
+    @Test
+    void failedWorkerFailsTheRun() throws Exception {
+        Path left = input("left.json", "Feature", new int[]{10, 20}, 'a');
+        ShardedDiff.WorkerLauncher failing = (shard, args, log) -> exited(shard == 1 ? 3 : 0);
+        assertThatThrownBy(() -> new ShardedDiff(failing).execute(left.toString(), left.toString(),
+                "--shards=2", "--shard-dir=" + dir.resolve("shards"), "--out=" + dir.resolve("merged.csv")))
+                .hasMessageStartingWith("Shard 1 failed with exit code 3");
+    }
+
+    /** The merge writes path order; another order is refused before any worker starts. */
+    @Test
+    void sortIsRejected() {
+        for (String sort : new String[]{"--sort=path", "--sort=category"}) {
+            assertThatThrownBy(() -> new ShardedDiff(this::inProcess).execute("Rule_SG.json", "Rule_IPB.json", sort))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage("--sort is not supported with sharding");
+        }
+        assertThat(launched).isEmpty();
+    }
+
+    private Process inProcess(int shard, List<String> args, Path log) {
+        launched.put(shard, args);
+        try {
+            new RuleDiff().execute(args.toArray(String[]::new));
+            return exited(0);
+        } catch (Exception e) {
+            throw new AssertionError("Shard " + shard + " failed", e);
+        }
+    }
+
+    private static List<String> only(List<String> args) {
+        List<String> keys = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--only=")) keys.add(arg.substring("--only=".length()));
+        }
+        return keys;
+    }
+
+    /** {"&lt;wrapper&gt;":{"k1":{"id":1,"v":"..."},...}} with values of about the given sizes. */
+    private Path input(String name, String wrapper, int[] sizes, char fill) throws Exception {
+        StringBuilder sb = new StringBuilder("{\"").append(wrapper).append("\":{");
+        for (int i = 0; i < sizes.length; i++) {
+            if (i > 0) sb.append(',');
+            sb.append("\"k").append(i + 1).append("\":{\"id\":").append(i).append(",\"v\":\"")
+                    .append(String.valueOf(fill).repeat(sizes[i])).append("\"}");
+        }
+        return Files.writeString(dir.resolve(name), sb.append("}}"), StandardCharsets.UTF_8);
+    }
+
+    private static Process exited(int code) {
+        return new Process() {
+            @Override
+            public OutputStream getOutputStream() {
+                return OutputStream.nullOutputStream();
+            }
+
+            @Override
+            public InputStream getInputStream() {
+                return InputStream.nullInputStream();
+            }
+
+            @Override
+            public InputStream getErrorStream() {
+                return InputStream.nullInputStream();
+            }
+
+            @Override
+            public int waitFor() {
+                return code;
+            }
+
+            @Override
+            public int exitValue() {
+                return code;
+            }
+
+            @Override
+            public boolean isAlive() {
+                return false;
+            }
+
+            @Override
+            public void destroy() {
+            }
+        };
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.jsondiff.engine;
+
+import com.example.jsondiff.util.ArrayItemMatcher;
+import com.example.jsondiff.util.DiffOptions;
+import com.example.jsondiff.util.JsonMappers;
+import com.example.jsondiff.util.JsonTrees;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 10,000 levels of keyless arrays of objects: parsing, equality, matching, diffing and rendering must not
+ * overflow the thread stack.
+ */
+class DeepNestingTest {
+
+    private static final int DEPTH = 10_000;
+
+    private final ObjectMapper mapper = JsonMappers.newMapper();
+
+    @Test
+    void deepKeylessArraysDifferingAtTheLeaf() throws Exception {
+        JsonNode left = mapper.readTree("{\"A\":" + nested(DEPTH, 1) + "}");
+        JsonNode right = mapper.readTree("{\"A\":" + nested(DEPTH, 2) + "}");
+
+        assertThat(JsonTrees.equal(left, mapper.readTree("{\"A\":" + nested(DEPTH, 1) + "}"))).isTrue();
+        assertThat(JsonTrees.equal(left, right)).isFalse();
+
+        // The equal item is found at another index; the changed one is paired by similarity
+        ArrayNode items = mapper.createArrayNode().add(left.get("A").get(0)).add(right.get("A").get(0));
+        ArrayNode reversed = mapper.createArrayNode().add(right.get("A").get(0)).add(left.get("A").get(0));
+        assertThat(ArrayItemMatcher.match(items, reversed).rightOf).containsExactly(1, 0);
+
+        List<String> modified = new ArrayList<>();
+        int[] present = {0};
+        new DiffEngine().diff(left, right, DiffOptions.parse(), new CancellationToken(), new DiffListener() {
+            @Override
+            public void onPresent(String path, DiffValue l, DiffValue r) {
+                present[0]++;
+            }
+
+            @Override
+            public void onModified(String path, DiffValue l, DiffValue r, String details) {
+                modified.add(l + " -> " + r);
+            }
+        });
+        assertThat(modified).containsExactly("1 -> 2");
+        assertThat(present[0]).isGreaterThan(2 * DEPTH);
+    }
+
+    @Test
+    void deepMissingSubtreeRendersInFull() throws Exception {
+        String subtree = nested(DEPTH, 1);
+        JsonNode left = mapper.readTree("{\"A\":1,\"B\":" + subtree + "}");
+        JsonNode right = mapper.readTree("{\"A\":1}");
+
+        List<String> missing = new ArrayList<>();
+        new DiffEngine().diff(left, right, DiffOptions.parse(), new CancellationToken(), new DiffListener() {
+            @Override
+            public void onMissing(String path, DiffValue l, DiffValue r) {
+                missing.add(path + "=" + l.text());
+            }
+        });
+        assertThat(missing).containsExactly("B=" + subtree);
+        assertThat(JsonTrees.writePretty(mapper, left.get("B"))).startsWith("[ {").endsWith("} ]");
+    }
+
+    /** depth levels of [{"x":level,"c":[...]}], innermost {"x":leaf}. */
+    private static String nested(int depth, int leaf) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < depth; i++) sb.append("[{\"x\":").append(i % 3).append(",\"c\":");
+        sb.append("{\"x\":").append(leaf).append('}');
+        for (int i = 0; i < depth; i++) sb.append("}]");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.jsondiff.engine;
+
+import com.example.jsondiff.util.DiffOptions;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DiffBudgetTest {
+
+    @Test
+    void bareMaxTimeIsMilliseconds() throws InterruptedException {
+        DiffBudget budget = DiffBudget.fromOptions(DiffOptions.parse("--max-time=20"), null);
+        Thread.sleep(50);
+
+        assertThat(budget.isExpired()).isTrue();
+        assertThat(budget.isTruncated()).isFalse();
+        assertThat(budget.checkExpired()).isTrue();
+        assertThat(budget.getTruncatedReason()).isEqualTo("time budget 20ms exceeded");
+    }
+
+    @Test
+    void suffixesStillApply() {
+        assertThat(DiffBudget.fromOptions(DiffOptions.parse("--max-time=20s"), null).checkExpired()).isFalse();
+        assertThat(DiffBudget.fromOptions(DiffOptions.parse("--max-time=1m"), null).checkExpired()).isFalse();
+    }
+
+    @Test
+    void cancellationExpiresTheBudget() {
+        CancellationToken token = new CancellationToken();
+        DiffBudget budget = DiffBudget.fromOptions(DiffOptions.parse(), token);
+        assertThat(budget.isExpired()).isFalse();
+
+        token.cancel();
+
+        assertThat(budget.isExpired()).isTrue();
+        assertThat(budget.checkExpired()).isTrue();
+        assertThat(budget.getTruncatedReason()).isEqualTo("cancelled");
+    }
+}
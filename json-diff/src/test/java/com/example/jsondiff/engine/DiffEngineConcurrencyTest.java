@@ -0,0 +1,118 @@
+package com.example.jsondiff.engine;
+
+import com.example.jsondiff.util.DiffOptions;
+import com.example.jsondiff.util.JsonMappers;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * One shared {@link DiffEngine} driven from many threads must report exactly what sequential diffs report.
+ */
+class DiffEngineConcurrencyTest {
+
+    private static final String[][] OPTION_SETS = {
+            {},
+            {"--no-moves"},
+            {"--scalar-mode=numeric"},
+            {"--max-rows=500"},
+    };
+    private static final int THREADS = 8;
+    private static final int DIFFS = 64;
+
+    private static JsonNode left;
+    private static JsonNode right;
+
+    @BeforeAll
+    static void load() throws IOException {
+        ObjectMapper mapper = JsonMappers.newMapper();
+        left = read(mapper, "pre_login_SG_rule.json");
+        right = read(mapper, "pre_login_IPB_rule.json");
+    }
+
+    @Test
+    void concurrentDiffsMatchSequentialOnes() throws Exception {
+        DiffEngine engine = new DiffEngine();
+        List<List<String>> expected = new ArrayList<>();
+        for (String[] options : OPTION_SETS) expected.add(diff(engine, options));
+        assertThat(expected.get(0)).hasSizeGreaterThan(1000);
+        assertThat(expected.get(3)).last().asString().startsWith("Truncated");
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<List<String>>> results = new ArrayList<>();
+            for (int i = 0; i < DIFFS; i++) {
+                String[] options = OPTION_SETS[i % OPTION_SETS.length];
+                results.add(pool.submit(() -> {
+                    start.await();
+                    return diff(engine, options);
+                }));
+            }
+            start.countDown();
+            for (int i = 0; i < DIFFS; i++) {
+                assertThat(results.get(i).get(2, TimeUnit.MINUTES))
+                        .as("diff %d with %s", i, String.join(" ", OPTION_SETS[i % OPTION_SETS.length]))
+                        .isEqualTo(expected.get(i % OPTION_SETS.length));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /** Every event of one diff as a line, in report order. */
+    private static List<String> diff(DiffEngine engine, String[] options) {
+        List<String> events = new ArrayList<>();
+        engine.diff(left, right, DiffOptions.parse(options), new CancellationToken(), new DiffListener() {
+            @Override
+            public void onPresent(String path, DiffValue l, DiffValue r) {
+                events.add("Present " + path + " " + l + " " + r);
+            }
+
+            @Override
+            public void onMissing(String path, DiffValue l, DiffValue r) {
+                events.add("Missing " + path + " " + l + " " + r);
+            }
+
+            @Override
+            public void onModified(String path, DiffValue l, DiffValue r, String details) {
+                events.add("Modified " + path + " " + l + " " + r + " " + details);
+            }
+
+            @Override
+            public void onTypeMismatch(String path, DiffValue l, DiffValue r) {
+                events.add("TypeMismatch " + path + " " + l + " " + r);
+            }
+
+            @Override
+            public void onMoved(String path, int fromIndex, int toIndex) {
+                events.add("Moved " + path + " " + fromIndex + " " + toIndex);
+            }
+
+            @Override
+            public void onTruncated(String reason) {
+                events.add("Truncated " + reason);
+            }
+        });
+        return events;
+    }
+
+    private static JsonNode read(ObjectMapper mapper, String resource) throws IOException {
+        try (InputStream in = DiffEngineConcurrencyTest.class.getClassLoader().getResourceAsStream(resource)) {
+            return mapper.readTree(in);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.jsondiff.engine;
+
+import com.example.jsondiff.model.DiffEntry;
+import com.example.jsondiff.model.DiffType;
+import com.example.jsondiff.util.DiffOptions;
+import com.example.jsondiff.util.JsonMappers;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A subscriber that requests by hand, against a diff of many changed fields; the diff runs on a thread the
+ * test can watch.
+ */
+class DiffPublisherTest {
+
+    private static final int FIELDS = 1_000;
+    private static final int WINDOW = 4;
+
+    private final ObjectMapper mapper = JsonMappers.newMapper();
+    private Thread producer;
+
+    @Test
+    void producerWaitsAtTheWindow() throws Exception {
+        Recorder subscriber = subscribe(DiffOptions.parse());
+        assertBlockedInOffer();
+        assertThat(subscriber.events).isEmpty();
+
+        subscriber.subscription.request(1);
+        assertThat(subscriber.next()).extracting(DiffEntry::getPath).isEqualTo("f0");
+        // The slot freed is filled again, and no further
+        assertBlockedInOffer();
+        subscriber.subscription.request(2);
+        assertThat(subscriber.next()).extracting(DiffEntry::getPath).isEqualTo("f1");
+        assertThat(subscriber.next()).extracting(DiffEntry::getPath).isEqualTo("f10");
+        assertBlockedInOffer();
+        assertThat(subscriber.events).isEmpty();
+
+        subscriber.subscription.request(Long.MAX_VALUE);
+        List<DiffEntry> rest = new ArrayList<>();
+        for (int i = 3; i < FIELDS; i++) rest.add(subscriber.next());
+        assertThat(rest).allSatisfy(e -> {
+            assertThat(e.getType()).isEqualTo(DiffType.CHANGED);
+            assertThat(e.getDetails()).isEqualTo("Value mismatch");
+        });
+        assertThat(subscriber.poll()).isEqualTo(Recorder.COMPLETE);
+        producer.join(5_000);
+        assertThat(producer.isAlive()).isFalse();
+    }
+
+    @Test
+    void nonPositiveRequestFailsTheSubscription() throws Exception {
+        Recorder subscriber = subscribe(DiffOptions.parse());
+        subscriber.subscription.request(2);
+        subscriber.next();
+        subscriber.next();
+        assertBlockedInOffer();
+
+        subscriber.subscription.request(0);
+        assertThat(subscriber.poll()).isInstanceOf(IllegalArgumentException.class)
+                .extracting(e -> ((Throwable) e).getMessage()).isEqualTo("request must be positive: 0");
+        producer.join(5_000);
+        assertThat(producer.isAlive()).isFalse();
+        // Terminated: later demand delivers nothing
+        subscriber.subscription.request(10);
+        assertThat(subscriber.events.poll(100, TimeUnit.MILLISECONDS)).isNull();
+    }
+
+    @Test
+    void cancelStopsTheDiff() throws Exception {
+        Recorder subscriber = subscribe(DiffOptions.parse());
+        subscriber.subscription.request(5);
+        for (int i = 0; i < 5; i++) subscriber.next();
+
+        subscriber.subscription.cancel();
+        producer.join(5_000);
+        assertThat(producer.isAlive()).isFalse();
+        // Neither entries nor a terminal signal after cancel, whatever is requested
+        subscriber.subscription.request(100);
+        assertThat(subscriber.events.poll(100, TimeUnit.MILLISECONDS)).isNull();
+    }
+
+    @Test
+    void truncatedDiffEndsWithCancellationException() throws Exception {
+        Recorder subscriber = subscribe(DiffOptions.parse("--max-rows=10"));
+        subscriber.subscription.request(Long.MAX_VALUE);
+        int entries = 0;
+        Object event;
+        while ((event = subscriber.poll()) instanceof DiffEntry) entries++;
+
+        assertThat(entries).isBetween(1, 10);
+        assertThat(event).isInstanceOf(CancellationException.class)
+                .extracting(e -> ((Throwable) e).getMessage()).isEqualTo("Report truncated: max rows 10 reached");
+    }
+
+    /** {"f0":0,...} against {"f0":1,...}: one CHANGED entry per field, in path order. */
+    private Recorder subscribe(DiffOptions opts) throws Exception {
+        StringBuilder l = new StringBuilder("{");
+        StringBuilder r = new StringBuilder("{");
+        for (int i = 0; i < FIELDS; i++) {
+            String sep = i > 0 ? "," : "";
+            l.append(sep).append("\"f").append(i).append("\":").append(i);
+            r.append(sep).append("\"f").append(i).append("\":").append(i + 1);
+        }
+        JsonNode left = mapper.readTree(l.append('}').toString());
+        JsonNode right = mapper.readTree(r.append('}').toString());
+        Executor watched = task -> {
+            producer = new Thread(task, "diff-publisher-test");
+            producer.setDaemon(true);
+            producer.start();
+        };
+        Recorder subscriber = new Recorder();
+        new DiffPublisher(new DiffEngine(), left, right, opts, WINDOW, watched).subscribe(subscriber);
+        return subscriber;
+    }
+
+    /** Waits until the diff thread parks in offer with the window full. */
+    private void assertBlockedInOffer() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (System.nanoTime() < deadline) {
+            if (producer.getState() == Thread.State.WAITING && inOffer(producer.getStackTrace())) return;
+            Thread.sleep(5);
+        }
+        throw new AssertionError("Diff thread not waiting in offer: " + producer.getState());
+    }
+
+    private static boolean inOffer(StackTraceElement[] stack) {
+        for (StackTraceElement frame : stack) {
+            if (frame.getClassName().endsWith("DiffPublisher$DiffSubscription") && frame.getMethodName().equals("offer")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Records every signal; requests nothing by itself. */
+    private static final class Recorder implements Flow.Subscriber<DiffEntry> {
+        static final Object COMPLETE = "complete";
+        final LinkedBlockingQueue<Object> events = new LinkedBlockingQueue<>();
+        volatile Flow.Subscription subscription;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(DiffEntry item) {
+            events.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            events.add(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            events.add(COMPLETE);
+        }
+
+        Object poll() throws InterruptedException {
+            Object event = events.poll(5, TimeUnit.SECONDS);
+            if (event == null) throw new AssertionError("No signal within 5 s");
+            return event;
+        }
+
+        DiffEntry next() throws InterruptedException {
+            Object event = poll();
+            assertThat(event).isInstanceOf(DiffEntry.class);
+            return (DiffEntry) event;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.jsondiff.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AlignmentKeyResolverTest {
+
+    private final ObjectMapper mapper = JsonMappers.newMapper();
+
+    /** An empty first array at a path must not pin index alignment for the keyed arrays after it. */
+    @Test
+    void emptyFirstArrayDoesNotCacheIndexAlignment() throws Exception {
+        for (boolean learn : new boolean[]{false, true}) {
+            AlignmentKeyResolver resolver = new AlignmentKeyResolver(AlignmentKeyResolver.DEFAULT_CANDIDATES,
+                    Map.of(), learn);
+            assertThat(resolver.resolve("rules[0].conditions", array("[]"), array("[]"))).isNull();
+            assertThat(resolver.resolve("rules[1].conditions", array("[{\"id\":1}]"), array("[{\"id\":2},{\"id\":1}]")))
+                    .as("learn=%s", learn).isEqualTo("id");
+            // The key found is cached for the rest of the path's arrays
+            assertThat(resolver.resolve("rules[2].conditions", array("[]"), array("[]"))).isEqualTo("id");
+            assertThat(resolver.getCacheHits()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void arraysWithoutCandidatesAreDecidedOneByOne() throws Exception {
+        AlignmentKeyResolver resolver = new AlignmentKeyResolver(AlignmentKeyResolver.DEFAULT_CANDIDATES,
+                Map.of(), false);
+        assertThat(resolver.resolve("a[0].list", array("[{\"x\":1}]"), array("[{\"x\":2}]"))).isNull();
+        assertThat(resolver.resolve("a[1].list", array("[{\"code\":\"k\"}]"), array("[]"))).isEqualTo("code");
+    }
+
+    @Test
+    void configuredIndexAlignmentIsKept() throws Exception {
+        AlignmentKeyResolver resolver = new AlignmentKeyResolver(AlignmentKeyResolver.DEFAULT_CANDIDATES,
+                Map.of("a.list", AlignmentKeyResolver.INDEX), false);
+        assertThat(resolver.resolve("a.list", array("[{\"id\":1}]"), array("[{\"id\":1}]"))).isNull();
+        assertThat(resolver.resolve("a.list", array("[{\"id\":1}]"), array("[{\"id\":1}]"))).isNull();
+        assertThat(resolver.getCacheHits()).isEqualTo(1);
+    }
+
+    /** Learned on enough items, index alignment is a decision and cached. */
+    @Test
+    void learnedIndexAlignmentIsCached() throws Exception {
+        AlignmentKeyResolver resolver = new AlignmentKeyResolver(AlignmentKeyResolver.DEFAULT_CANDIDATES,
+                Map.of(), true);
+        assertThat(resolver.resolve("a[0].list", array("[{\"x\":1},{\"x\":1}]"), array("[{\"x\":1},{\"x\":1}]")))
+                .isNull();
+        assertThat(resolver.resolve("a[1].list", array("[{\"id\":1}]"), array("[{\"id\":1}]"))).isNull();
+        assertThat(resolver.getCacheHits()).isEqualTo(1);
+    }
+
+    @Test
+    void normalizeStripsSelectors() {
+        assertThat(AlignmentKeyResolver.normalize("a.list[id=3].items[0]")).isEqualTo("a.list.items");
+        assertThat(AlignmentKeyResolver.normalize("plain.path")).isEqualTo("plain.path");
+        assertThat(AlignmentKeyResolver.normalize("[0].a[1][2]")).isEqualTo(".a");
+        // Nested brackets inside a selector, a stray closing bracket, an unclosed selector
+        assertThat(AlignmentKeyResolver.normalize("a[name=x[1]].b")).isEqualTo("a.b");
+        assertThat(AlignmentKeyResolver.normalize("a]b[0].c")).isEqualTo("a]b.c");
+        assertThat(AlignmentKeyResolver.normalize("a.b[id=1")).isEqualTo("a.b");
+    }
+
+    /** Nested arrays reuse the parent's normalized path; the result must be the one normalize gives. */
+    @Test
+    void nestedPathsNormalizeLikeWholePaths() throws Exception {
+        AlignmentKeyResolver resolver = new AlignmentKeyResolver(AlignmentKeyResolver.DEFAULT_CANDIDATES,
+                Map.of("a.b", "k1", "a.b.c", "k2", "x]y.z", "k3", "q.r", "k4"), false);
+        ArrayNode empty = array("[]");
+        assertThat(resolver.resolve("a[0].b", empty, empty)).isEqualTo("k1");
+        assertThat(resolver.resolve("a[0].b[id=1].c", empty, empty)).isEqualTo("k2");
+        assertThat(resolver.resolve("x]y[0].z", empty, empty)).isEqualTo("k3");
+        // Ends inside a selector: the next path is normalized whole
+        assertThat(resolver.resolve("q[1", empty, empty)).isNull();
+        assertThat(resolver.resolve("q[1].r", empty, empty)).isEqualTo("k4");
+    }
+
+    private ArrayNode array(String json) throws Exception {
+        return (ArrayNode) mapper.readTree(json);
+    }
+}
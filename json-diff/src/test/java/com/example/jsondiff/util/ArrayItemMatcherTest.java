@@ -0,0 +1,85 @@
+package com.example.jsondiff.util;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ArrayItemMatcherTest {
+
+    private static final JsonNodeFactory NODES = JsonNodeFactory.instance;
+
+    @Test
+    void movedItemsArePairedAcrossIndexes() {
+        ArrayNode left = NODES.arrayNode();
+        ArrayNode right = NODES.arrayNode();
+        for (int i = 0; i < 100; i++) left.add(record(i));
+        for (int i = 99; i >= 0; i--) right.add(record(i).put("changed", true));
+
+        ArrayItemMatcher.Pairing pairing = ArrayItemMatcher.match(left, right);
+
+        for (int i = 0; i < 100; i++) assertThat(pairing.rightOf[i]).as("left %d", i).isEqualTo(99 - i);
+    }
+
+    /** Near-identical items share their band buckets; items matched earlier must not hide the rest. */
+    @Test
+    void degenerateBucketsStillPairEveryItem() {
+        int n = 20_000;
+        ArrayNode left = NODES.arrayNode();
+        ArrayNode right = NODES.arrayNode();
+        for (int i = 0; i < n; i++) {
+            right.add(item(i));
+            left.add(item(i).put("x", i));
+        }
+
+        ArrayItemMatcher.Pairing pairing = ArrayItemMatcher.match(left, right);
+
+        for (int i = 0; i < n; i++) assertThat(pairing.rightOf[i]).isEqualTo(i);
+    }
+
+    /** Many equal items out of step: each takes the first equal right item still free, in index order. */
+    @Test
+    void duplicatesPairInIndexOrder() {
+        int n = 100_000;
+        ArrayNode left = NODES.arrayNode();
+        ArrayNode right = NODES.arrayNode();
+        for (int i = 0; i < n; i++) {
+            left.addObject().put("v", i % 2 == 0 ? "d" : "e");
+            right.addObject().put("v", i % 2 == 0 ? "e" : "d");
+        }
+        // One more "d" on the left than the right holds
+        left.addObject().put("v", "d");
+
+        ArrayItemMatcher.Pairing pairing = ArrayItemMatcher.match(left, right);
+
+        for (int i = 0; i < n; i++) assertThat(pairing.rightOf[i]).as("left %d", i).isEqualTo(i % 2 == 0 ? i + 1 : i - 1);
+        assertThat(pairing.rightOf[n]).isEqualTo(-1);
+    }
+
+    /** A stop answering true cuts the search short; leftovers are still index-aligned. */
+    @Test
+    void stoppedMatchFallsBackToIndexes() {
+        ArrayNode left = NODES.arrayNode();
+        ArrayNode right = NODES.arrayNode();
+        for (int i = 0; i < 5_000; i++) left.add(record(i));
+        for (int i = 4_999; i >= 0; i--) right.add(record(i));
+        int[] polls = {0};
+
+        ArrayItemMatcher.Pairing pairing = ArrayItemMatcher.match(left, right, () -> ++polls[0] > 0);
+
+        assertThat(polls[0]).isEqualTo(1);
+        for (int i = 0; i < 5_000; i++) assertThat(pairing.rightOf[i]).isEqualTo(i);
+    }
+
+    private static ObjectNode record(int id) {
+        return NODES.objectNode().put("name", "n" + id).put("code", "c" + id).put("owner", "o" + id).put("kind", "k");
+    }
+
+    private static ObjectNode item(int id) {
+        ObjectNode item = NODES.objectNode();
+        for (int f = 0; f < 10; f++) item.put("f" + f, 1);
+        return item.put("id", id);
+    }
+}
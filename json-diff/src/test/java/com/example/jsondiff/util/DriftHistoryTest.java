@@ -0,0 +1,92 @@
+package com.example.jsondiff.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DriftHistoryTest {
+
+    @TempDir
+    Path dir;
+
+    /** Two writers opened on the same store before either commits: the second must not overwrite the first. */
+    @Test
+    void interleavedWritersAppendSeparateRuns() throws Exception {
+        DriftHistory a = DriftHistory.open(dir);
+        DriftHistory b = DriftHistory.open(dir);
+        DriftHistory.RunWriter runA = a.newRun("left.json", "a.json");
+        DriftHistory.RunWriter runB = b.newRun("left.json", "b.json");
+        List<String[]> rowsA = rows("a", 3);
+        List<String[]> rowsB = rows("b", 4);
+        rowsA.forEach(runA::add);
+        rowsB.forEach(runB::add);
+
+        assertThat(runA.commit().id()).isZero();
+        DriftHistory.Run second = runB.commit();
+        assertThat(second.id()).isEqualTo(1);
+        assertThat(runB.getNewPaths()).isEqualTo(4);
+
+        DriftHistory reopened = DriftHistory.open(dir);
+        assertThat(reopened.runs()).extracting(DriftHistory.Run::right).containsExactly("a.json", "b.json");
+        assertThat(reopened.rows(0)).containsExactlyElementsOf(rowsA);
+        assertThat(reopened.rows(1)).containsExactlyElementsOf(rowsB);
+        // shared + 3 a-only + 4 b-only paths
+        assertThat(reopened.pathCount()).isEqualTo(8);
+        assertThat(reopened.firstDivergence("Rules.b.3")).map(DriftHistory.Run::id).contains(1);
+        assertThat(reopened.firstDivergence("Rules.shared")).map(DriftHistory.Run::id).contains(0);
+    }
+
+    /** Writers in one JVM: file locks do not exclude each other's threads, the in-process lock must. */
+    @Test
+    void concurrentCommitsGetDistinctRuns() throws Exception {
+        int writers = 6;
+        ExecutorService pool = Executors.newFixedThreadPool(writers);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> ids = new ArrayList<>();
+        try {
+            for (int w = 0; w < writers; w++) {
+                String name = "w" + w;
+                ids.add(pool.submit(() -> {
+                    DriftHistory.RunWriter run = DriftHistory.open(dir).newRun("left.json", name);
+                    rows(name, 50).forEach(run::add);
+                    start.await();
+                    return run.commit().id();
+                }));
+            }
+            start.countDown();
+            List<Integer> committed = new ArrayList<>();
+            for (Future<Integer> id : ids) committed.add(id.get(30, TimeUnit.SECONDS));
+            assertThat(committed).containsExactlyInAnyOrder(0, 1, 2, 3, 4, 5);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        DriftHistory reopened = DriftHistory.open(dir);
+        assertThat(reopened.runs()).hasSize(writers);
+        for (DriftHistory.Run run : reopened.runs()) {
+            assertThat(reopened.rows(run.id())).as(run.right()).containsExactlyElementsOf(rows(run.right(), 50));
+        }
+        assertThat(reopened.pathCount()).isEqualTo(1 + writers * 50);
+    }
+
+    /** One row on a shared path, then n drift rows on paths and values of the writer's own. */
+    private static List<String[]> rows(String writer, int n) {
+        List<String[]> out = new ArrayList<>();
+        out.add(new String[]{"Missing", "Rules.shared", "1", "", ""});
+        for (int i = 0; i < n; i++) {
+            out.add(new String[]{"Modified", "Rules." + writer + "." + i, writer + "-l" + i, writer + "-r" + i,
+                    "changed"});
+        }
+        return out;
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.jsondiff.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Sorted output against List.sort (stable) on the same rows, in memory and with runs spilled every few rows.
+ */
+class ExternalRowSorterTest {
+
+    // Few distinct keys, so most rows tie and stability shows
+    private static final Comparator<String[]> BY_KEY = Comparator.comparing((String[] row) -> row[0]);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void spilledRunsMergeStably() throws Exception {
+        List<String[]> rows = rows(new Random(42), 5_000);
+        for (long runBytes : new long[]{1, 300, 10_000, Long.MAX_VALUE}) {
+            List<String[]> sorted = new ArrayList<>();
+            try (ExternalRowSorter sorter = new ExternalRowSorter(BY_KEY, runBytes, dir)) {
+                for (String[] row : rows) sorter.add(row);
+                sorter.finish(sorted::add);
+                assertThat(sorter.getRows()).isEqualTo(rows.size());
+                if (runBytes == Long.MAX_VALUE) {
+                    assertThat(sorter.getRuns()).isZero();
+                    assertThat(sorter.getSpilledBytes()).isZero();
+                } else {
+                    assertThat(sorter.getRuns()).as("runs of %d bytes", runBytes).isGreaterThan(1);
+                }
+            }
+            assertThat(sorted).as("runs of %d bytes", runBytes).containsExactlyElementsOf(expected(rows));
+        }
+    }
+
+    @Test
+    void nullCellsComeBackEmptyEitherWay() throws Exception {
+        String[] withNulls = {"b", null, "x", null};
+        for (long runBytes : new long[]{1, Long.MAX_VALUE}) {
+            List<String[]> sorted = new ArrayList<>();
+            try (ExternalRowSorter sorter = new ExternalRowSorter(BY_KEY, runBytes, dir)) {
+                sorter.add(withNulls);
+                sorter.add(new String[]{"a", "", "\u00e9\u65e5", "\n,\""});
+                sorter.add(new String[]{"c"});
+                sorter.finish(sorted::add);
+            }
+            assertThat(sorted).as("runs of %d bytes", runBytes).containsExactly(
+                    new String[]{"a", "", "\u00e9\u65e5", "\n,\""},
+                    new String[]{"b", "", "x", ""},
+                    new String[]{"c"});
+        }
+        // The caller's row is left alone
+        assertThat(withNulls).containsExactly("b", null, "x", null);
+    }
+
+    @Test
+    void closeDeletesTheRuns() throws Exception {
+        try (ExternalRowSorter sorter = new ExternalRowSorter(BY_KEY, 1, dir)) {
+            for (String[] row : rows(new Random(7), 20)) sorter.add(row);
+            assertThat(runFiles()).hasSize(20);
+            sorter.finish(row -> { });
+            assertThat(runFiles()).hasSize(20);
+        }
+        assertThat(runFiles()).isEmpty();
+
+        // Also when the merge never ran (a failed report)
+        ExternalRowSorter abandoned = new ExternalRowSorter(BY_KEY, 1, dir);
+        abandoned.add(new String[]{"a"});
+        abandoned.close();
+        assertThat(runFiles()).isEmpty();
+    }
+
+    @Test
+    void finishesOnce() throws Exception {
+        try (ExternalRowSorter sorter = new ExternalRowSorter(BY_KEY, 64, dir)) {
+            sorter.finish(row -> { });
+            assertThatThrownBy(() -> sorter.add(new String[]{"a"})).isInstanceOf(IllegalStateException.class);
+            assertThatThrownBy(() -> sorter.finish(row -> { })).isInstanceOf(IllegalStateException.class);
+        }
+        assertThatThrownBy(() -> new ExternalRowSorter(BY_KEY, 0, dir)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    /** Key from a handful of values, the insertion index, and a cell of random length (some empty). */
+    private static List<String[]> rows(Random random, int n) {
+        List<String[]> rows = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            rows.add(new String[]{"k" + random.nextInt(12), String.valueOf(i), "v".repeat(random.nextInt(40))});
+        }
+        return rows;
+    }
+
+    private static List<String[]> expected(List<String[]> rows) {
+        List<String[]> sorted = new ArrayList<>(rows);
+        sorted.sort(BY_KEY);
+        return sorted;
+    }
+
+    private List<Path> runFiles() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(f -> f.getFileName().toString().startsWith("json-diff-sort-")).toList();
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.example.jsondiff.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.BigIntegerNode;
+import com.fasterxml.jackson.databind.node.DoubleNode;
+import com.fasterxml.jackson.databind.node.IntNode;
+import com.fasterxml.jackson.databind.node.LongNode;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tapes must read back as the trees ObjectMapper.readTree builds: same node types, values, field order and
+ * rendering, and the same documents rejected.
+ */
+class JsonTapeTest {
+
+    private final ObjectMapper mapper = JsonMappers.newMapper();
+
+    @Test
+    void duplicateFieldKeepsFirstPositionAndLastValue() throws Exception {
+        JsonNode root = sameAsReadTree("{\"a\":1,\"b\":2,\"a\":3,\"c\":{\"a\":1,\"a\":{\"x\":[1,{\"a\":1}]}}}");
+        assertThat(root.toString()).isEqualTo("{\"a\":3,\"b\":2,\"c\":{\"a\":{\"x\":[1,{\"a\":1}]}}}");
+        assertThat(root.size()).isEqualTo(3);
+    }
+
+    @Test
+    void escapesAndSurrogatesDecodeLikeJackson() throws Exception {
+        JsonNode root = sameAsReadTree("{\"c\":\"x\\\"y\\\\z\\u00e9\\ud83d\\ude00\\n/\\/\\b\\f\\r\\t\","
+                + "\"h\\u00e9\":\"h\u00E9llo \u00FC \u65E5\u672C \uD83D\uDE00\",\"e\":\"\"}");
+        assertThat(root.get("c").textValue()).isEqualTo("x\"y\\z\u00E9\uD83D\uDE00\n//\b\f\r\t");
+        assertThat(root.get("h\u00E9").textValue()).isEqualTo("h\u00E9llo \u00FC \u65E5\u672C \uD83D\uDE00");
+        assertThat(root.get("e").textValue()).isEmpty();
+    }
+
+    @Test
+    void numbersNarrowLikeReadTree() throws Exception {
+        JsonNode root = sameAsReadTree("[0, -0, 2147483647, 2147483648, -2147483649, 9223372036854775807,"
+                + " 9223372036854775808, 123456789012345678901234, 1.5, -0.0, 1e10, 1E-5, 3.0]");
+        assertThat(root.get(0)).isInstanceOf(IntNode.class);
+        assertThat(root.get(2)).isInstanceOf(IntNode.class);
+        assertThat(root.get(3)).isInstanceOf(LongNode.class);
+        assertThat(root.get(4)).isInstanceOf(LongNode.class);
+        assertThat(root.get(5)).isInstanceOf(LongNode.class);
+        assertThat(root.get(6)).isInstanceOf(BigIntegerNode.class);
+        assertThat(root.get(7)).isInstanceOf(BigIntegerNode.class);
+        for (int i = 8; i < root.size(); i++) assertThat(root.get(i)).isInstanceOf(DoubleNode.class);
+    }
+
+    @Test
+    void byteOrderMarkIsSkipped() throws Exception {
+        assertThat(sameAsReadTree("\ufeff{\"a\":1}").get("a").intValue()).isEqualTo(1);
+    }
+
+    @Test
+    void contentAfterTheFirstValueIsIgnored() throws Exception {
+        assertThat(sameAsReadTree("[1]x").size()).isEqualTo(1);
+        assertThat(sameAsReadTree("{} {").size()).isZero();
+        assertThat(sameAsReadTree("{\"a\":1} \"open").get("a").intValue()).isEqualTo(1);
+        // As Jackson: a root-level number must be followed by whitespace
+        assertThat(sameAsReadTree("42 x").intValue()).isEqualTo(42);
+        assertThat(JsonTape.parse(new byte[0]).root().isMissingNode()).isTrue();
+    }
+
+    @Test
+    void errorsNameTheByteOffset() {
+        assertRejected("{\"a\" 1}", "Expected ':' at byte 5");
+        assertRejected("[1,]", "Unrecognized token '' at byte 3");
+        assertRejected("{\"a\":1,}", "Expected a field name at byte 7");
+        assertRejected("[1 2]", "Expected ',' or ']' at byte 3");
+        assertRejected("truex", "Unrecognized token 'truex' at byte 0");
+        assertRejected("01", "Unrecognized token '01' at byte 0");
+        assertRejected("1x", "Unrecognized token '1x' at byte 0");
+        assertRejected("[\"a\\x\"]", "Invalid escape at byte 3");
+        assertRejected("[\"\\u12\"]", "Invalid unicode escape at byte 6");
+        assertRejected("[\"a\tb\"]", "Unescaped control character in string at byte 3");
+        assertRejected("\"abc", "Unterminated string at byte 0");
+        assertRejected("{", "Unexpected end of input");
+    }
+
+    @Test
+    void viewsLookUpFieldsAndItems() throws Exception {
+        StringBuilder wide = new StringBuilder("{");
+        for (int i = 0; i < 40; i++) wide.append(i > 0 ? "," : "").append("\"k").append(i).append("\":").append(i);
+        JsonNode root = sameAsReadTree(wide.append(",\"list\":[\"a\",{\"k1\":true},null]}").toString());
+        // Past INDEX_THRESHOLD fields the lookup goes through the key-id index
+        assertThat(root.get("k39").intValue()).isEqualTo(39);
+        assertThat(root.has("k40")).isFalse();
+        assertThat(root.get("nope")).isNull();
+        assertThat(root.get("list").get(1).get("k1").booleanValue()).isTrue();
+        assertThat(root.get("list").get(2).isNull()).isTrue();
+    }
+
+    @Test
+    void stopSupplierInterruptsBuilding() {
+        byte[] doc = ("[" + "1,".repeat(100_000) + "1]").getBytes(StandardCharsets.UTF_8);
+        InputStream in = new ByteArrayInputStream(doc);
+        assertThatThrownBy(() -> JsonTape.read(in, () -> true)).isInstanceOf(InterruptedIOException.class);
+    }
+
+    /** Random documents, plus truncated and mutated copies of each, over several seeds; one large doc crosses windows. */
+    @Test
+    void randomDocumentsMatchReadTree() throws Exception {
+        for (long seed : new long[]{42, 7, 2024}) {
+            Random random = new Random(seed);
+            StringBuilder big = new StringBuilder("[");
+            for (int i = 0; i < 3000; i++) {
+                String doc = value(random, 0);
+                byte[] bytes = doc.getBytes(StandardCharsets.UTF_8);
+                agreesWithReadTree(bytes, "seed " + seed + " doc " + i);
+                if (bytes.length > 2) {
+                    agreesWithReadTree(Arrays.copyOf(bytes, random.nextInt(bytes.length)), "truncated " + doc);
+                    byte[] mutated = bytes.clone();
+                    mutated[random.nextInt(mutated.length)] = (byte) "{}[],:\"\\ x1".charAt(random.nextInt(11));
+                    agreesWithReadTree(mutated, "mutated " + doc);
+                }
+                big.append(i > 0 ? "," : "").append(doc);
+            }
+            agreesWithReadTree(big.append(']').toString().getBytes(StandardCharsets.UTF_8), "seed " + seed + " big");
+        }
+    }
+
+    @Test
+    void bundledRuleFilesMatchReadTree() throws Exception {
+        for (String resource : List.of("pre_login_SG_rule.json", "pre_login_IPB_rule.json")) {
+            try (InputStream in = getClass().getClassLoader().getResourceAsStream(resource)) {
+                agreesWithReadTree(in.readAllBytes(), resource);
+            }
+        }
+    }
+
+    /** What a walk of the tree counts, without the walk; a repeated field counts once per occurrence. */
+    @Test
+    void nodeCountMatchesTheTree() throws Exception {
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream("pre_login_SG_rule.json")) {
+            byte[] bytes = in.readAllBytes();
+            assertThat(JsonTape.parse(bytes).nodeCount()).isEqualTo(countNodes(mapper.readTree(bytes)));
+        }
+        assertThat(JsonTape.parse("{\"a\":[1,{}],\"b\":\"x\"}".getBytes(StandardCharsets.UTF_8)).nodeCount()).isEqualTo(5);
+        assertThat(JsonTape.parse("{\"a\":1,\"a\":2}".getBytes(StandardCharsets.UTF_8)).nodeCount()).isEqualTo(3);
+        assertThat(JsonTape.parse(new byte[0]).nodeCount()).isZero();
+    }
+
+    private static long countNodes(JsonNode root) {
+        long count = 1;
+        for (Iterator<JsonNode> it = root.elements(); it.hasNext(); ) count += countNodes(it.next());
+        return count;
+    }
+
+    private JsonNode sameAsReadTree(String doc) throws IOException {
+        byte[] bytes = doc.getBytes(StandardCharsets.UTF_8);
+        JsonNode expected = mapper.readTree(bytes);
+        JsonNode tape = JsonTape.parse(bytes).root();
+        assertSameTree(expected, tape, doc);
+        return tape;
+    }
+
+    /** Both accept with equal trees, or both reject (malformed UTF-8 is outside the contract). */
+    private void agreesWithReadTree(byte[] bytes, String label) throws IOException {
+        JsonNode expected;
+        try {
+            expected = mapper.readTree(bytes);
+        } catch (IOException e) {
+            if (String.valueOf(e.getMessage()).contains("UTF-8")) return;
+            assertThatThrownBy(() -> JsonTape.parse(bytes).root().toString()).as(label).isInstanceOf(IOException.class);
+            return;
+        }
+        JsonNode tape = JsonTape.parse(bytes).root();
+        assertSameTree(expected == null ? tape : expected, tape, label);
+    }
+
+    private void assertSameTree(JsonNode expected, JsonNode tape, String label) throws IOException {
+        assertThat(tape).as(label).isEqualTo(expected);
+        assertThat(expected).as(label).isEqualTo(tape);
+        assertThat(mapper.writeValueAsString(tape)).as(label).isEqualTo(mapper.writeValueAsString(expected));
+        assertThat(tape.getNodeType()).as(label).isEqualTo(expected.getNodeType());
+        if (expected.isObject()) {
+            Iterator<String> names = expected.fieldNames();
+            while (names.hasNext()) {
+                String name = names.next();
+                assertThat(tape.get(name)).as(label + " ." + name).hasSameClassAs(expected.get(name));
+            }
+        }
+    }
+
+    private static void assertRejected(String doc, String message) {
+        assertThatThrownBy(() -> JsonTape.parse(doc.getBytes(StandardCharsets.UTF_8)))
+                .as(doc).isInstanceOf(IOException.class).hasMessage(message);
+    }
+
+    private static String string(Random random) {
+        StringBuilder sb = new StringBuilder("\"");
+        int n = random.nextInt(random.nextInt(10) == 0 ? 200 : 12);
+        for (int i = 0; i < n; i++) {
+            switch (random.nextInt(20)) {
+                case 0 -> sb.append("\\\\");
+                case 1 -> sb.append("\\\"");
+                case 2 -> sb.append("\\u00e9");
+                case 3 -> sb.append("\u00E9");
+                case 4 -> sb.append("\\n");
+                case 5 -> sb.append("\\/");
+                case 6 -> sb.append("\uD83D\uDE00");
+                case 7 -> sb.append("\\ud83d\\ude00");
+                default -> sb.append((char) ('a' + random.nextInt(26)));
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    private static String value(Random random, int depth) {
+        switch (random.nextInt(depth > 5 ? 7 : 10)) {
+            case 0:
+                return string(random);
+            case 1:
+                return String.valueOf(random.nextInt());
+            case 2:
+                return String.valueOf(random.nextDouble() * 1e6);
+            case 3:
+                return random.nextBoolean() ? "true" : "false";
+            case 4:
+                return "null";
+            case 5:
+                return "-0.5e-3";
+            case 6:
+                return String.valueOf(random.nextLong()) + random.nextInt(10);
+            case 7: {
+                StringBuilder sb = new StringBuilder("{");
+                int n = random.nextInt(12);
+                for (int i = 0; i < n; i++) {
+                    if (i > 0) sb.append(random.nextBoolean() ? "," : " ,\n ");
+                    // A small name pool, so duplicates occur
+                    sb.append(random.nextInt(4) == 0 ? string(random) : "\"k" + random.nextInt(15) + "\"");
+                    sb.append(random.nextBoolean() ? ":" : " : ").append(value(random, depth + 1));
+                }
+                return sb.append('}').toString();
+            }
+            default: {
+                StringBuilder sb = new StringBuilder("[");
+                int n = random.nextInt(8);
+                for (int i = 0; i < n; i++) sb.append(i > 0 ? ", " : "").append(value(random, depth + 1));
+                return sb.append(']').toString();
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.jsondiff.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class KeyUnionTest {
+
+    private static final JsonNodeFactory NODES = JsonNodeFactory.instance;
+
+    /** Repeated shapes come from the cache; results must not change with it, nor leak between calls. */
+    @Test
+    void matchesTreeSetUnionAcrossRepeatedShapes() {
+        Random random = new Random(42);
+        List<String> vocabulary = List.of("id", "name", "code", "owner", "kind", "limit", "segments", "Aa", "BB");
+        KeyUnion union = new KeyUnion();
+        for (int round = 0; round < 5_000; round++) {
+            JsonNode l = random.nextInt(10) == 0 ? null : object(random, vocabulary);
+            JsonNode r = random.nextInt(10) == 0 ? NODES.arrayNode() : object(random, vocabulary);
+
+            TreeSet<String> expected = new TreeSet<>();
+            if (l != null) l.fieldNames().forEachRemaining(expected::add);
+            if (r.isObject()) r.fieldNames().forEachRemaining(expected::add);
+
+            String[] names = union.sorted(l, r);
+            assertThat(Arrays.copyOf(names, union.size())).as("round %d", round).containsExactlyElementsOf(expected);
+        }
+    }
+
+    @Test
+    void sameShapeOnBothSidesIsSortedOnce() {
+        KeyUnion union = new KeyUnion();
+        ObjectNode l = NODES.objectNode().put("b", 1).put("a", 2);
+        ObjectNode r = NODES.objectNode().put("b", 3).put("a", 4);
+        for (int i = 0; i < 3; i++) {
+            String[] names = union.sorted(l, r);
+            assertThat(Arrays.copyOf(names, union.size())).containsExactly("a", "b");
+        }
+    }
+
+    /** A few names from a small vocabulary in random order, so shapes repeat ("Aa" and "BB" share a hash code). */
+    private static ObjectNode object(Random random, List<String> vocabulary) {
+        ObjectNode node = NODES.objectNode();
+        int n = random.nextInt(5);
+        for (int i = 0; i < n; i++) node.put(vocabulary.get(random.nextInt(vocabulary.size())), i);
+        return node;
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.jsondiff.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Hand-written shard reports (quoted like RuleDiff writes them) merged back into one.
+ */
+class ShardReportMergerTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void pathCellDecodesTheSecondCell() {
+        assertThat(ShardReportMerger.pathCell("\"Present\",\"a.b[0]\",\"{}\",\"{}\",\"\"")).isEqualTo("a.b[0]");
+        assertThat(ShardReportMerger.pathCell("\"Missing\",\"a.\"\"q\"\"\",\"1\",\"\",\"\"")).isEqualTo("a.\"q\"");
+        // Commas, doubled quotes and line breaks in the first cell or in the path itself
+        assertThat(ShardReportMerger.pathCell("\"x\"\",\n\"\"y\",\"p,q\nr\",\"\"")).isEqualTo("p,q\nr");
+        assertThat(ShardReportMerger.pathCell("\"Present\",\"\",\"{}\"")).isEmpty();
+        assertThat(ShardReportMerger.pathCell("\"Category\"")).isEmpty();
+    }
+
+    @Test
+    void mergesShardsInKeyOrder() throws Exception {
+        // Keys a, ab, b, c, d over two shards; "ab" starts like "a" but is its own key
+        Path s0 = report("s0.csv",
+                "\"Category\",\"Path\",\"L.json\",\"R.json\",\"Details\"",
+                "\"Present\",\"BusinessRules\",\"{}\",\"{}\",\"\"",
+                "\"Present\",\"BusinessRules.a\",\"{}\",\"{}\",\"\"",
+                "\"Modified\",\"BusinessRules.a.x\",\"1\",\"2\",\"line one\nline \"\"two\"\"\"",
+                "\"Present\",\"BusinessRules.b[id=1]\",\"{}\",\"{}\",\"\"",
+                "\"Missing\",\"BusinessRules.d\",\"\"\"v\"\"\",\"\",\"Present only in L.json\"");
+        Path s1 = report("s1.csv",
+                "\"Category\",\"Path\",\"shard1-L\",\"shard1-R\",\"Details\"",
+                "\"Present\",\"BusinessRules\",\"{}\",\"{}\",\"shard 1 copy\"",
+                "\"Present\",\"BusinessRules.ab\",\"{}\",\"{}\",\"\"",
+                "\"Present\",\"BusinessRules.ab.y\",\"3\",\"3\",\"\"",
+                "\"Extra\",\"BusinessRules.c\",\"\",\"\"\"w\nx\"\"\",\"Present only in R.json\"");
+
+        StringWriter out = new StringWriter();
+        long rows = ShardReportMerger.merge(List.of(
+                new ShardReportMerger.Shard(s0, List.of("a", "b", "d")),
+                new ShardReportMerger.Shard(s1, List.of("ab", "c"))), "BusinessRules.", out);
+
+        assertThat(rows).isEqualTo(8);
+        // Header and wrapper row from shard 0 only; then keys in String order, records verbatim
+        assertThat(out.toString()).isEqualTo(String.join("\n",
+                "\"Category\",\"Path\",\"L.json\",\"R.json\",\"Details\"",
+                "\"Present\",\"BusinessRules\",\"{}\",\"{}\",\"\"",
+                "\"Present\",\"BusinessRules.a\",\"{}\",\"{}\",\"\"",
+                "\"Modified\",\"BusinessRules.a.x\",\"1\",\"2\",\"line one\nline \"\"two\"\"\"",
+                "\"Present\",\"BusinessRules.ab\",\"{}\",\"{}\",\"\"",
+                "\"Present\",\"BusinessRules.ab.y\",\"3\",\"3\",\"\"",
+                "\"Present\",\"BusinessRules.b[id=1]\",\"{}\",\"{}\",\"\"",
+                "\"Extra\",\"BusinessRules.c\",\"\",\"\"\"w\nx\"\"\",\"Present only in R.json\"",
+                "\"Missing\",\"BusinessRules.d\",\"\"\"v\"\"\",\"\",\"Present only in L.json\"") + "\n");
+    }
+
+    @Test
+    void rootKeysWithoutPrefix() throws Exception {
+        Path s0 = report("s0.csv", "\"Category\",\"Path\"", "\"Present\",\"z\"", "\"Present\",\"z.k\"");
+        Path s1 = report("s1.csv", "\"Category\",\"Path\"", "\"Present\",\"m[0]\"");
+        Path s2 = report("s2.csv", "\"Category\",\"Path\"");
+        StringWriter out = new StringWriter();
+        long rows = ShardReportMerger.merge(List.of(
+                new ShardReportMerger.Shard(s0, List.of("z")),
+                new ShardReportMerger.Shard(s1, List.of("m")),
+                new ShardReportMerger.Shard(s2, List.of())), "", out);
+        assertThat(rows).isEqualTo(3);
+        assertThat(out.toString()).isEqualTo("\"Category\",\"Path\"\n\"Present\",\"m[0]\"\n\"Present\",\"z\"\n\"Present\",\"z.k\"\n");
+    }
+
+    @Test
+    void malformedShardsAreErrors() throws Exception {
+        Path header = report("h.csv", "\"Category\",\"Path\"");
+        Path empty = report("empty.csv");
+        Path unterminated = report("open.csv", "\"Category\",\"Path\"", "\"Present\",\"a.x\",\"open");
+        Path stray = report("stray.csv", "\"Category\",\"Path\"", "\"Present\",\"b\"", "\"Present\",\"a\"");
+
+        assertThatThrownBy(() -> merge(new ShardReportMerger.Shard(header, List.of("a")),
+                new ShardReportMerger.Shard(header, List.of("a"))))
+                .isInstanceOf(IllegalArgumentException.class).hasMessage("Key in two shards: a");
+        assertThatThrownBy(() -> merge(new ShardReportMerger.Shard(empty, List.of("a"))))
+                .isInstanceOf(IOException.class).hasMessageStartingWith("Empty shard report");
+        assertThatThrownBy(() -> merge(new ShardReportMerger.Shard(unterminated, List.of("a"))))
+                .isInstanceOf(IOException.class).hasMessage("Unterminated quoted cell at end of report");
+        // Keys out of order in a shard cannot be merged in one pass
+        assertThatThrownBy(() -> merge(new ShardReportMerger.Shard(stray, List.of("a", "b"))))
+                .isInstanceOf(IOException.class).hasMessageContaining("out of order").hasMessageEndingWith(": a");
+    }
+
+    private void merge(ShardReportMerger.Shard... shards) throws IOException {
+        ShardReportMerger.merge(List.of(shards), "", new StringWriter());
+    }
+
+    private Path report(String name, String... records) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (String record : records) sb.append(record).append('\n');
+        return Files.writeString(dir.resolve(name), sb, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.jsondiff.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The hash must agree with {@link JsonTrees#equal}: equal trees hash equal, so a hash difference is a difference.
+ */
+class StructuralHashTest {
+
+    private static final JsonNodeFactory NODES = JsonNodeFactory.instance;
+
+    private final ObjectMapper mapper = JsonMappers.newMapper();
+
+    @Test
+    void equalTreesHashEqual() throws Exception {
+        assertAgrees(mapper.readTree("{\"a\":1,\"b\":[1,{\"c\":\"x\"}],\"d\":null}"),
+                mapper.readTree("{\"d\":null,\"b\":[1,{\"c\":\"x\"}],\"a\":1}"), true);
+        assertAgrees(mapper.readTree("[1,2]"), mapper.readTree("[2,1]"), false);
+        assertAgrees(mapper.readTree("{\"a\":1}"), mapper.readTree("{\"a\":1.0}"), false);
+    }
+
+    /** DecimalNode compares by value: the scale must not reach the hash. */
+    @Test
+    void decimalsHashTheirValue() {
+        assertAgrees(NODES.numberNode(new BigDecimal("1.0")), NODES.numberNode(new BigDecimal("1.00")), true);
+        assertAgrees(NODES.numberNode(new BigDecimal("0.000")), NODES.numberNode(BigDecimal.ZERO), true);
+        assertAgrees(NODES.numberNode(new BigDecimal("1E+3")), NODES.numberNode(new BigDecimal("1000")), true);
+        assertAgrees(NODES.numberNode(new BigDecimal("1.5")), NODES.numberNode(new BigDecimal("15")), false);
+        assertAgrees(NODES.numberNode(new BigDecimal("-1.5")), NODES.numberNode(new BigDecimal("1.5")), false);
+    }
+
+    /** 2^96 and 31 * 2^64 share BigInteger.hashCode; their bytes differ. */
+    @Test
+    void bigIntegersHashTheirBytes() {
+        BigInteger a = BigInteger.ONE.shiftLeft(96);
+        BigInteger b = BigInteger.valueOf(31).shiftLeft(64);
+        assertThat(a.hashCode()).isEqualTo(b.hashCode());
+        assertAgrees(NODES.numberNode(a), NODES.numberNode(b), false);
+        assertAgrees(NODES.numberNode(a), NODES.numberNode(BigInteger.ONE.shiftLeft(96)), true);
+    }
+
+    private static void assertAgrees(JsonNode x, JsonNode y, boolean equal) {
+        assertThat(JsonTrees.equal(x, y)).as("%s vs %s", x, y).isEqualTo(equal);
+        assertThat(StructuralHash.of(x) == StructuralHash.of(y)).as("hashes of %s vs %s", x, y).isEqualTo(equal);
+    }
+}
@@ -0,0 +1,239 @@
+package com.example.jsondiff.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Stage 1 against a byte-at-a-time reference, on both classifiers, whole and fed in pieces; state carried
+ * across 64-byte blocks is placed on the block edges on purpose.
+ */
+class StructuralIndexerTest {
+
+    private static final int BLOCK = StructuralIndexer.BLOCK;
+
+    @Test
+    void vectorAndSwarMasksAgree() {
+        assumeTrue(ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent(), "jdk.incubator.vector not loaded");
+        StructuralIndexer.BlockClassifier swar = new StructuralIndexer.ScalarClassifier();
+        StructuralIndexer.BlockClassifier vector = new VectorClassifier();
+        Random random = new Random(42);
+        byte[] buf = new byte[BLOCK * 4];
+        long[] expected = new long[5];
+        long[] actual = new long[5];
+        // Every byte value at every position, then random blocks biased to the characters of interest
+        for (int v = 0; v < 256; v++) {
+            Arrays.fill(buf, (byte) v);
+            for (int offset = 0; offset <= buf.length - BLOCK; offset += 17) {
+                swar.classify(buf, offset, expected);
+                vector.classify(buf, offset, actual);
+                assertThat(actual).as("byte 0x%02x", v).containsExactly(expected);
+            }
+        }
+        byte[] interesting = "\\\"{}[]:, \n\r\t\u0000\u001f\u0020az0-".getBytes(StandardCharsets.ISO_8859_1);
+        for (int round = 0; round < 20_000; round++) {
+            for (int i = 0; i < buf.length; i++) {
+                buf[i] = random.nextBoolean() ? interesting[random.nextInt(interesting.length)] : (byte) random.nextInt();
+            }
+            int offset = random.nextInt(buf.length - BLOCK + 1);
+            swar.classify(buf, offset, expected);
+            vector.classify(buf, offset, actual);
+            assertThat(actual).as("round %d", round).containsExactly(expected);
+        }
+    }
+
+    @Test
+    void stringCarriesAcrossBlocks() {
+        // A string opening near the end of block 0 and closing in block 2; its operators must not count
+        String doc = "[" + " ".repeat(58) + "\"" + "{a:b},[]".repeat(12) + "\",1]";
+        assertMatchesReference(doc);
+        assertThat(index(doc, new StructuralIndexer.ScalarClassifier())).containsExactly(0, 59, 157, 158, 159);
+    }
+
+    @Test
+    void escapeRunsCrossingTheBlockEdge() {
+        // Backslash runs ending on byte 63: even runs leave the quote on byte 64 closing, odd ones escape it
+        for (int run = 1; run <= 6; run++) {
+            String prefix = "[\"" + "x".repeat(BLOCK - 2 - run) + "\\".repeat(run);
+            String doc = prefix + (run % 2 == 0 ? "\",2]" : "\"\",2]");
+            assertThat(doc.indexOf('"', BLOCK - 1)).as("run %d", run).isEqualTo(BLOCK);
+            assertMatchesReference(doc);
+        }
+    }
+
+    @Test
+    void unicodeEscapeSplitAcrossBlocks() {
+        for (int split = 0; split <= 4; split++) {
+            // "\\u" followed by four hex digits, split of them still in block 0
+            String head = "[\"" + "x".repeat(BLOCK - 4 - split) + "\\u";
+            assertThat(head.length() + split).isEqualTo(BLOCK);
+            String valid = head + "00e9\",1]";
+            assertMatchesReference(valid);
+            assertThat(errorAt(valid)).as("split %d", split).isEqualTo(-1);
+
+            String invalid = head + "00zz\",1]";
+            assertThat(errorAt(invalid)).as("split %d", split).isEqualTo(head.length() + 2);
+        }
+    }
+
+    @Test
+    void scalarSpanningBlocksStartsOnce() {
+        String doc = "[" + " ".repeat(BLOCK - 4) + "1234567890,true]";
+        assertMatchesReference(doc);
+        assertThat(index(doc, new StructuralIndexer.ScalarClassifier())).containsExactly(0, 61, 71, 72, 76);
+    }
+
+    @Test
+    void malformedStringsAreReportedNotThrown() {
+        assertThat(errorAt("[\"a\tb\"]")).isEqualTo(3);
+        assertThat(errorAt("[\"a\\xb\"]")).isEqualTo(3);
+        // The first problem wins
+        assertThat(errorAt("[\"\\q\",\"\u0001\"]")).isEqualTo(2);
+        // Control characters outside strings are whitespace's business, not stage 1's
+        assertThat(errorAt("[1,\u00012]")).isEqualTo(-1);
+    }
+
+    @Test
+    void randomDocumentsMatchTheReference() {
+        Random random = new Random(7);
+        for (int round = 0; round < 2_000; round++) {
+            assertMatchesReference(value(random, 0));
+        }
+    }
+
+    /** Whole and in block-multiple pieces, on every classifier available. */
+    private static void assertMatchesReference(String doc) {
+        byte[] bytes = doc.getBytes(StandardCharsets.UTF_8);
+        List<Integer> expected = reference(bytes);
+        for (Supplier<StructuralIndexer.BlockClassifier> classifier : classifiers()) {
+            assertThat(index(bytes, classifier.get(), bytes.length)).as("%s: %s", classifier.get(), doc)
+                    .containsExactlyElementsOf(expected);
+            for (int piece = BLOCK; piece < bytes.length; piece += BLOCK) {
+                assertThat(index(bytes, classifier.get(), piece)).as("%s, %d-byte pieces: %s", classifier.get(), piece, doc)
+                        .containsExactlyElementsOf(expected);
+            }
+        }
+    }
+
+    private static List<Supplier<StructuralIndexer.BlockClassifier>> classifiers() {
+        List<Supplier<StructuralIndexer.BlockClassifier>> out = new ArrayList<>();
+        out.add(StructuralIndexer.ScalarClassifier::new);
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) out.add(VectorClassifier::new);
+        return out;
+    }
+
+    private static List<Integer> index(String doc, StructuralIndexer.BlockClassifier classifier) {
+        byte[] bytes = doc.getBytes(StandardCharsets.UTF_8);
+        return index(bytes, classifier, bytes.length);
+    }
+
+    /** Feeds buf to one indexer in pieces of piece bytes (a multiple of BLOCK except the last). */
+    private static List<Integer> index(byte[] buf, StructuralIndexer.BlockClassifier classifier, int piece) {
+        if (piece < buf.length) piece = Math.max(BLOCK, piece / BLOCK * BLOCK);
+        StructuralIndexer indexer = new StructuralIndexer(classifier);
+        int[] out = new int[buf.length];
+        int n = 0;
+        for (int from = 0; from < buf.length; from += piece) {
+            int to = Math.min(buf.length, from + piece);
+            n += indexer.index(buf, from, to, to == buf.length, out, n);
+            assertThat(indexer.errorAt()).isEqualTo(-1);
+        }
+        List<Integer> offsets = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) offsets.add(out[i]);
+        return offsets;
+    }
+
+    /** First error position of the whole document on each classifier (which must agree). */
+    private static int errorAt(String doc) {
+        byte[] bytes = doc.getBytes(StandardCharsets.UTF_8);
+        Integer first = null;
+        for (Supplier<StructuralIndexer.BlockClassifier> classifier : classifiers()) {
+            StructuralIndexer indexer = new StructuralIndexer(classifier.get());
+            indexer.index(bytes, 0, bytes.length, true, new int[bytes.length], 0);
+            if (first == null) first = indexer.errorAt();
+            assertThat(indexer.errorAt()).as("%s", classifier.get()).isEqualTo(first);
+        }
+        return first;
+    }
+
+    /** Byte at a time, for well-formed input: operators and opening quotes outside strings, first byte of scalars. */
+    private static List<Integer> reference(byte[] b) {
+        List<Integer> out = new ArrayList<>();
+        boolean inScalar = false;
+        for (int i = 0; i < b.length; i++) {
+            byte c = b[i];
+            if (c == '"') {
+                out.add(i);
+                for (i++; b[i] != '"'; i++) {
+                    if (b[i] == '\\') i++;
+                }
+                inScalar = false;
+            } else if (c == '{' || c == '}' || c == '[' || c == ']' || c == ':' || c == ',') {
+                out.add(i);
+                inScalar = false;
+            } else if (c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+                inScalar = false;
+            } else if (!inScalar) {
+                out.add(i);
+                inScalar = true;
+            }
+        }
+        return out;
+    }
+
+    /** Strings heavy in escapes and backslash runs, with lengths spread across block sizes. */
+    private static String string(Random random) {
+        StringBuilder sb = new StringBuilder("\"");
+        int n = random.nextInt(random.nextInt(8) == 0 ? 150 : 20);
+        for (int i = 0; i < n; i++) {
+            switch (random.nextInt(12)) {
+                case 0 -> sb.append("\\\\".repeat(1 + random.nextInt(3)));
+                case 1 -> sb.append("\\\"");
+                case 2 -> sb.append("\\u00e9");
+                case 3 -> sb.append("\u00e9\u65e5");
+                case 4 -> sb.append("\\n");
+                case 5 -> sb.append("{}[]:,");
+                default -> sb.append((char) ('a' + random.nextInt(26)));
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    private static String value(Random random, int depth) {
+        switch (random.nextInt(depth > 4 ? 5 : 7)) {
+            case 0:
+                return string(random);
+            case 1:
+                return String.valueOf(random.nextLong());
+            case 2:
+                return random.nextBoolean() ? "true" : "-1.5e-3";
+            case 3:
+                return "null";
+            case 4:
+                return " ".repeat(random.nextInt(70)) + string(random);
+            case 5: {
+                StringBuilder sb = new StringBuilder("{");
+                int n = random.nextInt(8);
+                for (int i = 0; i < n; i++) {
+                    if (i > 0) sb.append(random.nextBoolean() ? "," : " ,\n\t");
+                    sb.append(string(random)).append(random.nextBoolean() ? ":" : " : ").append(value(random, depth + 1));
+                }
+                return sb.append('}').toString();
+            }
+            default: {
+                StringBuilder sb = new StringBuilder("[");
+                int n = random.nextInt(8);
+                for (int i = 0; i < n; i++) sb.append(i > 0 ? ", " : "").append(value(random, depth + 1));
+                return sb.append(']').toString();
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.jsondiff.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Skimming the fields of a document larger than one read chunk, with reads that end anywhere (mid-block,
+ * mid-string, mid-subtree): every refill must keep the current structural and the offsets in step.
+ */
+class StructuralReaderTest {
+
+    @Test
+    void skimsTopLevelFieldsAcrossRefills() throws Exception {
+        Map<String, Long> expected = new LinkedHashMap<>();
+        List<String> values = new ArrayList<>();
+        byte[] doc = document(600, expected, values);
+        assertThat(doc.length).isGreaterThan(2 << 20);
+
+        for (int readSize : new int[]{37, 64, 4096, 1 << 20, Integer.MAX_VALUE}) {
+            Map<String, Long> found = new LinkedHashMap<>();
+            List<String> strings = new ArrayList<>();
+            try (StructuralReader r = new StructuralReader(trickle(doc, readSize))) {
+                assertThat(r.next()).isEqualTo('{');
+                while (true) {
+                    int c = r.next();
+                    if (c == '}') break;
+                    if (c == ',') c = r.next();
+                    assertThat(c).isEqualTo('"');
+                    String key = r.string();
+                    assertThat(r.next()).isEqualTo(':');
+                    c = r.next();
+                    found.put(key, r.offset());
+                    if (c == '"') strings.add(r.string());
+                    r.skipValue();
+                }
+                assertThat(r.next()).isEqualTo(-1);
+            }
+            assertThat(found).as("reads of %d", readSize).containsExactlyEntriesOf(expected);
+            assertThat(strings).as("reads of %d", readSize).containsExactlyElementsOf(values);
+        }
+    }
+
+    @Test
+    void unterminatedInputIsAnError() throws Exception {
+        try (StructuralReader r = new StructuralReader(trickle("{\"a\":[1,[2".getBytes(StandardCharsets.UTF_8), 3))) {
+            r.next();
+            r.next();
+            r.next();
+            r.next();
+            assertThatThrownBy(r::skipValue).isInstanceOf(IOException.class).hasMessage("Unexpected end of input");
+        }
+        try (StructuralReader r = new StructuralReader(trickle("[\"abc".getBytes(StandardCharsets.UTF_8), 2))) {
+            r.next();
+            r.next();
+            assertThatThrownBy(r::string).isInstanceOf(IOException.class).hasMessage("Unterminated string at byte 1");
+        }
+    }
+
+    /**
+     * {"f0":...,"f1":...} alternating nested subtrees (with brackets inside strings) and long strings with
+     * escapes; records each field's value offset and each string value decoded.
+     */
+    private static byte[] document(int fields, Map<String, Long> offsets, List<String> values) {
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < fields; i++) {
+            if (i > 0) sb.append(i % 3 == 0 ? ",\n  " : ",");
+            String key = "f" + i + (i % 5 == 0 ? "\\\"q" : "");
+            sb.append('"').append(key).append("\":");
+            offsets.put(key.replace("\\\"", "\""), (long) sb.length());
+            if (i % 2 == 0) {
+                sb.append("{\"a\":[1,2,{\"x\":\"}]\\\\\"}],\"b\":").append("[".repeat(i % 7)).append(i)
+                        .append("]".repeat(i % 7)).append('}');
+            } else {
+                // 1 to 8 KB, so some strings straddle a refill of any read size
+                String text = ("text " + i + " \\\\ \\\" {[ ").repeat(100 + i * 7 % 700);
+                sb.append('"').append(text).append('"');
+                values.add(text.replace("\\\\", "\\").replace("\\\"", "\""));
+            }
+        }
+        return sb.append('}').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** Returns at most readSize bytes per read. */
+    private static InputStream trickle(byte[] data, int readSize) {
+        return new ByteArrayInputStream(data) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, readSize));
+            }
+        };
+    }
+}